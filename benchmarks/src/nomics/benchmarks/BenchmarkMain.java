@@ -0,0 +1,31 @@
+package nomics.benchmarks;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached so allocation rate is reported next to
+ * time.  Takes the usual JMH arguments ie. java -jar benchmarks.jar CandleBenchmarks -f 2
+ * @author danielanderson
+ *
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain( )
+	{
+	}
+
+	public static void main( String[] args ) throws RunnerException, CommandLineOptionException
+	{
+		Options options = new OptionsBuilder( )
+			.parent( new CommandLineOptions( args ) )
+			.addProfiler( GCProfiler.class )
+			.build( );
+
+		new Runner( options ).run( );
+	}
+}
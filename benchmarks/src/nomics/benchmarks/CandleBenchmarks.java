@@ -0,0 +1,109 @@
+package nomics.benchmarks;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nomics.core.CandleSeries;
+import nomics.core.NomicsExchangeCandles;
+import nomics.core.NomicsExchangeCandles.CANDLE_FILTER_MODE;
+
+/**
+ * Zero filtering, resampling and scanning over multi-year candle histories
+ * @author danielanderson
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx4g" } )
+public class CandleBenchmarks {
+
+	private NomicsExchangeCandles nomicsExchangeCandles;
+
+	private CandleSeries minuteCandles;
+
+	private CandleSeries hourCandles;
+
+	private JSONArray hourCandlesJSON;
+
+	private String hourCandlesPayload;
+
+	private byte[] hourCandlesBytes;
+
+	@Setup
+	public void setup( ) throws JSONException
+	{
+		nomicsExchangeCandles = new NomicsExchangeCandles( );
+		minuteCandles         = Fixtures.candles( "1m", Fixtures.MINUTE_CANDLES );
+		hourCandlesPayload    = Fixtures.candlesJson( "1h", Fixtures.HOUR_CANDLES );
+		hourCandles           = CandleSeries.parse( hourCandlesPayload );
+		hourCandlesJSON       = new JSONArray( hourCandlesPayload );
+		hourCandlesBytes      = hourCandlesPayload.getBytes( StandardCharsets.UTF_8 );
+	}
+
+	@Benchmark
+	public CandleSeries replaceZeroCandles( )
+	{
+		return minuteCandles.replaceZeros( );
+	}
+
+	@Benchmark
+	public CandleSeries omitZeroCandles( )
+	{
+		return minuteCandles.omitZeros( );
+	}
+
+	@Benchmark
+	public CandleSeries createNewCandleSet( )
+	{
+		return nomicsExchangeCandles.createNewCandleSet( hourCandles, "4h" );
+	}
+
+	/**
+	 * The String based entry point, which round trips through org.json
+	 */
+	@Benchmark
+	public String createNewCandleSetJSON( ) throws JSONException
+	{
+		return nomicsExchangeCandles.createNewCandleSet( hourCandlesJSON, "4h" );
+	}
+
+	@Benchmark
+	public BigDecimal getAllTimeHigh( )
+	{
+		return NomicsExchangeCandles.getAllTimeHigh( minuteCandles );
+	}
+
+	/**
+	 * Decoding cost the transforms above sit behind
+	 */
+	@Benchmark
+	public CandleSeries parseHourCandles( ) throws JSONException
+	{
+		return CandleSeries.parse( hourCandlesPayload );
+	}
+
+	/**
+	 * The last 25 candles decoded from the end of the payload, compare with parseHourCandles
+	 */
+	@Benchmark
+	public CandleSeries readLastHourCandles( ) throws JSONException
+	{
+		return CandleSeries.readLast( hourCandlesBytes, 0, hourCandlesBytes.length, 25, CANDLE_FILTER_MODE.OMIT_ZEROS );
+	}
+}
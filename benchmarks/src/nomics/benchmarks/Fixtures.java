@@ -0,0 +1,179 @@
+package nomics.benchmarks;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import nomics.core.CandleSeries;
+import nomics.core.Intervals;
+import nomics.core.Price;
+
+/**
+ * Payloads shaped and sized like the live API responses.  They are generated from a fixed
+ * seed instead of being checked in, a multi-year 1m history alone is well over 100MB of
+ * JSON, but every run of every fork sees exactly the same data
+ * @author danielanderson
+ *
+ */
+public final class Fixtures {
+
+	/**
+	 * 2018-01-01T00:00:00Z
+	 */
+	public static final long START = 1514764800000L;
+
+	public static final int EXCHANGES = 60;
+
+	public static final int MARKETS_PER_EXCHANGE = 300;
+
+	public static final int CURRENCIES = 3000;
+
+	/**
+	 * Two years of minute candles
+	 */
+	public static final int MINUTE_CANDLES = 2 * 365 * 24 * 60;
+
+	/**
+	 * Five years of hourly candles
+	 */
+	public static final int HOUR_CANDLES = 5 * 365 * 24;
+
+	/**
+	 * Roughly one candle in this many closes at 0, as thinly traded markets do
+	 */
+	private static final int ZERO_EVERY = 100;
+
+	private static final long SEED = 20180101L;
+
+	private Fixtures( )
+	{
+	}
+
+	/**
+	 * @param i
+	 * @return		The exchange id used for exchange i ie. "exchange7"
+	 */
+	public static String exchange( int i )
+	{
+		return "exchange" + i;
+	}
+
+	/**
+	 * @param i
+	 * @return		The symbol used for currency i ie. "C42", currency 0 is "BTC" and 1 is "ETH"
+	 */
+	public static String currency( int i )
+	{
+		return i == 0 ? "BTC" : i == 1 ? "ETH" : "C" + i;
+	}
+
+	/**
+	 * The full markets catalog as /v1/markets returns it.  Exchanges list overlapping subsets of
+	 * the same pairs so intersections are neither empty nor total
+	 * @return
+	 */
+	public static String marketsJson( )
+	{
+		Random random       = new Random( SEED );
+		StringBuilder json  = new StringBuilder( EXCHANGES * MARKETS_PER_EXCHANGE * 80 );
+		String[] quotes     = { "BTC", "ETH", "USDT", "USD" };
+
+		json.append( '[' );
+
+		for( int e = 0; e < EXCHANGES; e++ )
+		{
+			for( int m = 0; m < MARKETS_PER_EXCHANGE; m++ )
+			{
+				String base  = currency( 2 + random.nextInt( 600 ) );
+				String quote = quotes[ random.nextInt( quotes.length ) ];
+
+				if( e > 0 || m > 0 )
+					json.append( ',' );
+
+				json.append( "{\"exchange\":\"" ).append( exchange( e ) )
+					.append( "\",\"market\":\"" ).append( base ).append( '-' ).append( quote )
+					.append( "\",\"base\":\"" ).append( base )
+					.append( "\",\"quote\":\"" ).append( quote ).append( "\"}" );
+			}
+		}
+
+		return json.append( ']' ).toString( );
+	}
+
+	public static JSONArray markets( ) throws JSONException
+	{
+		return new JSONArray( marketsJson( ) );
+	}
+
+	/**
+	 * The full prices list as /v1/prices returns it, every price in USD
+	 * @return
+	 */
+	public static List< Price > prices( )
+	{
+		Random random       = new Random( SEED );
+		List< Price > prices = new ArrayList< Price >( CURRENCIES );
+
+		for( int i = 0; i < CURRENCIES; i++ )
+		{
+			double usd = i == 0 ? 9123.45 : Math.exp( random.nextGaussian( ) * 3 );
+			prices.add( new Price( currency( i ), new BigDecimal( format( usd ) ) ) );
+		}
+
+		return prices;
+	}
+
+	/**
+	 * A candle history as /v1/exchange_candles returns it
+	 * @param interval		Interval of the candles ie. "1m", "1h"
+	 * @param count			Number of candles
+	 * @return
+	 */
+	public static String candlesJson( String interval, int count )
+	{
+		Random random      = new Random( SEED );
+		long step          = Intervals.toMillis( interval );
+		StringBuilder json = new StringBuilder( count * 160 );
+		double price       = 1000;
+
+		json.append( '[' );
+
+		for( int i = 0; i < count; i++ )
+		{
+			double open  = price;
+			double close = Math.max( 0.01, open * ( 1 + random.nextGaussian( ) * 0.002 ) );
+			double high  = Math.max( open, close ) * ( 1 + random.nextDouble( ) * 0.001 );
+			double low   = Math.min( open, close ) * ( 1 - random.nextDouble( ) * 0.001 );
+			double vol   = random.nextDouble( ) * 50;
+			price        = close;
+
+			if( random.nextInt( ZERO_EVERY ) == 0 )
+				open = high = low = close = vol = 0;
+
+			if( i > 0 )
+				json.append( ',' );
+
+			json.append( "{\"timestamp\":\"" ).append( CandleSeries.formatTimestamp( START + i * step ) )
+				.append( "\",\"open\":\"" ).append( format( open ) )
+				.append( "\",\"high\":\"" ).append( format( high ) )
+				.append( "\",\"low\":\"" ).append( format( low ) )
+				.append( "\",\"close\":\"" ).append( format( close ) )
+				.append( "\",\"volume\":\"" ).append( format( vol ) ).append( "\"}" );
+		}
+
+		return json.append( ']' ).toString( );
+	}
+
+	public static CandleSeries candles( String interval, int count ) throws JSONException
+	{
+		return CandleSeries.parse( candlesJson( interval, count ) );
+	}
+
+	private static String format( double value )
+	{
+		return value == 0 ? "0" : BigDecimal.valueOf( Math.round( value * 1e8 ), 8 ).toPlainString( );
+	}
+}
@@ -0,0 +1,92 @@
+package nomics.benchmarks;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nomics.core.Market;
+import nomics.core.NomicsMarkets;
+
+/**
+ * Exchange and intersection filters over the full markets catalog
+ * @author danielanderson
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class MarketBenchmarks {
+
+	/**
+	 * Number of exchanges to intersect
+	 */
+	@Param( { "2", "5" } )
+	public int exchangeCount;
+
+	private NomicsMarkets nomicsMarkets;
+
+	private JSONArray markets;
+
+	private List< Market > decodedMarkets;
+
+	private String[] exchanges;
+
+	@Setup
+	public void setup( ) throws JSONException
+	{
+		nomicsMarkets  = new NomicsMarkets( );
+		markets        = Fixtures.markets( );
+		decodedMarkets = new ArrayList< Market >( markets.length( ) );
+		exchanges      = new String[ exchangeCount ];
+
+		for( int i = 0; i < markets.length( ); i++ )
+		{
+			decodedMarkets.add( Market.fromJSONObject( markets.getJSONObject( i ) ) );
+		}
+
+		for( int i = 0; i < exchangeCount; i++ )
+		{
+			exchanges[ i ] = Fixtures.exchange( i * ( Fixtures.EXCHANGES / exchangeCount ) );
+		}
+	}
+
+	@Benchmark
+	public String filterByExchange( ) throws JSONException
+	{
+		return nomicsMarkets.filterByExchange( markets, exchanges[ exchanges.length - 1 ] );
+	}
+
+	@Benchmark
+	public List< String > filterByIntersection( ) throws JSONException
+	{
+		return nomicsMarkets.filterByIntersection( exchanges, markets );
+	}
+
+	@Benchmark
+	public List< Market > filterByExchangeTyped( )
+	{
+		return NomicsMarkets.filterByExchange( decodedMarkets, exchanges[ exchanges.length - 1 ] );
+	}
+
+	@Benchmark
+	public List< List< Market > > filterByIntersectionTyped( )
+	{
+		return NomicsMarkets.filterByIntersection( exchanges, decodedMarkets );
+	}
+}
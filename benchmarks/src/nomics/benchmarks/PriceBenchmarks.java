@@ -0,0 +1,49 @@
+package nomics.benchmarks;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nomics.core.NomicsPrices;
+import nomics.core.Price;
+
+/**
+ * Re-quoting the full prices list in another currency
+ * @author danielanderson
+ *
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class PriceBenchmarks {
+
+	private List< Price > prices;
+
+	private BigDecimal btcInUSD;
+
+	@Setup
+	public void setup( )
+	{
+		prices   = Fixtures.prices( );
+		btcInUSD = new NomicsPrices( ).findPriceOfCurrency( prices, "BTC" );
+	}
+
+	@Benchmark
+	public List< Price > convertWithNewBase( )
+	{
+		return NomicsPrices.convertWithNewBase( prices, btcInUSD );
+	}
+}
@@ -0,0 +1,164 @@
+package nomics.core;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Durable record of how far a CandleBackfill got for every (exchange, market, interval): the
+ * open time of the newest candle handed to the sink.  Kept as an append-only text file with
+ * one line per checkpoint,
+ *
+ * <exchange>\t<market>\t<interval>\t<epoch milliseconds>\n
+ *
+ * where a later line for the same market wins.  Every line is forced to disk before record( )
+ * returns, so a crash loses at most the line being written, which is ignored when the file is
+ * next opened.  Opening compacts the file down to one line per market.  A checkpoint file must
+ * only be written by one process at a time.
+ * @author danielanderson
+ *
+ */
+public class BackfillCheckpoint implements Closeable {
+
+	private final Path path;
+
+	private final Map< String, Long > lastTimestamps = new ConcurrentHashMap< String, Long >( );
+
+	private final FileChannel channel;
+
+	/**
+	 * Open (or create) a checkpoint file
+	 * @param path			The file, its directory is created if missing
+	 * @throws IOException
+	 */
+	public BackfillCheckpoint( Path path ) throws IOException
+	{
+		this.path = path.toAbsolutePath( );
+		Files.createDirectories( this.path.getParent( ) );
+
+		if( Files.exists( this.path ) )
+			load( new String( Files.readAllBytes( this.path ), StandardCharsets.UTF_8 ) );
+
+		compact( );
+		this.channel = FileChannel.open( this.path, StandardOpenOption.WRITE, StandardOpenOption.APPEND );
+	}
+
+	/**
+	 * @param query			The (exchange, market, interval), the filter mode is ignored
+	 * @return				Open time of the newest candle delivered, or -1 if there is no checkpoint
+	 */
+	public long getLastTimestamp( CandleQuery query )
+	{
+		Long last = lastTimestamps.get( id( query.getExchange( ), query.getMarket( ), query.getInterval( ) ) );
+		return last == null ? -1 : last;
+	}
+
+	/**
+	 * Durably record that every candle up to and including lastTimestamp has been delivered
+	 * @param query			The (exchange, market, interval), the filter mode is ignored
+	 * @param lastTimestamp	Open time of the newest candle delivered
+	 * @throws IOException
+	 */
+	public synchronized void record( CandleQuery query, long lastTimestamp ) throws IOException
+	{
+		String id         = id( query.getExchange( ), query.getMarket( ), query.getInterval( ) );
+		ByteBuffer buffer = ByteBuffer.wrap( ( id + '\t' + lastTimestamp + '\n' ).getBytes( StandardCharsets.UTF_8 ) );
+
+		while( buffer.hasRemaining( ) )
+		{
+			channel.write( buffer );
+		}
+
+		channel.force( false );
+		lastTimestamps.put( id, lastTimestamp );
+	}
+
+	/**
+	 * @return				Number of markets with a checkpoint
+	 */
+	public int size( )
+	{
+		return lastTimestamps.size( );
+	}
+
+	public Path getPath( )
+	{
+		return path;
+	}
+
+	@Override
+	public synchronized void close( ) throws IOException
+	{
+		channel.close( );
+	}
+
+	/**
+	 * Internal method reading the complete lines of a checkpoint file, a torn last line and
+	 * lines that do not parse are skipped
+	 */
+	private void load( String contents )
+	{
+		int start = 0;
+		int end;
+
+		while( ( end = contents.indexOf( '\n', start ) ) >= 0 )
+		{
+			String[] fields = contents.substring( start, end ).split( "\t" );
+			start           = end + 1;
+
+			if( fields.length != 4 )
+				continue;
+
+			try
+			{
+				lastTimestamps.put( id( fields[ 0 ], fields[ 1 ], fields[ 2 ] ), Long.parseLong( fields[ 3 ] ) );
+			}
+			catch( NumberFormatException e )
+			{
+				continue;
+			}
+		}
+	}
+
+	/**
+	 * Internal method rewriting the file with one line per market.  The new file is forced to
+	 * disk and then moved over the old one, so a crash leaves one or the other
+	 */
+	private void compact( ) throws IOException
+	{
+		StringBuilder contents = new StringBuilder( );
+
+		for( Map.Entry< String, Long > entry : lastTimestamps.entrySet( ) )
+		{
+			contents.append( entry.getKey( ) ).append( '\t' ).append( entry.getValue( ) ).append( '\n' );
+		}
+
+		Path temporary = path.resolveSibling( path.getFileName( ) + ".tmp" );
+
+		try( FileChannel out = FileChannel.open( temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) )
+		{
+			ByteBuffer buffer = ByteBuffer.wrap( contents.toString( ).getBytes( StandardCharsets.UTF_8 ) );
+
+			while( buffer.hasRemaining( ) )
+			{
+				out.write( buffer );
+			}
+
+			out.force( true );
+		}
+
+		Files.move( temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+	}
+
+	private static String id( String exchange, String market, String interval )
+	{
+		return exchange + '\t' + market + '\t' + interval;
+	}
+}
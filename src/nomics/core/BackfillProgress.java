@@ -0,0 +1,112 @@
+package nomics.core;
+
+/**
+ * Point in time view of a CandleBackfill run.  Every market of the run ends up completed
+ * (downloaded and delivered), skipped (already up to date at its checkpoint) or failed; the
+ * rest are remaining.  Rates and the ETA are over the markets that were actually downloaded,
+ * skips cost no request and would make them look better than they are
+ * @author danielanderson
+ *
+ */
+public final class BackfillProgress {
+
+	private final int total;
+
+	private final int completed;
+
+	private final int skipped;
+
+	private final int failed;
+
+	private final long candles;
+
+	private final long elapsedMillis;
+
+	public BackfillProgress( int total, int completed, int skipped, int failed, long candles, long elapsedMillis )
+	{
+		this.total         = total;
+		this.completed     = completed;
+		this.skipped       = skipped;
+		this.failed        = failed;
+		this.candles       = candles;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * @return			Number of (exchange, market, interval) combinations in the run
+	 */
+	public int getTotal( )
+	{
+		return total;
+	}
+
+	public int getCompleted( )
+	{
+		return completed;
+	}
+
+	public int getSkipped( )
+	{
+		return skipped;
+	}
+
+	public int getFailed( )
+	{
+		return failed;
+	}
+
+	/**
+	 * @return			Markets not yet handled, including those left when a run stops at its deadline
+	 */
+	public int getRemaining( )
+	{
+		return total - completed - skipped - failed;
+	}
+
+	/**
+	 * @return			Candles delivered to the sink
+	 */
+	public long getCandles( )
+	{
+		return candles;
+	}
+
+	public long getElapsedMillis( )
+	{
+		return elapsedMillis;
+	}
+
+	/**
+	 * @return			Markets downloaded (completed or failed) per second
+	 */
+	public double getMarketsPerSecond( )
+	{
+		return elapsedMillis == 0 ? 0 : ( completed + failed ) * 1000.0 / elapsedMillis;
+	}
+
+	public double getCandlesPerSecond( )
+	{
+		return elapsedMillis == 0 ? 0 : candles * 1000.0 / elapsedMillis;
+	}
+
+	/**
+	 * @return			Estimated milliseconds until the remaining markets are done at the current
+	 * 					rate, 0 when there are none left or -1 before the first download finished
+	 */
+	public long getEtaMillis( )
+	{
+		if( getRemaining( ) == 0 )
+			return 0;
+
+		double rate = getMarketsPerSecond( );
+		return rate == 0 ? -1 : (long) ( getRemaining( ) * 1000.0 / rate );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return "completed=" + completed + " skipped=" + skipped + " failed=" + failed + " remaining=" + getRemaining( ) + "/" + total
+			+ " candles=" + candles + " elapsed=" + elapsedMillis + "ms marketsPerSecond=" + String.format( "%.2f", getMarketsPerSecond( ) )
+			+ " candlesPerSecond=" + String.format( "%.1f", getCandlesPerSecond( ) ) + " eta=" + getEtaMillis( ) + "ms";
+	}
+}
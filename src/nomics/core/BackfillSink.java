@@ -0,0 +1,32 @@
+package nomics.core;
+import java.io.IOException;
+
+/**
+ * Destination of the candles a CandleBackfill downloads.  The sink is only ever called from
+ * the thread running the backfill, one market at a time, and a download is only checkpointed
+ * once the sink has returned.  A crash between the two means the same candles are delivered
+ * again on the next run, so sinks must tolerate receiving candles they already hold
+ * @author danielanderson
+ *
+ */
+public interface BackfillSink {
+
+	/**
+	 * Take the closed candles downloaded for one market.  A slow sink holds up the downloads,
+	 * the backfill only buffers a bounded number of them
+	 * @param query			The (exchange, market, interval) the candles belong to
+	 * @param candles		Closed candles newer than the last checkpoint, oldest first, never empty
+	 * @throws IOException	Stops the backfill, the candles are not checkpointed
+	 */
+	void accept( CandleQuery query, CandleSeries candles ) throws IOException;
+
+	/**
+	 * A sink appending to a CandleStore, which already skips candles it holds
+	 * @param store
+	 * @return
+	 */
+	static BackfillSink of( CandleStore store )
+	{
+		return ( query, candles ) -> store.append( query.getExchange( ), query.getMarket( ), query.getInterval( ), candles, System.currentTimeMillis( ) );
+	}
+}
@@ -0,0 +1,193 @@
+package nomics.core;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batches of independent requests concurrently with a bound on how many are in
+ * flight at once.  Every item of a batch gets its own CompletableFuture, a failing item
+ * completes its future exceptionally and never cancels the rest of the batch:
+ *
+ * BatchExecutor batch = BatchExecutor.withVirtualThreads( 32 );
+ * Map< CandleQuery, CompletableFuture< CandleSeries > > results = nomicsExchangeCandles.getExchangeCandleSeries( key, queries, batch );
+ *
+ * Concurrency is limited by running at most maxConcurrency workers per batch, each draining
+ * the batch's queue, so no executor thread ever sits blocked waiting for a permit.
+ * @author danielanderson
+ *
+ */
+public class BatchExecutor {
+
+	/**
+	 * Work done for a single item of a batch
+	 * @param <Q>	The query type
+	 * @param <V>	The result type
+	 */
+	public interface Task< Q, V > {
+
+		V call( Q query ) throws Exception;
+	}
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger( );
+
+	private final Executor executor;
+
+	private final int maxConcurrency;
+
+	/**
+	 * Create a batch executor backed by a cached pool of daemon threads
+	 * @param maxConcurrency		Maximum number of items of a batch in flight at once
+	 */
+	public BatchExecutor( int maxConcurrency )
+	{
+		this( Executors.newCachedThreadPool( daemonThreads( ) ), maxConcurrency );
+	}
+
+	/**
+	 * Create a batch executor on top of an existing executor
+	 * @param executor			Executor the items are run on
+	 * @param maxConcurrency		Maximum number of items of a batch in flight at once
+	 */
+	public BatchExecutor( Executor executor, int maxConcurrency )
+	{
+		if( maxConcurrency < 1 )
+			throw new IllegalArgumentException( "maxConcurrency must be at least 1" );
+
+		this.executor       = executor;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * Create a batch executor that runs every item on its own virtual thread when the JDK
+	 * supports them (21+), falling back to a cached pool of daemon threads otherwise
+	 * @param maxConcurrency		Maximum number of items of a batch in flight at once
+	 * @return
+	 */
+	public static BatchExecutor withVirtualThreads( int maxConcurrency )
+	{
+		try
+		{
+			ExecutorService virtual = (ExecutorService) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+			return new BatchExecutor( virtual, maxConcurrency );
+		}
+		catch( ReflectiveOperationException e )
+		{
+			return new BatchExecutor( maxConcurrency );
+		}
+	}
+
+	public Executor getExecutor( )
+	{
+		return executor;
+	}
+
+	public int getMaxConcurrency( )
+	{
+		return maxConcurrency;
+	}
+
+	/**
+	 * Run a task for every query of a batch
+	 * @param queries		The items of the batch, duplicates are only run once
+	 * @param task			Work to do for each item
+	 * @return				A future per query, in the order the queries were given
+	 */
+	public < Q, V > Map< Q, CompletableFuture< V > > submitAll( Collection< Q > queries, Task< Q, V > task )
+	{
+		Map< Q, CompletableFuture< V > > results = new LinkedHashMap< Q, CompletableFuture< V > >( );
+		Queue< Q > pending                       = new ConcurrentLinkedQueue< Q >( );
+
+		for( Q query : queries )
+		{
+			if( !results.containsKey( query ) )
+			{
+				results.put( query, new CompletableFuture< V >( ) );
+				pending.add( query );
+			}
+		}
+
+		int workers = Math.min( maxConcurrency, pending.size( ) );
+
+		for( int i = 0; i < workers; i++ )
+		{
+			try
+			{
+				executor.execute( ( ) -> drain( pending, results, task ) );
+			}
+			catch( RuntimeException e )
+			{
+				//Executor rejected the worker, fail whatever is left so no future hangs
+				if( i == 0 )
+				{
+					Q query;
+
+					while( ( query = pending.poll( ) ) != null )
+					{
+						results.get( query ).completeExceptionally( e );
+					}
+				}
+
+				break;
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Returns a future completing once every future of a batch is done, successfully or not
+	 * @param results		The futures returned by submitAll( )
+	 * @return
+	 */
+	public static CompletableFuture< Void > whenAllDone( Map< ?, ? extends CompletableFuture< ? > > results )
+	{
+		CompletableFuture< ? >[] futures = new CompletableFuture< ? >[ results.size( ) ];
+		int i = 0;
+
+		for( CompletableFuture< ? > future : results.values( ) )
+		{
+			futures[ i++ ] = future.handle( ( value, error ) -> null );
+		}
+
+		return CompletableFuture.allOf( futures );
+	}
+
+	/**
+	 * Internal worker loop, runs queries off of the shared queue until it is empty
+	 */
+	private static < Q, V > void drain( Queue< Q > pending, Map< Q, CompletableFuture< V > > results, Task< Q, V > task )
+	{
+		Q query;
+
+		while( ( query = pending.poll( ) ) != null )
+		{
+			CompletableFuture< V > future = results.get( query );
+
+			try
+			{
+				future.complete( task.call( query ) );
+			}
+			catch( Throwable e )
+			{
+				future.completeExceptionally( e );
+			}
+		}
+	}
+
+	private static ThreadFactory daemonThreads( )
+	{
+		return runnable -> {
+			Thread thread = new Thread( runnable, "nomics-batch-" + THREAD_COUNT.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		};
+	}
+}
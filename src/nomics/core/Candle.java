@@ -0,0 +1,138 @@
+package nomics.core;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Immutable single candle as returned by the nomics candle APIs, for callers that want one
+ * candle as an object rather than an index into a CandleSeries
+ *
+ * {
+ *   "timestamp": "2018-03-19T10:00:00Z",
+ *   "low": "7024.32225",
+ *   "open": "8276.19407",
+ *   "close": "8281.17307",
+ *   "high": "8566.43000",
+ *   "volume": "59624801"
+ * }
+ *
+ * @author danielanderson
+ *
+ */
+public final class Candle {
+
+	private final long timestamp;
+
+	private final double open;
+
+	private final double high;
+
+	private final double low;
+
+	private final double close;
+
+	private final double volume;
+
+	private final boolean flagged;
+
+	public Candle( long timestamp, double open, double high, double low, double close, double volume, boolean flagged )
+	{
+		this.timestamp = timestamp;
+		this.open      = open;
+		this.high      = high;
+		this.low       = low;
+		this.close     = close;
+		this.volume    = volume;
+		this.flagged   = flagged;
+	}
+
+	/**
+	 * @return			Open time of the candle in epoch milliseconds
+	 */
+	public long getTimestamp( )
+	{
+		return timestamp;
+	}
+
+	public double getOpen( )
+	{
+		return open;
+	}
+
+	public double getHigh( )
+	{
+		return high;
+	}
+
+	public double getLow( )
+	{
+		return low;
+	}
+
+	public double getClose( )
+	{
+		return close;
+	}
+
+	public double getVolume( )
+	{
+		return volume;
+	}
+
+	/**
+	 * @return			See CandleSeries.isFlagged( )
+	 */
+	public boolean isFlagged( )
+	{
+		return flagged;
+	}
+
+	/**
+	 * Returns this candle in the same JSON form the API uses
+	 * @return
+	 * @throws JSONException
+	 */
+	public JSONObject toJSONObject( ) throws JSONException
+	{
+		JSONObject candle = new JSONObject( );
+		candle.put( "timestamp", CandleSeries.formatTimestamp( timestamp ) );
+		candle.put( "open", CandleSeries.formatNumber( open ) );
+		candle.put( "close", CandleSeries.formatNumber( close ) );
+		candle.put( "high", CandleSeries.formatNumber( high ) );
+		candle.put( "low", CandleSeries.formatNumber( low ) );
+		candle.put( "volume", CandleSeries.formatNumber( volume ) );
+
+		if( flagged )
+			candle.put( "flagged", true );
+
+		return candle;
+	}
+
+	@Override
+	public boolean equals( Object other )
+	{
+		if( this == other )
+			return true;
+
+		if( !( other instanceof Candle ) )
+			return false;
+
+		Candle that = (Candle) other;
+		return timestamp == that.timestamp && Double.compare( open, that.open ) == 0 && Double.compare( high, that.high ) == 0
+				&& Double.compare( low, that.low ) == 0 && Double.compare( close, that.close ) == 0
+				&& Double.compare( volume, that.volume ) == 0 && flagged == that.flagged;
+	}
+
+	@Override
+	public int hashCode( )
+	{
+		long bits = Double.doubleToLongBits( close ) * 31 + Double.doubleToLongBits( volume );
+		return 31 * Long.hashCode( timestamp ) + Long.hashCode( bits );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return CandleSeries.formatTimestamp( timestamp ) + " O=" + open + " H=" + high + " L=" + low + " C=" + close + " V=" + volume
+				+ ( flagged ? " flagged" : "" );
+	}
+}
@@ -0,0 +1,408 @@
+package nomics.core;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import nomics.core.NomicsExchangeCandles.CANDLE_FILTER_MODE;
+
+/**
+ * Backfills the candles of many markets at several intervals into a sink, picking up where
+ * the last run stopped:
+ *
+ * List< Market > markets     = nomicsMarkets.getMarkets( key );
+ * CandleStore store          = new CandleStore( Paths.get( "candles" ) );
+ * BackfillCheckpoint done    = new BackfillCheckpoint( Paths.get( "candles", "backfill.checkpoint" ) );
+ * CandleBackfill backfill    = new CandleBackfill( nomicsExchangeCandles, markets, Arrays.asList( "1d", "1h" ), BatchExecutor.withVirtualThreads( 32 ), BackfillSink.of( store ), done )
+ * 		.addKey( key, new RateLimiter( 20, 20, RateLimiter.Mode.QUEUE ) )
+ * 		.setProgressListener( progress -> log.info( progress.toString( ) ) );
+ * BackfillProgress result    = backfill.run( 6, TimeUnit.HOURS );
+ *
+ * Every (exchange, market, interval) is one item of a work queue, downloaded by at most the
+ * batch's concurrency at once.  Each download takes a permit from the budget of one of the
+ * API keys, whichever has the most permits left.  Downloads are handed to the thread calling
+ * run( ) through a bounded buffer, which delivers them to the sink and then checkpoints them;
+ * when the sink falls behind the buffer fills and the downloads wait for it.
+ *
+ * Only closed candles newer than a market's checkpoint are downloaded and markets whose
+ * checkpoint is already at their newest closed candle cost no request at all, so a run that
+ * crashed or hit its deadline resumes where it stopped and a nightly run only fetches what
+ * closed since the last one.  A failed download is reported and left for the next run, it
+ * never stops the others.  Only one run may be in progress at a time.
+ * @author danielanderson
+ *
+ */
+public class CandleBackfill {
+
+	private final NomicsExchangeCandles nomicsExchangeCandles;
+
+	private final List< CandleQuery > queries;
+
+	private final BatchExecutor batch;
+
+	private final BackfillSink sink;
+
+	private final BackfillCheckpoint checkpoint;
+
+	/**
+	 * Rate budget of every API key, null for keys without one
+	 */
+	private final Map< String, RateLimiter > keys = Collections.synchronizedMap( new LinkedHashMap< String, RateLimiter >( ) );
+
+	private final Map< CandleQuery, Throwable > failures = new ConcurrentHashMap< CandleQuery, Throwable >( );
+
+	private final AtomicInteger completed = new AtomicInteger( );
+
+	private final AtomicInteger skipped = new AtomicInteger( );
+
+	private final AtomicInteger failed = new AtomicInteger( );
+
+	private final AtomicLong candles = new AtomicLong( );
+
+	private final AtomicBoolean running = new AtomicBoolean( );
+
+	private volatile long startedAt = System.nanoTime( );
+
+	private volatile long finishedAt = -1;
+
+	private volatile long start = -1;
+
+	private volatile int bufferSize = 64;
+
+	private volatile Consumer< BackfillProgress > progressListener;
+
+	/**
+	 * @param nomicsExchangeCandles	Wrapper used to fetch candles
+	 * @param markets				The markets to backfill ie. NomicsMarkets.getMarkets( )
+	 * @param intervals				Intervals to backfill every market at ie. "1d", "1h"
+	 * @param batch					Executor and concurrency limit for the downloads
+	 * @param sink					Where the candles go
+	 * @param checkpoint				Where progress is recorded
+	 */
+	public CandleBackfill( NomicsExchangeCandles nomicsExchangeCandles, Collection< Market > markets, Collection< String > intervals,
+			BatchExecutor batch, BackfillSink sink, BackfillCheckpoint checkpoint )
+	{
+		this.nomicsExchangeCandles = nomicsExchangeCandles;
+		this.batch                 = batch;
+		this.sink                  = sink;
+		this.checkpoint            = checkpoint;
+		this.queries               = new ArrayList< CandleQuery >( markets.size( ) * intervals.size( ) );
+
+		//Fail on a bad interval now, even with no markets, rather than once per market during a run
+		for( String interval : intervals )
+		{
+			Intervals.toMillis( interval );
+		}
+
+		for( Market market : markets )
+		{
+			for( String interval : intervals )
+			{
+				queries.add( new CandleQuery( market.getExchange( ), market.getMarket( ), interval, CANDLE_FILTER_MODE.NONE ) );
+			}
+		}
+	}
+
+	/**
+	 * Add an API key to spread the downloads over.  At least one key is needed
+	 * @param key			The API key
+	 * @param budget			Limiter every download made with the key takes a permit from, or
+	 * 						null for none.  QUEUE mode paces the downloads, FAIL_FAST fails
+	 * 						those over the budget and leaves them for the next run
+	 * @return				This backfill
+	 */
+	public CandleBackfill addKey( String key, RateLimiter budget )
+	{
+		keys.put( key, budget );
+		return this;
+	}
+
+	/**
+	 * @param start			Epoch milliseconds to backfill markets without a checkpoint from,
+	 * 						defaults to -1 for all the history the API has
+	 * @return				This backfill
+	 */
+	public CandleBackfill setStart( long start )
+	{
+		this.start = start;
+		return this;
+	}
+
+	/**
+	 * @param bufferSize		Downloads that may wait for the sink before the downloaders block,
+	 * 						defaults to 64
+	 * @return				This backfill
+	 */
+	public CandleBackfill setBufferSize( int bufferSize )
+	{
+		if( bufferSize < 1 )
+			throw new IllegalArgumentException( "bufferSize must be at least 1" );
+
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * @param progressListener	Called on the thread running the backfill after every market,
+	 * 							or null for none
+	 * @return					This backfill
+	 */
+	public CandleBackfill setProgressListener( Consumer< BackfillProgress > progressListener )
+	{
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * @return				Every (exchange, market, interval) of a run, in the order they are queued
+	 */
+	public List< CandleQuery > getQueries( )
+	{
+		return Collections.unmodifiableList( queries );
+	}
+
+	/**
+	 * @return				Progress of the current or last run, safe to call from any thread
+	 */
+	public BackfillProgress getProgress( )
+	{
+		long end = finishedAt < 0 ? System.nanoTime( ) : finishedAt;
+		return new BackfillProgress( queries.size( ), completed.get( ), skipped.get( ), failed.get( ), candles.get( ), TimeUnit.NANOSECONDS.toMillis( end - startedAt ) );
+	}
+
+	/**
+	 * @return				Markets whose download failed in the current or last run, with the reason
+	 */
+	public Map< CandleQuery, Throwable > getFailures( )
+	{
+		return Collections.unmodifiableMap( failures );
+	}
+
+	/**
+	 * Backfill every market, see run( duration, unit )
+	 * @return
+	 * @throws IOException
+	 */
+	public BackfillProgress run( ) throws IOException
+	{
+		return run( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Backfill every market, stopping early at a deadline.  Markets not started by the deadline
+	 * are left remaining for the next run, downloads already in flight are still delivered
+	 * @param duration		How long the run may start new downloads for
+	 * @param unit
+	 * @return				Progress at the end of the run
+	 * @throws IOException	If the sink or the checkpoint fails, or when interrupted.  Everything
+	 * 						delivered before that is checkpointed
+	 */
+	public BackfillProgress run( long duration, TimeUnit unit ) throws IOException
+	{
+		if( keys.isEmpty( ) )
+			throw new IllegalStateException( "No API key added" );
+
+		if( !running.compareAndSet( false, true ) )
+			throw new IllegalStateException( "A backfill run is already in progress" );
+
+		try
+		{
+			return backfill( unit.toNanos( duration ) );
+		}
+		finally
+		{
+			finishedAt = System.nanoTime( );
+			running.set( false );
+		}
+	}
+
+	/**
+	 * Internal method running one backfill with downloads on the batch and delivery on this thread
+	 */
+	private BackfillProgress backfill( long limitNanos ) throws IOException
+	{
+		failures.clear( );
+		completed.set( 0 );
+		skipped.set( 0 );
+		failed.set( 0 );
+		candles.set( 0 );
+		finishedAt = -1;
+		startedAt  = System.nanoTime( );
+
+		long now                         = System.currentTimeMillis( );
+		long began                       = startedAt;
+		BlockingQueue< Download > buffer = new ArrayBlockingQueue< Download >( bufferSize );
+		AtomicBoolean stopped            = new AtomicBoolean( );
+
+		Map< CandleQuery, CompletableFuture< Boolean > > results = batch.submitAll( queries, query -> {
+			Download download = System.nanoTime( ) - began > limitNanos || stopped.get( ) ? null : download( query, now );
+
+			if( download == null )
+				return false;
+
+			//Wait for room in the buffer, giving up if the run is abandoned
+			while( !buffer.offer( download, 100, TimeUnit.MILLISECONDS ) )
+			{
+				if( stopped.get( ) )
+					return false;
+			}
+
+			return true;
+		} );
+
+		CompletableFuture< Void > done = BatchExecutor.whenAllDone( results );
+
+		try
+		{
+			while( true )
+			{
+				Download download = buffer.poll( 100, TimeUnit.MILLISECONDS );
+
+				if( download != null )
+				{
+					deliver( download );
+				}
+				else if( done.isDone( ) && buffer.isEmpty( ) )
+				{
+					break;
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new IOException( "Interrupted while backfilling", e );
+		}
+		finally
+		{
+			stopped.set( true );
+		}
+
+		return getProgress( );
+	}
+
+	/**
+	 * Internal method downloading the closed candles of one market since its checkpoint
+	 * @return				The download, which may hold a failure, or null if the market is up to date
+	 */
+	private Download download( CandleQuery query, long now )
+	{
+		long intervalMillis = Intervals.toMillis( query.getInterval( ) );
+		long last           = checkpoint.getLastTimestamp( query );
+
+		//The candle after the checkpoint has not closed yet, there is nothing to fetch
+		if( last >= 0 && last + 2 * intervalMillis > now )
+		{
+			skipped.incrementAndGet( );
+			return null;
+		}
+
+		try
+		{
+			String key         = pickKey( );
+			RateLimiter budget = keys.get( key );
+
+			if( budget != null )
+				budget.acquire( );
+
+			CandleSeries update = nomicsExchangeCandles.getExchangeCandleSeries( key, query.getInterval( ), query.getExchange( ), query.getMarket( ),
+					query.getCandleFilterMode( ), last >= 0 ? last + intervalMillis : start );
+
+			//Candles still forming would be checkpointed before they are final
+			return new Download( query, update.between( Long.MIN_VALUE, now - intervalMillis + 1 ), null );
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			return new Download( query, null, e );
+		}
+		catch( Exception e )
+		{
+			return new Download( query, null, e );
+		}
+	}
+
+	/**
+	 * Internal method handing one download to the sink and checkpointing it
+	 */
+	private void deliver( Download download ) throws IOException
+	{
+		if( download.error != null )
+		{
+			failures.put( download.query, download.error );
+			failed.incrementAndGet( );
+		}
+		else
+		{
+			if( !download.candles.isEmpty( ) )
+			{
+				sink.accept( download.query, download.candles );
+				checkpoint.record( download.query, download.candles.getTimestamp( download.candles.size( ) - 1 ) );
+				candles.addAndGet( download.candles.size( ) );
+			}
+
+			completed.incrementAndGet( );
+		}
+
+		Consumer< BackfillProgress > listener = progressListener;
+
+		if( listener != null )
+			listener.accept( getProgress( ) );
+	}
+
+	/**
+	 * Internal method picking the API key with the most permits left
+	 */
+	private String pickKey( )
+	{
+		String best        = null;
+		double mostPermits = Double.NEGATIVE_INFINITY;
+
+		synchronized( keys )
+		{
+			for( Map.Entry< String, RateLimiter > entry : keys.entrySet( ) )
+			{
+				double permits = entry.getValue( ) == null ? Double.POSITIVE_INFINITY : entry.getValue( ).getAvailablePermits( );
+
+				if( permits > mostPermits )
+				{
+					best        = entry.getKey( );
+					mostPermits = permits;
+				}
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Candles downloaded for one market, or why the download failed
+	 */
+	private static final class Download {
+
+		private final CandleQuery query;
+
+		private final CandleSeries candles;
+
+		private final Throwable error;
+
+		Download( CandleQuery query, CandleSeries candles, Throwable error )
+		{
+			this.query   = query;
+			this.candles = candles;
+			this.error   = error;
+		}
+	}
+}
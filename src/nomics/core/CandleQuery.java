@@ -0,0 +1,83 @@
+package nomics.core;
+import nomics.core.NomicsExchangeCandles.CANDLE_FILTER_MODE;
+
+/**
+ * Immutable description of one exchange candle request, used as the item of a batch
+ * @author danielanderson
+ *
+ */
+public final class CandleQuery {
+
+	private final String exchange;
+
+	private final String market;
+
+	private final String interval;
+
+	private final CANDLE_FILTER_MODE candleFilterMode;
+
+	/**
+	 * @param exchange			The id for the exchange ie. "binance", "gdax" ...
+	 * @param market				The exchange's market id ie. "BTC-USD"
+	 * @param interval			The interval for the kline ie. "1h"
+	 * @param candleFilterMode	How candles that closed at 0 are handled
+	 */
+	public CandleQuery( String exchange, String market, String interval, CANDLE_FILTER_MODE candleFilterMode )
+	{
+		this.exchange         = exchange;
+		this.market           = market;
+		this.interval         = interval;
+		this.candleFilterMode = candleFilterMode;
+	}
+
+	public CandleQuery( String exchange, String market, String interval )
+	{
+		this( exchange, market, interval, CANDLE_FILTER_MODE.NONE );
+	}
+
+	public String getExchange( )
+	{
+		return exchange;
+	}
+
+	public String getMarket( )
+	{
+		return market;
+	}
+
+	public String getInterval( )
+	{
+		return interval;
+	}
+
+	public CANDLE_FILTER_MODE getCandleFilterMode( )
+	{
+		return candleFilterMode;
+	}
+
+	@Override
+	public boolean equals( Object other )
+	{
+		if( this == other )
+			return true;
+
+		if( !( other instanceof CandleQuery ) )
+			return false;
+
+		CandleQuery that = (CandleQuery) other;
+		return exchange.equals( that.exchange ) && market.equals( that.market ) && interval.equals( that.interval )
+				&& candleFilterMode == that.candleFilterMode;
+	}
+
+	@Override
+	public int hashCode( )
+	{
+		return 31 * ( 31 * ( 31 * exchange.hashCode( ) + market.hashCode( ) ) + interval.hashCode( ) ) + candleFilterMode.hashCode( );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return exchange + ":" + market + "@" + interval + ( candleFilterMode == CANDLE_FILTER_MODE.NONE ? "" : " " + candleFilterMode );
+	}
+}
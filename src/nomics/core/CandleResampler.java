@@ -0,0 +1,126 @@
+package nomics.core;
+
+/**
+ * Aggregates candles of one interval into a coarser one in a single pass over the series.
+ * Buckets are aligned to UTC clock boundaries rather than to candle counts, so a missing
+ * source candle never shifts the buckets that follow it: 4h candles always open at 00:00,
+ * 04:00, 08:00 ... UTC, daily candles at midnight UTC, weekly candles on Monday 00:00 UTC and
+ * other multi-day intervals on multiples of the interval since the epoch.
+ *
+ * Buckets with no source candles (gaps) are left out.  A bucket at the start or end of the
+ * series that is only partly covered by the source can be kept or dropped.  A bucket is
+ * flagged if any of its source candles is.
+ * @author danielanderson
+ *
+ */
+public final class CandleResampler {
+
+	/**
+	 * Weeks start on Monday, the epoch (1970-01-01) was a Thursday
+	 */
+	private static final long WEEK_ANCHOR = 4 * Intervals.DAY;
+
+	private CandleResampler( )
+	{
+	}
+
+	/**
+	 * Resample a series, keeping partial leading and trailing buckets
+	 * @param source				Candles sorted oldest first
+	 * @param sourceInterval		Interval of the source candles ie. "1h"
+	 * @param targetInterval		Interval to build ie. "4h", "3d", "1w"
+	 * @return
+	 */
+	public static CandleSeries resample( CandleSeries source, String sourceInterval, String targetInterval )
+	{
+		return resample( source, Intervals.toMillis( sourceInterval ), Intervals.toMillis( targetInterval ), true );
+	}
+
+	/**
+	 * Resample a series
+	 * @param source				Candles sorted oldest first
+	 * @param sourceMillis		Length of a source candle in milliseconds
+	 * @param targetMillis		Length of a target candle in milliseconds, a multiple of sourceMillis
+	 * @param includePartial		Whether to keep leading and trailing buckets the source does not fully cover
+	 * @return					The resampled candles, each stamped with the open time of its bucket
+	 */
+	public static CandleSeries resample( CandleSeries source, long sourceMillis, long targetMillis, boolean includePartial )
+	{
+		if( sourceMillis < 1 || targetMillis < sourceMillis || targetMillis % sourceMillis != 0 )
+			throw new IllegalArgumentException( "Cannot resample " + sourceMillis + "ms candles into " + targetMillis + "ms candles" );
+
+		int size = source.size( );
+
+		if( size == 0 )
+			return source;
+
+		long anchor = anchor( targetMillis );
+
+		CandleSeries.Builder builder = new CandleSeries.Builder( (int) Math.min( size, ( source.getTimestamp( size - 1 ) - source.getTimestamp( 0 ) ) / targetMillis + 2 ) );
+
+		long bucket   = bucketStart( source.getTimestamp( 0 ), targetMillis, anchor );
+		boolean whole = source.getTimestamp( 0 ) == bucket;
+		double open   = source.getOpen( 0 );
+		double high   = source.getHigh( 0 );
+		double low    = source.getLow( 0 );
+		double close  = source.getClose( 0 );
+		double volume = source.getVolume( 0 );
+		boolean flag  = source.isFlagged( 0 );
+
+		for( int i = 1; i < size; i++ )
+		{
+			long timestamp = source.getTimestamp( i );
+
+			if( timestamp - bucket >= targetMillis )
+			{
+				//Crossed into a new bucket, emit the one just finished
+				if( includePartial || whole )
+					builder.add( bucket, open, high, low, close, volume, flag );
+
+				bucket = bucketStart( timestamp, targetMillis, anchor );
+				whole  = true;
+				open   = source.getOpen( i );
+				high   = source.getHigh( i );
+				low    = source.getLow( i );
+				close  = source.getClose( i );
+				volume = source.getVolume( i );
+				flag   = source.isFlagged( i );
+			}
+			else
+			{
+				high    = Math.max( high, source.getHigh( i ) );
+				low     = Math.min( low, source.getLow( i ) );
+				close   = source.getClose( i );
+				volume += source.getVolume( i );
+				flag   |= source.isFlagged( i );
+			}
+		}
+
+		//The last bucket is only whole if the source runs to its end
+		if( includePartial || ( whole && source.getTimestamp( size - 1 ) + sourceMillis >= bucket + targetMillis ) )
+			builder.add( bucket, open, high, low, close, volume, flag );
+
+		return builder.build( );
+	}
+
+	/**
+	 * Returns the open time of the bucket a timestamp falls in
+	 * @param timestamp			Epoch milliseconds
+	 * @param targetMillis		Bucket length in milliseconds
+	 * @return
+	 */
+	public static long bucketStart( long timestamp, long targetMillis )
+	{
+		return bucketStart( timestamp, targetMillis, anchor( targetMillis ) );
+	}
+
+	private static long bucketStart( long timestamp, long targetMillis, long anchor )
+	{
+		return Math.floorDiv( timestamp - anchor, targetMillis ) * targetMillis + anchor;
+	}
+
+	private static long anchor( long targetMillis )
+	{
+		return targetMillis % Intervals.WEEK == 0 ? WEEK_ANCHOR : 0;
+	}
+}
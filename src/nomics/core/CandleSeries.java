@@ -0,0 +1,872 @@
+package nomics.core;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import nomics.core.NomicsExchangeCandles.CANDLE_FILTER_MODE;
+
+/**
+ * Immutable, columnar series of candles.  Timestamps are held as epoch milliseconds in a
+ * long[] and open/high/low/close/volume each in their own double[], so a candle response
+ * is decoded exactly once and can then be walked without parsing or allocating:
+ *
+ * for( int i = 0; i < series.size( ); i++ )
+ * {
+ *   sum += series.getClose( i );
+ * }
+ *
+ * A series may be a view over a window of a larger one, views share the underlying arrays.
+ * Candles the API returned with a 0 close can be flagged, see isFlagged( ).
+ * @author danielanderson
+ *
+ */
+public final class CandleSeries {
+
+	/**
+	 * Field names of a candle object, in the order the decoder switches on them
+	 */
+	private static final JsonReader.Names CANDLE_FIELDS = JsonReader.Names.of( "timestamp", "open", "high", "low", "close", "volume" );
+
+	private static final CandleSeries EMPTY = new CandleSeries( new long[ 0 ], new double[ 0 ], new double[ 0 ], new double[ 0 ], new double[ 0 ], new double[ 0 ], null, 0, 0 );
+
+	private final long[] timestamps;
+
+	private final double[] open;
+
+	private final double[] high;
+
+	private final double[] low;
+
+	private final double[] close;
+
+	private final double[] volume;
+
+	/**
+	 * Zero candle flags, null when no candle is flagged
+	 */
+	private final boolean[] flags;
+
+	/**
+	 * Index of the first candle of this series in the arrays
+	 */
+	private final int offset;
+
+	private final int size;
+
+	private CandleSeries( long[] timestamps, double[] open, double[] high, double[] low, double[] close, double[] volume, boolean[] flags, int offset, int size )
+	{
+		this.timestamps = timestamps;
+		this.open       = open;
+		this.high       = high;
+		this.low        = low;
+		this.close      = close;
+		this.volume     = volume;
+		this.flags      = flags;
+		this.offset     = offset;
+		this.size       = size;
+	}
+
+	/**
+	 * Returns the empty series
+	 * @return
+	 */
+	public static CandleSeries empty( )
+	{
+		return EMPTY;
+	}
+
+	public int size( )
+	{
+		return size;
+	}
+
+	public boolean isEmpty( )
+	{
+		return size == 0;
+	}
+
+	/**
+	 * @param i				Index of the candle, 0 being the oldest
+	 * @return				Open time of the candle in epoch milliseconds
+	 */
+	public long getTimestamp( int i )
+	{
+		return timestamps[ index( i ) ];
+	}
+
+	public double getOpen( int i )
+	{
+		return open[ index( i ) ];
+	}
+
+	public double getHigh( int i )
+	{
+		return high[ index( i ) ];
+	}
+
+	public double getLow( int i )
+	{
+		return low[ index( i ) ];
+	}
+
+	public double getClose( int i )
+	{
+		return close[ index( i ) ];
+	}
+
+	public double getVolume( int i )
+	{
+		return volume[ index( i ) ];
+	}
+
+	/**
+	 * @param i
+	 * @return				True if the API returned this candle with a 0 close.  Depending on the
+	 * 						filter mode it was decoded with its values may have been filled in
+	 */
+	public boolean isFlagged( int i )
+	{
+		int at = index( i );
+		return flags != null && flags[ at ];
+	}
+
+	/**
+	 * @param i				Index of the candle, 0 being the oldest
+	 * @return				The candle as an object
+	 */
+	public Candle get( int i )
+	{
+		int at = index( i );
+		return new Candle( timestamps[ at ], open[ at ], high[ at ], low[ at ], close[ at ], volume[ at ], flags != null && flags[ at ] );
+	}
+
+	/**
+	 * @return				The candles as objects, oldest first.  Walking the series by index
+	 * 						does the same without allocating
+	 */
+	public List< Candle > toList( )
+	{
+		List< Candle > candles = new ArrayList< Candle >( size );
+
+		for( int i = 0; i < size; i++ )
+		{
+			candles.add( get( i ) );
+		}
+
+		return candles;
+	}
+
+	/**
+	 * Build a series from candle objects
+	 * @param candles		The candles, oldest first
+	 * @return
+	 */
+	public static CandleSeries of( Collection< Candle > candles )
+	{
+		Builder builder = new Builder( candles.size( ) );
+
+		for( Candle candle : candles )
+		{
+			builder.add( candle );
+		}
+
+		return builder.build( );
+	}
+
+	/**
+	 * Returns a view of the candles in [from, to) sharing this series' arrays
+	 * @param from			Index of the first candle, inclusive
+	 * @param to				Index of the last candle, exclusive
+	 * @return
+	 */
+	public CandleSeries subSeries( int from, int to )
+	{
+		if( from < 0 || to > size || from > to )
+			throw new IndexOutOfBoundsException( "from: " + from + ", to: " + to + ", size: " + size );
+
+		if( from == 0 && to == size )
+			return this;
+
+		return new CandleSeries( timestamps, open, high, low, close, volume, flags, offset + from, to - from );
+	}
+
+	/**
+	 * Returns a view of the last n candles, or all of them if there are fewer than n
+	 * @param n
+	 * @return
+	 */
+	public CandleSeries last( int n )
+	{
+		return subSeries( size - Math.max( 0, Math.min( n, size ) ), size );
+	}
+
+	/**
+	 * Returns a view of the candles that opened in [from, to).  Candles are sorted oldest
+	 * first so both ends are found by binary search
+	 * @param from			Epoch milliseconds, inclusive
+	 * @param to				Epoch milliseconds, exclusive
+	 * @return				The window, empty if no candle opened in it
+	 */
+	public CandleSeries between( long from, long to )
+	{
+		if( to <= from )
+			return subSeries( 0, 0 );
+
+		return subSeries( ceilingIndex( from ), ceilingIndex( to ) );
+	}
+
+	/**
+	 * Returns a view of the candles that opened at or after a point in time
+	 * @param from			Epoch milliseconds, inclusive
+	 * @return
+	 */
+	public CandleSeries since( long from )
+	{
+		return subSeries( ceilingIndex( from ), size );
+	}
+
+	/**
+	 * @param timestamp		Epoch milliseconds
+	 * @return				Index of the candle that opened at exactly this time, or -1
+	 */
+	public int indexOf( long timestamp )
+	{
+		int i = ceilingIndex( timestamp );
+		return i < size && timestamps[ offset + i ] == timestamp ? i : -1;
+	}
+
+	/**
+	 * Nearest lookup at or before a point in time, ie. the candle that was open at that time
+	 * when there are no gaps
+	 * @param timestamp		Epoch milliseconds
+	 * @return				Index of the last candle that opened at or before timestamp, or -1
+	 */
+	public int floorIndex( long timestamp )
+	{
+		return timestamp == Long.MAX_VALUE ? size - 1 : ceilingIndex( timestamp + 1 ) - 1;
+	}
+
+	/**
+	 * Nearest lookup at or after a point in time
+	 * @param timestamp		Epoch milliseconds
+	 * @return				Index of the first candle that opened at or after timestamp, or size( )
+	 */
+	public int ceilingIndex( long timestamp )
+	{
+		int low  = offset;
+		int high = offset + size;
+
+		while( low < high )
+		{
+			int mid = ( low + high ) >>> 1;
+
+			if( timestamps[ mid ] < timestamp )
+				low = mid + 1;
+			else
+				high = mid;
+		}
+
+		return low - offset;
+	}
+
+	/**
+	 * Returns a copy of this series with every candle that closed at 0 removed
+	 * @return
+	 */
+	public CandleSeries omitZeros( )
+	{
+		return filter( CANDLE_FILTER_MODE.OMIT_ZEROS );
+	}
+
+	/**
+	 * Returns a copy of this series with every candle that closed at 0 replaced by the
+	 * previous non zero candle (keeping its own timestamp).  Leading zero candles are dropped
+	 * @return
+	 */
+	public CandleSeries replaceZeros( )
+	{
+		return filter( CANDLE_FILTER_MODE.REPLACE_ZEROS );
+	}
+
+	/**
+	 * Returns a copy of this series with candles that closed at 0 handled as the mode says.
+	 * Prefer decoding with read( reader, mode ), which does the same without the copy
+	 * @param candleFilterMode
+	 * @return
+	 */
+	public CandleSeries filter( CANDLE_FILTER_MODE candleFilterMode )
+	{
+		if( candleFilterMode == CANDLE_FILTER_MODE.NONE )
+			return this;
+
+		Builder builder   = new Builder( size );
+		ZeroFilter filter = new ZeroFilter( candleFilterMode );
+
+		for( int i = offset; i < offset + size; i++ )
+		{
+			filter.add( builder, timestamps[ i ], open[ i ], high[ i ], low[ i ], close[ i ], volume[ i ], flags != null && flags[ i ] );
+		}
+
+		return builder.build( );
+	}
+
+	/**
+	 * Returns candle i in the same JSON form the API uses
+	 * @param i
+	 * @return
+	 * @throws JSONException
+	 */
+	public JSONObject toJSONObject( int i ) throws JSONException
+	{
+		return get( i ).toJSONObject( );
+	}
+
+	/**
+	 * Returns the series as a JSON array in the same form the API uses
+	 * @return
+	 * @throws JSONException
+	 */
+	public JSONArray toJSONArray( ) throws JSONException
+	{
+		JSONArray candles = new JSONArray( );
+
+		for( int i = 0; i < size; i++ )
+		{
+			candles.put( toJSONObject( i ) );
+		}
+
+		return candles;
+	}
+
+	/**
+	 * Returns the series as a String representing a JSON array, for the String based methods
+	 * @return
+	 * @throws JSONException
+	 */
+	public String toJSON( ) throws JSONException
+	{
+		return toJSONArray( ).toString( );
+	}
+
+	/**
+	 * Decode a JSON array of candle objects in one pass
+	 * @param reader			Reader positioned at the start of the array
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static CandleSeries read( JsonReader reader ) throws IOException, JSONException
+	{
+		return read( reader, CANDLE_FILTER_MODE.NONE );
+	}
+
+	/**
+	 * Decode a JSON array of candle objects in one pass, handling candles that closed at 0
+	 * as they are decoded
+	 * @param reader				Reader positioned at the start of the array
+	 * @param candleFilterMode	What to do with candles that closed at 0
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public static CandleSeries read( JsonReader reader, CANDLE_FILTER_MODE candleFilterMode ) throws IOException, JSONException
+	{
+		Builder builder   = new Builder( 256 );
+		ZeroFilter filter = new ZeroFilter( candleFilterMode );
+
+		reader.beginArray( );
+
+		while( reader.hasNext( ) )
+		{
+			readCandle( reader, filter, builder );
+		}
+
+		reader.endArray( );
+
+		return builder.build( );
+	}
+
+	/**
+	 * Decode only the last candles of a JSON array of candle objects held in memory.  The array
+	 * is scanned backwards from its closing bracket and only the objects needed are decoded, so
+	 * the cost depends on count rather than on how much history the array holds.  Enough
+	 * candles are decoded for the filter mode to give the same result as filtering the whole
+	 * array, ie. OMIT_ZEROS keeps going back past zero candles and REPLACE_ZEROS / FILL_CLOSE
+	 * back to a non zero candle to fill from
+	 * @param data				Array holding the document
+	 * @param offset				Start of the document
+	 * @param length				Length of the document in bytes
+	 * @param count				Number of candles wanted
+	 * @param candleFilterMode	What to do with candles that closed at 0
+	 * @return					The last count candles, or all of them if there are fewer, oldest first
+	 * @throws JSONException		If the document does not end in an array of objects
+	 */
+	public static CandleSeries readLast( byte[] data, int offset, int length, int count, CANDLE_FILTER_MODE candleFilterMode ) throws JSONException
+	{
+		if( count < 1 )
+			return EMPTY;
+
+		//Raw candles newest first, the filter is applied oldest first once the window is known
+		Builder newestFirst = new Builder( count );
+		ZeroFilter none     = new ZeroFilter( CANDLE_FILTER_MODE.NONE );
+		int nonZero         = 0;
+		double earliest     = 0;
+		int pos             = skipWhitespace( data, offset + length - 1, offset );
+
+		if( pos < offset || data[ pos ] != ']' )
+			throw new JSONException( "Expected ] at the end of the candle array" );
+
+		pos = skipWhitespace( data, pos - 1, offset );
+
+		while( pos >= offset && data[ pos ] != '[' && !isEnough( candleFilterMode, count, newestFirst.size( ), nonZero, earliest ) )
+		{
+			if( newestFirst.size( ) > 0 )
+			{
+				if( data[ pos ] != ',' )
+					throw new JSONException( "Expected , before offset " + ( pos + 1 - offset ) );
+
+				pos = skipWhitespace( data, pos - 1, offset );
+			}
+
+			if( pos < offset || data[ pos ] != '}' )
+				throw new JSONException( "Expected } at offset " + ( pos - offset ) );
+
+			int start = objectStart( data, pos, offset );
+
+			try
+			{
+				earliest = readCandle( new JsonReader( data, start, pos + 1 - start ), none, newestFirst );
+			}
+			catch( IOException e )
+			{
+				//Cannot happen reading from memory
+				throw new JSONException( e );
+			}
+
+			if( earliest != 0 )
+				nonZero++;
+
+			pos = skipWhitespace( data, start - 1, offset );
+		}
+
+		if( pos < offset )
+			throw new JSONException( "Expected [ at the start of the candle array" );
+
+		CandleSeries raw  = newestFirst.build( );
+		Builder builder   = new Builder( raw.size( ) );
+		ZeroFilter filter = new ZeroFilter( candleFilterMode );
+
+		for( int i = raw.size( ) - 1; i >= 0; i-- )
+		{
+			filter.add( builder, raw.getTimestamp( i ), raw.getOpen( i ), raw.getHigh( i ), raw.getLow( i ), raw.getClose( i ), raw.getVolume( i ), false );
+		}
+
+		return builder.build( ).last( count );
+	}
+
+	/**
+	 * Internal method deciding whether the candles decoded so far by readLast( ) are enough
+	 * @param candleFilterMode
+	 * @param count				Number of candles wanted
+	 * @param decoded			Candles decoded so far
+	 * @param nonZero			How many of them did not close at 0
+	 * @param earliest			Close of the earliest one decoded
+	 * @return
+	 */
+	private static boolean isEnough( CANDLE_FILTER_MODE candleFilterMode, int count, int decoded, int nonZero, double earliest )
+	{
+		switch( candleFilterMode )
+		{
+			case OMIT_ZEROS:
+				return nonZero >= count;
+			case REPLACE_ZEROS:
+			case FILL_CLOSE:
+				//Zero candles in the window need the candle before them to be filled from
+				return decoded >= count && earliest != 0;
+			default:
+				return decoded >= count;
+		}
+	}
+
+	/**
+	 * Internal method returning the index of the { opening the object that closes at end.
+	 * Strings are skipped whole so brackets and braces inside them are ignored
+	 * @param data
+	 * @param end				Index of the closing }
+	 * @param offset				Start of the document
+	 * @return
+	 * @throws JSONException
+	 */
+	private static int objectStart( byte[] data, int end, int offset ) throws JSONException
+	{
+		int depth = 0;
+
+		for( int i = end; i >= offset; i-- )
+		{
+			switch( data[ i ] )
+			{
+				case '}':
+				case ']':
+					depth++;
+					break;
+				case '{':
+				case '[':
+					if( --depth == 0 )
+						return i;
+					break;
+				case '"':
+					i = stringStart( data, i, offset );
+					break;
+				default:
+			}
+		}
+
+		throw new JSONException( "Unbalanced candle object ending at offset " + ( end - offset ) );
+	}
+
+	/**
+	 * Internal method returning the index of the quote opening the string that closes at end.
+	 * Every quote inside a string is escaped, so the opening one is the first quote before end
+	 * that is preceded by an even number of backslashes
+	 * @param data
+	 * @param end				Index of the closing quote
+	 * @param offset				Start of the document
+	 * @return
+	 * @throws JSONException
+	 */
+	private static int stringStart( byte[] data, int end, int offset ) throws JSONException
+	{
+		for( int i = end - 1; i >= offset; i-- )
+		{
+			if( data[ i ] != '"' )
+				continue;
+
+			int backslashes = 0;
+
+			while( i - backslashes - 1 >= offset && data[ i - backslashes - 1 ] == '\\' )
+			{
+				backslashes++;
+			}
+
+			if( backslashes % 2 == 0 )
+				return i;
+		}
+
+		throw new JSONException( "Unterminated string ending at offset " + ( end - offset ) );
+	}
+
+	/**
+	 * Internal method stepping backwards over JSON whitespace
+	 * @return				Index of the first non whitespace byte at or before pos, or offset - 1
+	 */
+	private static int skipWhitespace( byte[] data, int pos, int offset )
+	{
+		while( pos >= offset && ( data[ pos ] == ' ' || data[ pos ] == '\n' || data[ pos ] == '\r' || data[ pos ] == '\t' ) )
+		{
+			pos--;
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Internal method decoding one candle object and passing it through a filter into a builder
+	 * @param reader			Reader positioned at the start of the object
+	 * @param filter
+	 * @param builder
+	 * @return				The candle's close, so callers can tell zero candles apart
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private static double readCandle( JsonReader reader, ZeroFilter filter, Builder builder ) throws IOException, JSONException
+	{
+		long timestamp = 0;
+		double o = 0, h = 0, l = 0, c = 0, v = 0;
+
+		reader.beginObject( );
+
+		while( reader.hasNext( ) )
+		{
+			switch( reader.nextName( CANDLE_FIELDS ) )
+			{
+				case 0:
+					timestamp = reader.nextTimestamp( );
+					break;
+				case 1:
+					o = reader.nextDouble( );
+					break;
+				case 2:
+					h = reader.nextDouble( );
+					break;
+				case 3:
+					l = reader.nextDouble( );
+					break;
+				case 4:
+					c = reader.nextDouble( );
+					break;
+				case 5:
+					v = reader.nextDouble( );
+					break;
+				default:
+					reader.skipValue( );
+			}
+		}
+
+		reader.endObject( );
+		filter.add( builder, timestamp, o, h, l, c, v, false );
+
+		return c;
+	}
+
+	/**
+	 * Decode a String representing a JSON array of candles
+	 * @param candles
+	 * @return
+	 * @throws JSONException
+	 */
+	public static CandleSeries parse( String candles ) throws JSONException
+	{
+		byte[] bytes = candles.getBytes( StandardCharsets.UTF_8 );
+
+		try
+		{
+			return read( new JsonReader( bytes, 0, bytes.length ) );
+		}
+		catch( IOException e )
+		{
+			//Cannot happen reading from memory
+			throw new JSONException( e );
+		}
+	}
+
+	/**
+	 * Format epoch milliseconds the way the API does ie. "2018-03-19T10:00:00Z"
+	 * @param timestamp
+	 * @return
+	 */
+	public static String formatTimestamp( long timestamp )
+	{
+		return Instant.ofEpochMilli( timestamp ).toString( );
+	}
+
+	/**
+	 * Parse a timestamp in the form the API uses ie. "2018-03-19T10:00:00Z" to epoch milliseconds
+	 * @param timestamp
+	 * @return
+	 */
+	public static long parseTimestamp( String timestamp )
+	{
+		return Instant.parse( timestamp ).toEpochMilli( );
+	}
+
+	/**
+	 * Same as parseTimestamp( ) for the String methods, which report a malformed timestamp
+	 * as the checked ParseException they declare
+	 * @param timestamp
+	 * @return
+	 * @throws ParseException	If the timestamp is not in the form the API uses
+	 */
+	static long parseTimestampStrict( String timestamp ) throws ParseException
+	{
+		try
+		{
+			return parseTimestamp( timestamp );
+		}
+		catch( DateTimeParseException e )
+		{
+			ParseException failure = new ParseException( timestamp, e.getErrorIndex( ) );
+			failure.initCause( e );
+			throw failure;
+		}
+	}
+
+	/**
+	 * Format a price or volume losslessly the way the API does ie. "8281.17307".  Values below
+	 * 1e-8 are kept as they are, Decimal8 is only used for arithmetic, never for output
+	 */
+	static String formatNumber( double value )
+	{
+		return BigDecimal.valueOf( value ).stripTrailingZeros( ).toPlainString( );
+	}
+
+	private int index( int i )
+	{
+		if( i < 0 || i >= size )
+			throw new IndexOutOfBoundsException( "index: " + i + ", size: " + size );
+
+		return offset + i;
+	}
+
+	/**
+	 * Applies a filter mode to candles on their way into a builder.  Remembers the last non
+	 * zero candle so zero candles can be filled from it
+	 */
+	private static final class ZeroFilter {
+
+		private final CANDLE_FILTER_MODE mode;
+
+		private boolean seen;
+
+		private double o, h, l, c, v;
+
+		ZeroFilter( CANDLE_FILTER_MODE mode )
+		{
+			this.mode = mode;
+		}
+
+		void add( Builder builder, long timestamp, double o, double h, double l, double c, double v, boolean flagged )
+		{
+			if( c != 0 )
+			{
+				builder.add( timestamp, o, h, l, c, v, flagged );
+				seen   = true;
+				this.o = o;
+				this.h = h;
+				this.l = l;
+				this.c = c;
+				this.v = v;
+				return;
+			}
+
+			switch( mode )
+			{
+				case OMIT_ZEROS:
+					break;
+				case REPLACE_ZEROS:
+					//Leading zero candles have nothing to be filled from and are dropped
+					if( seen )
+						builder.add( timestamp, this.o, this.h, this.l, this.c, this.v, true );
+					break;
+				case FILL_CLOSE:
+					if( seen )
+						builder.add( timestamp, this.c, this.c, this.c, this.c, 0, true );
+					break;
+				case FLAG_ZEROS:
+					builder.add( timestamp, o, h, l, c, v, true );
+					break;
+				default:
+					builder.add( timestamp, o, h, l, c, v, flagged );
+			}
+		}
+	}
+
+	/**
+	 * Accumulates candles into growable primitive arrays
+	 */
+	public static final class Builder {
+
+		private long[] timestamps;
+
+		private double[] open;
+
+		private double[] high;
+
+		private double[] low;
+
+		private double[] close;
+
+		private double[] volume;
+
+		private boolean[] flags;
+
+		private int size;
+
+		public Builder( int capacity )
+		{
+			capacity   = Math.max( capacity, 1 );
+			timestamps = new long[ capacity ];
+			open       = new double[ capacity ];
+			high       = new double[ capacity ];
+			low        = new double[ capacity ];
+			close      = new double[ capacity ];
+			volume     = new double[ capacity ];
+		}
+
+		/**
+		 * Append a candle, candles must be added oldest first
+		 * @return			This builder
+		 */
+		public Builder add( long timestamp, double o, double h, double l, double c, double v )
+		{
+			return add( timestamp, o, h, l, c, v, false );
+		}
+
+		/**
+		 * Append a candle that may be flagged, see CandleSeries.isFlagged( )
+		 * @return			This builder
+		 */
+		public Builder add( long timestamp, double o, double h, double l, double c, double v, boolean flagged )
+		{
+			if( size == timestamps.length )
+				grow( );
+
+			if( flagged )
+			{
+				if( flags == null )
+					flags = new boolean[ timestamps.length ];
+
+				flags[ size ] = true;
+			}
+
+			timestamps[ size ] = timestamp;
+			open[ size ]       = o;
+			high[ size ]       = h;
+			low[ size ]        = l;
+			close[ size ]      = c;
+			volume[ size ]     = v;
+			size++;
+			return this;
+		}
+
+		/**
+		 * Append a candle object, candles must be added oldest first
+		 * @return			This builder
+		 */
+		public Builder add( Candle candle )
+		{
+			return add( candle.getTimestamp( ), candle.getOpen( ), candle.getHigh( ), candle.getLow( ), candle.getClose( ), candle.getVolume( ), candle.isFlagged( ) );
+		}
+
+		public int size( )
+		{
+			return size;
+		}
+
+		/**
+		 * Returns the series built so far.  The builder must not be used afterwards
+		 * @return
+		 */
+		public CandleSeries build( )
+		{
+			if( size == 0 )
+				return EMPTY;
+
+			return new CandleSeries( timestamps, open, high, low, close, volume, flags, 0, size );
+		}
+
+		private void grow( )
+		{
+			int capacity = timestamps.length * 2;
+			timestamps   = Arrays.copyOf( timestamps, capacity );
+			open         = Arrays.copyOf( open, capacity );
+			high         = Arrays.copyOf( high, capacity );
+			low          = Arrays.copyOf( low, capacity );
+			close        = Arrays.copyOf( close, capacity );
+			volume       = Arrays.copyOf( volume, capacity );
+
+			if( flags != null )
+				flags = Arrays.copyOf( flags, capacity );
+		}
+	}
+}
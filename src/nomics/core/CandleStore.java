@@ -0,0 +1,447 @@
+package nomics.core;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only on-disk store of closed candles, one file per (exchange, market, interval):
+ *
+ * <directory>/<exchange>/<market>/<interval>.candles
+ *
+ * A candle never changes once it has closed, so history only ever needs to be downloaded
+ * once.  Each file is a 32 byte header followed by fixed width 48 byte records (timestamp,
+ * open, high, low, close, volume) and is read through a memory mapping, so reading years of
+ * candles is a copy out of the page cache with no network or JSON parsing:
+ *
+ * CandleStore store    = new CandleStore( Paths.get( "candles" ) );
+ * CandleSeries candles = nomicsExchangeCandles.getExchangeCandleSeries( key, "1m", "binance", "ETHBTC", CANDLE_FILTER_MODE.NONE, store );
+ *
+ * Appends are crash safe: records are written and forced to disk before the committed count
+ * in the header is, so a crash mid append leaves at most some trailing bytes that are ignored
+ * and truncated the next time the file is opened.  Any number of threads may read while one
+ * appends, readers only ever see committed records.  A store directory must only be written
+ * by one process at a time.
+ * @author danielanderson
+ *
+ */
+public class CandleStore implements Closeable {
+
+	/**
+	 * Exchange name under which aggregated (all exchange) candles are kept
+	 */
+	public static final String AGGREGATED = "@aggregated";
+
+	private static final int MAGIC = 0x4E435331;
+
+	private static final int VERSION = 1;
+
+	static final int HEADER_BYTES = 32;
+
+	static final int RECORD_BYTES = 48;
+
+	/**
+	 * Header offset of the committed record count
+	 */
+	private static final int COUNT_OFFSET = 16;
+
+	private final Path directory;
+
+	private final Map< Path, StoreFile > files = new ConcurrentHashMap< Path, StoreFile >( );
+
+	/**
+	 * Open (or create) a store
+	 * @param directory		Directory holding the candle files, created if missing
+	 * @throws IOException
+	 */
+	public CandleStore( Path directory ) throws IOException
+	{
+		this.directory = Files.createDirectories( directory );
+	}
+
+	/**
+	 * Read every stored candle
+	 * @param exchange		The id for the exchange ie. "binance", or AGGREGATED
+	 * @param market			The market ie. "BTC-USD", or the currency for aggregated candles
+	 * @param interval		The candle interval ie. "1m"
+	 * @return				The candles, oldest first
+	 * @throws IOException
+	 */
+	public CandleSeries read( String exchange, String market, String interval ) throws IOException
+	{
+		return read( exchange, market, interval, Long.MIN_VALUE, Long.MAX_VALUE );
+	}
+
+	/**
+	 * Read the stored candles that opened in [from, to).  The window is found by binary search
+	 * over the mapped records and only the records inside it are decoded
+	 * @param exchange		The id for the exchange ie. "binance", or AGGREGATED
+	 * @param market			The market ie. "BTC-USD", or the currency for aggregated candles
+	 * @param interval		The candle interval ie. "1m"
+	 * @param from			Epoch milliseconds, inclusive
+	 * @param to				Epoch milliseconds, exclusive
+	 * @return				The candles, oldest first
+	 * @throws IOException
+	 */
+	public CandleSeries read( String exchange, String market, String interval, long from, long to ) throws IOException
+	{
+		StoreFile file = existing( exchange, market, interval );
+		return file == null ? CandleSeries.empty( ) : file.read( from, to );
+	}
+
+	/**
+	 * @return				Open time of the newest stored candle, or -1 if there are none
+	 * @throws IOException
+	 */
+	public long getLastTimestamp( String exchange, String market, String interval ) throws IOException
+	{
+		StoreFile file = existing( exchange, market, interval );
+		return file == null ? -1 : file.lastTimestamp( );
+	}
+
+	/**
+	 * @return				Number of stored candles
+	 * @throws IOException
+	 */
+	public long size( String exchange, String market, String interval ) throws IOException
+	{
+		StoreFile file = existing( exchange, market, interval );
+		return file == null ? 0 : file.count;
+	}
+
+	/**
+	 * Append the closed candles of an update.  Candles at or before the newest stored one and
+	 * candles still forming at now are skipped, so the same update can be appended twice
+	 * @param exchange		The id for the exchange ie. "binance", or AGGREGATED
+	 * @param market			The market ie. "BTC-USD", or the currency for aggregated candles
+	 * @param interval		The candle interval ie. "1m"
+	 * @param candles		Candles as the API returned them, oldest first
+	 * @param now			Epoch milliseconds, candles that close after this are not stored
+	 * @return				Number of candles appended
+	 * @throws IOException
+	 */
+	public int append( String exchange, String market, String interval, CandleSeries candles, long now ) throws IOException
+	{
+		return file( exchange, market, interval ).append( candles, now - Intervals.toMillis( interval ) );
+	}
+
+	/**
+	 * Append the closed candles of an update and return the full history: everything stored
+	 * followed by the candles of the update that are still forming
+	 * @param exchange		The id for the exchange ie. "binance", or AGGREGATED
+	 * @param market			The market ie. "BTC-USD", or the currency for aggregated candles
+	 * @param interval		The candle interval ie. "1m"
+	 * @param update			Candles fetched since the newest stored one, oldest first
+	 * @param now			Epoch milliseconds
+	 * @return
+	 * @throws IOException
+	 */
+	public CandleSeries sync( String exchange, String market, String interval, CandleSeries update, long now ) throws IOException
+	{
+		StoreFile file = file( exchange, market, interval );
+
+		file.append( update, now - Intervals.toMillis( interval ) );
+
+		CandleSeries stored = file.read( Long.MIN_VALUE, Long.MAX_VALUE );
+		CandleSeries open   = update.since( stored.isEmpty( ) ? Long.MIN_VALUE : stored.getTimestamp( stored.size( ) - 1 ) + 1 );
+
+		if( open.isEmpty( ) )
+			return stored;
+
+		CandleSeries.Builder builder = new CandleSeries.Builder( stored.size( ) + open.size( ) );
+		copy( stored, builder );
+		copy( open, builder );
+		return builder.build( );
+	}
+
+	/**
+	 * Close every open file, the store must not be used afterwards
+	 */
+	@Override
+	public void close( ) throws IOException
+	{
+		for( StoreFile file : files.values( ) )
+		{
+			file.channel.close( );
+		}
+
+		files.clear( );
+	}
+
+	private static void copy( CandleSeries candles, CandleSeries.Builder builder )
+	{
+		for( int i = 0; i < candles.size( ); i++ )
+		{
+			builder.add( candles.getTimestamp( i ), candles.getOpen( i ), candles.getHigh( i ), candles.getLow( i ), candles.getClose( i ), candles.getVolume( i ) );
+		}
+	}
+
+	private StoreFile existing( String exchange, String market, String interval ) throws IOException
+	{
+		Path path = path( exchange, market, interval );
+		return files.containsKey( path ) || Files.exists( path ) ? file( exchange, market, interval ) : null;
+	}
+
+	private StoreFile file( String exchange, String market, String interval ) throws IOException
+	{
+		Path path      = path( exchange, market, interval );
+		StoreFile file = files.get( path );
+
+		if( file != null )
+			return file;
+
+		synchronized( files )
+		{
+			file = files.get( path );
+
+			if( file == null )
+			{
+				file = new StoreFile( path, Intervals.toMillis( interval ) );
+				files.put( path, file );
+			}
+
+			return file;
+		}
+	}
+
+	private Path path( String exchange, String market, String interval )
+	{
+		String exchangeDirectory = AGGREGATED.equals( exchange ) ? AGGREGATED : encode( exchange );
+		return directory.resolve( exchangeDirectory ).resolve( encode( market ) ).resolve( encode( interval ) + ".candles" );
+	}
+
+	/**
+	 * Make a name safe to use as a file name on any platform.  Anything but letters, digits,
+	 * '-' and '_' is percent encoded, so distinct names never share a file
+	 */
+	private static String encode( String name )
+	{
+		StringBuilder encoded = new StringBuilder( name.length( ) );
+
+		for( byte b : name.getBytes( StandardCharsets.UTF_8 ) )
+		{
+			if( ( b >= 'a' && b <= 'z' ) || ( b >= 'A' && b <= 'Z' ) || ( b >= '0' && b <= '9' ) || b == '-' || b == '_' )
+				encoded.append( (char) b );
+			else
+				encoded.append( '%' ).append( Character.toUpperCase( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ) ).append( Character.toUpperCase( Character.forDigit( b & 0xF, 16 ) ) );
+		}
+
+		return encoded.toString( );
+	}
+
+	/**
+	 * One candle file.  The writer is serialized on the instance, readers only look at the
+	 * first count records, which are never written again
+	 */
+	private static final class StoreFile {
+
+		private final FileChannel channel;
+
+		private volatile long count;
+
+		/**
+		 * Guards the mapping, separate from the writer so readers never wait on an fsync
+		 */
+		private final Object mappingLock = new Object( );
+
+		/**
+		 * Read only mapping of the first mappedCount records
+		 */
+		private MappedByteBuffer mapped;
+
+		private long mappedCount = -1;
+
+		StoreFile( Path path, long intervalMillis ) throws IOException
+		{
+			Files.createDirectories( path.getParent( ) );
+
+			channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+
+			try
+			{
+				if( channel.size( ) < HEADER_BYTES )
+				{
+					ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES );
+					header.putInt( MAGIC ).putInt( VERSION ).putLong( intervalMillis ).putLong( 0 ).putLong( 0 );
+					flip( header );
+					writeFully( header, 0 );
+					channel.truncate( HEADER_BYTES );
+					channel.force( true );
+				}
+
+				ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES );
+				readFully( header, 0 );
+				flip( header );
+
+				if( header.getInt( ) != MAGIC || header.getInt( ) != VERSION )
+					throw new IOException( path + " is not a candle store file" );
+
+				if( header.getLong( ) != intervalMillis )
+					throw new IOException( path + " holds candles of a different interval" );
+
+				count = header.getLong( );
+
+				long committed = HEADER_BYTES + count * RECORD_BYTES;
+
+				if( channel.size( ) < committed )
+					throw new IOException( path + " is truncated, header commits " + count + " candles" );
+
+				//Drop whatever an interrupted append left behind the committed records
+				if( channel.size( ) > committed )
+					channel.truncate( committed );
+			}
+			catch( IOException e )
+			{
+				channel.close( );
+				throw e;
+			}
+		}
+
+		long lastTimestamp( ) throws IOException
+		{
+			long n = count;
+
+			if( n == 0 )
+				return -1;
+
+			return mapping( n ).getLong( (int) ( ( n - 1 ) * RECORD_BYTES ) );
+		}
+
+		CandleSeries read( long from, long to ) throws IOException
+		{
+			long n = count;
+
+			if( n == 0 || to <= from )
+				return CandleSeries.empty( );
+
+			ByteBuffer records = mapping( n );
+			int first          = ceiling( records, n, from );
+			int last           = ceiling( records, n, to );
+
+			CandleSeries.Builder builder = new CandleSeries.Builder( last - first );
+
+			for( int i = first; i < last; i++ )
+			{
+				int at = i * RECORD_BYTES;
+				builder.add( records.getLong( at ), records.getDouble( at + 8 ), records.getDouble( at + 16 ), records.getDouble( at + 24 ), records.getDouble( at + 32 ), records.getDouble( at + 40 ) );
+			}
+
+			return builder.build( );
+		}
+
+		/**
+		 * @param maxTimestamp		Only candles opened at or before this are closed
+		 */
+		synchronized int append( CandleSeries candles, long maxTimestamp ) throws IOException
+		{
+			long last     = lastTimestamp( );
+			int from      = candles.ceilingIndex( last < 0 ? Long.MIN_VALUE : last + 1 );
+			int to        = candles.floorIndex( maxTimestamp ) + 1;
+
+			if( from >= to )
+				return 0;
+
+			ByteBuffer records = ByteBuffer.allocate( ( to - from ) * RECORD_BYTES );
+
+			for( int i = from; i < to; i++ )
+			{
+				records.putLong( candles.getTimestamp( i ) )
+					.putDouble( candles.getOpen( i ) )
+					.putDouble( candles.getHigh( i ) )
+					.putDouble( candles.getLow( i ) )
+					.putDouble( candles.getClose( i ) )
+					.putDouble( candles.getVolume( i ) );
+			}
+
+			flip( records );
+
+			//Records reach the disk before the header that commits them
+			writeFully( records, HEADER_BYTES + count * RECORD_BYTES );
+			channel.force( false );
+
+			ByteBuffer header = ByteBuffer.allocate( 8 );
+			header.putLong( count + to - from );
+			flip( header );
+			writeFully( header, COUNT_OFFSET );
+			channel.force( false );
+
+			count += to - from;
+			return to - from;
+		}
+
+		/**
+		 * Returns a view of the first n records, remapping only when the file has grown
+		 */
+		private ByteBuffer mapping( long n ) throws IOException
+		{
+			synchronized( mappingLock )
+			{
+				if( mappedCount < n )
+				{
+					if( n * RECORD_BYTES > Integer.MAX_VALUE )
+						throw new IOException( "Candle file is too large to map: " + n + " candles" );
+
+					mapped      = channel.map( FileChannel.MapMode.READ_ONLY, HEADER_BYTES, n * RECORD_BYTES );
+					mappedCount = n;
+				}
+
+				return ( (ByteBuffer) mapped ).duplicate( );
+			}
+		}
+
+		/**
+		 * Called through Buffer so classes built on a newer JDK still run on Java 8
+		 */
+		private static void flip( Buffer buffer )
+		{
+			buffer.flip( );
+		}
+
+		private static int ceiling( ByteBuffer records, long n, long timestamp )
+		{
+			int low  = 0;
+			int high = (int) n;
+
+			while( low < high )
+			{
+				int mid = ( low + high ) >>> 1;
+
+				if( records.getLong( mid * RECORD_BYTES ) < timestamp )
+					low = mid + 1;
+				else
+					high = mid;
+			}
+
+			return low;
+		}
+
+		private void writeFully( ByteBuffer buffer, long position ) throws IOException
+		{
+			while( buffer.hasRemaining( ) )
+			{
+				position += channel.write( buffer, position );
+			}
+		}
+
+		private void readFully( ByteBuffer buffer, long position ) throws IOException
+		{
+			while( buffer.hasRemaining( ) )
+			{
+				int read = channel.read( buffer, position );
+
+				if( read < 0 )
+					throw new IOException( "Unexpected end of candle file" );
+
+				position += read;
+			}
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package nomics.core;
+import java.io.IOException;
+
+import org.json.JSONException;
+
+import nomics.core.NomicsExchangeCandles.CANDLE_FILTER_MODE;
+
+/**
+ * Keeps the most recent candles of one (exchange, market, interval) in memory and brings
+ * them up to date incrementally.  Each refresh only asks the API for candles starting at the
+ * last one already held, merges the ones that arrived since, and replaces the last candle
+ * since it may still have been forming when it was first seen:
+ *
+ * CandleSynchronizer sync = new CandleSynchronizer( nomicsExchangeCandles, key, "binance", "ETHBTC", "1m", 500 );
+ * sync.refresh( );
+ * CandleSeries last25 = sync.getLast( 25 );
+ *
+ * Candles are kept in a fixed size ring buffer of primitive arrays, so memory is bounded by
+ * the capacity no matter how long the synchronizer runs.  Instances are thread safe.
+ * @author danielanderson
+ *
+ */
+public class CandleSynchronizer {
+
+	private final NomicsExchangeCandles nomicsExchangeCandles;
+
+	private final String key;
+
+	private final String exchange;
+
+	private final String market;
+
+	private final String interval;
+
+	private final long intervalMillis;
+
+	private final long[] timestamps;
+
+	private final double[] open;
+
+	private final double[] high;
+
+	private final double[] low;
+
+	private final double[] close;
+
+	private final double[] volume;
+
+	/**
+	 * Ring slot of the oldest candle
+	 */
+	private int head;
+
+	private int count;
+
+	/**
+	 * Create a synchronizer, nothing is fetched until the first refresh
+	 * @param nomicsExchangeCandles	Wrapper used to fetch candles
+	 * @param key					The API key
+	 * @param exchange				The id for the exchange ie. "binance", "gdax" ...
+	 * @param market					The exchange's market id ie. "BTC-USD"
+	 * @param interval				A native interval: 1d, 1h, 30m, 5m, 1m
+	 * @param capacity				How many of the most recent candles to keep
+	 */
+	public CandleSynchronizer( NomicsExchangeCandles nomicsExchangeCandles, String key, String exchange, String market, String interval, int capacity )
+	{
+		if( capacity < 1 )
+			throw new IllegalArgumentException( "capacity must be at least 1" );
+
+		this.nomicsExchangeCandles = nomicsExchangeCandles;
+		this.key                   = key;
+		this.exchange              = exchange;
+		this.market                = market;
+		this.interval              = interval;
+		this.intervalMillis        = Intervals.toMillis( interval );
+		this.timestamps            = new long[ capacity ];
+		this.open                  = new double[ capacity ];
+		this.high                  = new double[ capacity ];
+		this.low                   = new double[ capacity ];
+		this.close                 = new double[ capacity ];
+		this.volume                = new double[ capacity ];
+	}
+
+	/**
+	 * Fetch and merge the candles that arrived since the last refresh.  The first refresh only
+	 * asks for enough history to fill the buffer
+	 * @return				Number of candles added (a replaced last candle does not count)
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public int refresh( ) throws IOException, JSONException
+	{
+		long start;
+
+		synchronized( this )
+		{
+			start = count == 0 ? System.currentTimeMillis( ) - intervalMillis * timestamps.length : lastTimestamp( );
+		}
+
+		//The network call happens outside the lock so readers are never blocked on it
+		CandleSeries update = nomicsExchangeCandles.getExchangeCandleSeries( key, interval, exchange, market, CANDLE_FILTER_MODE.NONE, start );
+
+		return merge( update );
+	}
+
+	/**
+	 * Merge candles into the buffer.  Candles older than the last one held are ignored as
+	 * duplicates, one with the same timestamp replaces it, newer ones are appended
+	 * @param update			Candles sorted oldest first
+	 * @return				Number of candles added
+	 */
+	public synchronized int merge( CandleSeries update )
+	{
+		int added = 0;
+
+		for( int i = 0; i < update.size( ); i++ )
+		{
+			long timestamp = update.getTimestamp( i );
+			int slot;
+
+			if( count > 0 && timestamp < lastTimestamp( ) )
+			{
+				continue;
+			}
+			else if( count > 0 && timestamp == lastTimestamp( ) )
+			{
+				slot = slot( count - 1 );
+			}
+			else if( count < timestamps.length )
+			{
+				slot = slot( count++ );
+				added++;
+			}
+			else
+			{
+				//Full, overwrite the oldest candle
+				slot = head;
+				head = ( head + 1 ) % timestamps.length;
+				added++;
+			}
+
+			timestamps[ slot ] = timestamp;
+			open[ slot ]       = update.getOpen( i );
+			high[ slot ]       = update.getHigh( i );
+			low[ slot ]        = update.getLow( i );
+			close[ slot ]      = update.getClose( i );
+			volume[ slot ]     = update.getVolume( i );
+		}
+
+		return added;
+	}
+
+	/**
+	 * Returns a copy of the last n candles held, oldest first
+	 * @param n
+	 * @return
+	 */
+	public synchronized CandleSeries getLast( int n )
+	{
+		n = Math.max( 0, Math.min( n, count ) );
+
+		CandleSeries.Builder builder = new CandleSeries.Builder( n );
+
+		for( int i = count - n; i < count; i++ )
+		{
+			int slot = slot( i );
+			builder.add( timestamps[ slot ], open[ slot ], high[ slot ], low[ slot ], close[ slot ], volume[ slot ] );
+		}
+
+		return builder.build( );
+	}
+
+	/**
+	 * @return				The most recent candle held, or an empty series before the first refresh
+	 */
+	public CandleSeries getMostRecent( )
+	{
+		return getLast( 1 );
+	}
+
+	/**
+	 * @return				Open time of the most recent candle in epoch milliseconds, or -1 when empty
+	 */
+	public synchronized long getLastTimestamp( )
+	{
+		return count == 0 ? -1 : lastTimestamp( );
+	}
+
+	/**
+	 * @return				Number of candles held
+	 */
+	public synchronized int size( )
+	{
+		return count;
+	}
+
+	public int getCapacity( )
+	{
+		return timestamps.length;
+	}
+
+	public String getExchange( )
+	{
+		return exchange;
+	}
+
+	public String getMarket( )
+	{
+		return market;
+	}
+
+	public String getInterval( )
+	{
+		return interval;
+	}
+
+	private long lastTimestamp( )
+	{
+		return timestamps[ slot( count - 1 ) ];
+	}
+
+	private int slot( int i )
+	{
+		return ( head + i ) % timestamps.length;
+	}
+}
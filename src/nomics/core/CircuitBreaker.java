@@ -0,0 +1,138 @@
+package nomics.core;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending requests to an upstream that keeps failing.  After failureThreshold
+ * consecutive failures the breaker opens and every request fails fast with a
+ * CircuitOpenException.  Once openDuration has passed a single trial request is let through
+ * (half open): if it succeeds the breaker closes, if it fails the breaker opens again.
+ *
+ * Only failures of the upstream count: network errors, timeouts, 408, 429 and 5xx responses.
+ * Any other response, including a 404, proves the upstream is answering.  Instances are thread safe.
+ * @author danielanderson
+ *
+ */
+public class CircuitBreaker {
+
+	public enum State { CLOSED, OPEN, HALF_OPEN };
+
+	private final int failureThreshold;
+
+	private final long openDuration;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedAt;
+
+	/**
+	 * Whether the half open trial request is on the wire
+	 */
+	private boolean trialInFlight;
+
+	private long openCount;
+
+	/**
+	 * @param failureThreshold	Consecutive failures that open the breaker
+	 * @param openDuration		How long to fail fast before letting a trial request through
+	 * @param unit
+	 */
+	public CircuitBreaker( int failureThreshold, long openDuration, TimeUnit unit )
+	{
+		if( failureThreshold < 1 || openDuration < 0 )
+			throw new IllegalArgumentException( "failureThreshold must be positive and openDuration non negative" );
+
+		this.failureThreshold = failureThreshold;
+		this.openDuration     = unit.toNanos( openDuration );
+	}
+
+	/**
+	 * Ask to send a request.  Every true must be followed by one of onSuccess( ), onFailure( )
+	 * or onIgnored( )
+	 * @return				false while the breaker is open or its trial request is in flight
+	 */
+	public synchronized boolean tryAcquire( )
+	{
+		switch( state )
+		{
+			case CLOSED:
+				return true;
+
+			case OPEN:
+				if( System.nanoTime( ) - openedAt < openDuration )
+					return false;
+
+				state         = State.HALF_OPEN;
+				trialInFlight = true;
+				return true;
+
+			default:
+				if( trialInFlight )
+					return false;
+
+				trialInFlight = true;
+				return true;
+		}
+	}
+
+	/**
+	 * The upstream answered
+	 */
+	public synchronized void onSuccess( )
+	{
+		//A late answer to a request sent before the breaker opened proves nothing
+		if( state == State.OPEN )
+			return;
+
+		state               = State.CLOSED;
+		consecutiveFailures = 0;
+		trialInFlight       = false;
+	}
+
+	/**
+	 * The upstream failed
+	 */
+	public synchronized void onFailure( )
+	{
+		if( state == State.HALF_OPEN || ( state == State.CLOSED && ++consecutiveFailures >= failureThreshold ) )
+		{
+			state         = State.OPEN;
+			openedAt      = System.nanoTime( );
+			trialInFlight = false;
+			openCount++;
+		}
+	}
+
+	/**
+	 * The request never reached the upstream, ie. it was refused by a rate limiter
+	 */
+	public synchronized void onIgnored( )
+	{
+		trialInFlight = false;
+	}
+
+	public synchronized State getState( )
+	{
+		return state;
+	}
+
+	/**
+	 * @return				Number of times the breaker has opened
+	 */
+	public synchronized long getOpenCount( )
+	{
+		return openCount;
+	}
+
+	/**
+	 * @return				Milliseconds until a trial request is let through, 0 unless open
+	 */
+	public synchronized long getRemainingOpenMillis( )
+	{
+		if( state != State.OPEN )
+			return 0;
+
+		return Math.max( 0, TimeUnit.NANOSECONDS.toMillis( openDuration - ( System.nanoTime( ) - openedAt ) ) );
+	}
+}
@@ -0,0 +1,17 @@
+package nomics.core;
+import java.io.IOException;
+
+/**
+ * Thrown without touching the network while a CircuitBreaker is open
+ * @author danielanderson
+ *
+ */
+public class CircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CircuitOpenException( String message )
+	{
+		super( message );
+	}
+}
@@ -0,0 +1,121 @@
+package nomics.core;
+
+/**
+ * Receives telemetry from the HttpsClient transport.  Every method has an empty default so
+ * an implementation only overrides what it records; NONE records nothing and is what a
+ * client uses until told otherwise:
+ *
+ * InMemoryMetrics metrics = new InMemoryMetrics( );
+ * httpsClient.setMetrics( metrics );
+ * metrics.registerMBean( "nomics" );
+ *
+ * Endpoints are URL paths without the query ie. "/v1/prices", so API keys never reach an
+ * implementation.  Methods are called on the request threads and must be thread safe and cheap.
+ * @author danielanderson
+ *
+ */
+public interface ClientMetrics {
+
+	/**
+	 * Records nothing
+	 */
+	ClientMetrics NONE = new ClientMetrics( ) { };
+
+	/**
+	 * A request got a 2xx response and its body was read
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 * @param nanos			Time from opening the connection to the end of the body
+	 * @param bytes			Bytes received on the wire, before decompression
+	 */
+	default void requestCompleted( String endpoint, long nanos, long bytes )
+	{
+	}
+
+	/**
+	 * A request failed, either on the network or with a non 2xx status
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 * @param nanos			Time from opening the connection to the failure
+	 * @param status			The HTTP status, or -1 if there was no response
+	 */
+	default void requestFailed( String endpoint, long nanos, int status )
+	{
+	}
+
+	/**
+	 * A response body was decoded.  For streamed responses this includes reading the body
+	 * off of the connection, since the two overlap
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 * @param nanos			Time spent in the ResponseHandler
+	 */
+	default void responseDecoded( String endpoint, long nanos )
+	{
+	}
+
+	/**
+	 * A cacheable GET was looked up in the response cache
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 * @param hit			True if it was served from the cache
+	 */
+	default void cacheLookup( String endpoint, boolean hit )
+	{
+	}
+
+	/**
+	 * A conditional GET was answered 304 Not Modified and the last body was reused
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 */
+	default void responseNotModified( String endpoint )
+	{
+	}
+
+	/**
+	 * A GET joined an identical request already in flight instead of sending its own
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 */
+	default void requestCoalesced( String endpoint )
+	{
+	}
+
+	/**
+	 * A request waited on a rate limiter before being sent
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 * @param nanos			Time spent waiting
+	 */
+	default void rateLimitWaited( String endpoint, long nanos )
+	{
+	}
+
+	/**
+	 * A request was refused by a fail fast rate limiter
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 */
+	default void rateLimitRejected( String endpoint )
+	{
+	}
+
+	/**
+	 * A failed request is about to be retried
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 * @param attempt		The attempt that failed, 1 for the first
+	 * @param delayNanos		Backoff before the next attempt
+	 */
+	default void requestRetried( String endpoint, int attempt, long delayNanos )
+	{
+	}
+
+	/**
+	 * A slow request was hedged with a second copy
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 */
+	default void requestHedged( String endpoint )
+	{
+	}
+
+	/**
+	 * A request failed fast because the circuit breaker was open
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 */
+	default void circuitRejected( String endpoint )
+	{
+	}
+}
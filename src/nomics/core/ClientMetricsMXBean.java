@@ -0,0 +1,26 @@
+package nomics.core;
+import java.util.Map;
+
+/**
+ * JMX view of InMemoryMetrics, see InMemoryMetrics.registerMBean( )
+ * @author danielanderson
+ *
+ */
+public interface ClientMetricsMXBean {
+
+	/**
+	 * @return				Stats of every endpoint seen so far, keyed by URL path
+	 */
+	Map< String, EndpointStats > getEndpoints( );
+
+	long getRequests( );
+
+	long getFailures( );
+
+	long getBytesReceived( );
+
+	/**
+	 * Forget everything recorded so far
+	 */
+	void reset( );
+}
@@ -0,0 +1,315 @@
+package nomics.core;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One market's candles consolidated across a chosen set of exchanges.  For every open time
+ * reported by at least one exchange there is a single candle with the volume weighted open and
+ * close of the venues, the highest high, the lowest low and the summed volume, next to the
+ * volume each venue contributed:
+ *
+ * ConsolidatedCandles btcUsd = nomicsExchangeCandles.getConsolidatedCandles( key, "1h", catalog.getMarketsForPair( "BTC", "USD" ), CANDLE_FILTER_MODE.OMIT_ZEROS, batch );
+ * double vwClose        = btcUsd.getCandles( ).getClose( i );
+ * double gdaxShare      = btcUsd.getVolumeShare( i, btcUsd.indexOf( "gdax" ) );
+ *
+ * Built by merge( ), a k-way merge of the sorted per exchange series in a single pass.
+ * Candles with a 0 close carry no price and are left out, when every venue traded no volume the
+ * open and close are plain averages.  A consolidated candle is flagged if any of its venue
+ * candles is.  Complements NomicsAggregatedCandles, which always covers every exchange.
+ * @author danielanderson
+ *
+ */
+public final class ConsolidatedCandles {
+
+	private final String[] exchanges;
+
+	private final CandleSeries candles;
+
+	/**
+	 * Volume of venue v in candle i at [ i * exchanges.length + v ], NaN when it had no candle
+	 */
+	private final double[] venueVolumes;
+
+	private ConsolidatedCandles( String[] exchanges, CandleSeries candles, double[] venueVolumes )
+	{
+		this.exchanges    = exchanges;
+		this.candles      = candles;
+		this.venueVolumes = venueVolumes;
+	}
+
+	/**
+	 * Merge per exchange series of the same market and interval
+	 * @param series			Candles by exchange id, each sorted oldest first.  Iteration order
+	 * 						gives the venue indexes
+	 * @return
+	 */
+	public static ConsolidatedCandles merge( Map< String, CandleSeries > series )
+	{
+		int venues           = series.size( );
+		String[] exchanges   = new String[ venues ];
+		CandleSeries[] input = new CandleSeries[ venues ];
+		int capacity         = 0;
+		int v                = 0;
+
+		for( Map.Entry< String, CandleSeries > entry : series.entrySet( ) )
+		{
+			exchanges[ v ] = entry.getKey( );
+			input[ v ]     = entry.getValue( );
+			capacity       = Math.max( capacity, input[ v ].size( ) );
+			v++;
+		}
+
+		CandleSeries.Builder builder = new CandleSeries.Builder( capacity );
+		double[] venueVolumes        = new double[ Math.max( capacity, 1 ) * venues ];
+
+		//Position in each series, and a min heap of the venues that have candles left keyed on
+		//the open time of their next candle
+		int[] cursor = new int[ venues ];
+		int[] heap   = new int[ venues ];
+		int heapSize = 0;
+
+		for( v = 0; v < venues; v++ )
+		{
+			if( !input[ v ].isEmpty( ) )
+				heapSize = push( heap, heapSize, v, input, cursor );
+		}
+
+		while( heapSize > 0 )
+		{
+			long timestamp = input[ heap[ 0 ] ].getTimestamp( cursor[ heap[ 0 ] ] );
+			int row        = builder.size( );
+
+			if( ( row + 1 ) * venues > venueVolumes.length )
+				venueVolumes = Arrays.copyOf( venueVolumes, venueVolumes.length * 2 );
+
+			Arrays.fill( venueVolumes, row * venues, ( row + 1 ) * venues, Double.NaN );
+
+			double high        = Double.NEGATIVE_INFINITY;
+			double low         = Double.POSITIVE_INFINITY;
+			double volume      = 0;
+			double openVolume  = 0;
+			double closeVolume = 0;
+			double openSum     = 0;
+			double closeSum    = 0;
+			int priced         = 0;
+			boolean flagged    = false;
+
+			//Pop every venue with a candle at this open time
+			while( heapSize > 0 && input[ heap[ 0 ] ].getTimestamp( cursor[ heap[ 0 ] ] ) == timestamp )
+			{
+				int venue           = heap[ 0 ];
+				CandleSeries source = input[ venue ];
+				int i               = cursor[ venue ];
+				double close        = source.getClose( i );
+
+				if( close != 0 )
+				{
+					double open   = source.getOpen( i );
+					double traded = source.getVolume( i );
+
+					high         = Math.max( high, source.getHigh( i ) );
+					low          = Math.min( low, source.getLow( i ) );
+					volume      += traded;
+					openVolume  += open * traded;
+					closeVolume += close * traded;
+					openSum     += open;
+					closeSum    += close;
+					flagged     |= source.isFlagged( i );
+					priced++;
+
+					venueVolumes[ row * venues + venue ] = traded;
+				}
+
+				heapSize = pop( heap, heapSize, input, cursor );
+
+				if( ++cursor[ venue ] < source.size( ) )
+					heapSize = push( heap, heapSize, venue, input, cursor );
+			}
+
+			if( priced == 0 )
+				continue;
+
+			double open  = volume > 0 ? openVolume / volume : openSum / priced;
+			double close = volume > 0 ? closeVolume / volume : closeSum / priced;
+
+			builder.add( timestamp, open, high, low, close, volume, flagged );
+		}
+
+		return new ConsolidatedCandles( exchanges, builder.build( ), venueVolumes );
+	}
+
+	/**
+	 * @return				The consolidated candles, oldest first
+	 */
+	public CandleSeries getCandles( )
+	{
+		return candles;
+	}
+
+	public int size( )
+	{
+		return candles.size( );
+	}
+
+	/**
+	 * @return				The exchanges merged, in venue index order
+	 */
+	public List< String > getExchanges( )
+	{
+		return Collections.unmodifiableList( Arrays.asList( exchanges ) );
+	}
+
+	/**
+	 * @param exchange		The id for the exchange ie. "gdax"
+	 * @return				Its venue index, or -1 if it was not merged
+	 */
+	public int indexOf( String exchange )
+	{
+		for( int v = 0; v < exchanges.length; v++ )
+		{
+			if( exchanges[ v ].equals( exchange ) )
+				return v;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @param i				Index of the consolidated candle
+	 * @param venue			Venue index, see indexOf( )
+	 * @return				Volume the venue traded in this candle, NaN if it had no priced candle
+	 */
+	public double getVenueVolume( int i, int venue )
+	{
+		if( i < 0 || i >= candles.size( ) || venue < 0 || venue >= exchanges.length )
+			throw new IndexOutOfBoundsException( "candle: " + i + ", venue: " + venue );
+
+		return venueVolumes[ i * exchanges.length + venue ];
+	}
+
+	/**
+	 * @param i				Index of the consolidated candle
+	 * @param venue			Venue index, see indexOf( )
+	 * @return				Fraction of the candle's volume traded on the venue, 0 if it had no
+	 * 						candle or the candle has no volume
+	 */
+	public double getVolumeShare( int i, int venue )
+	{
+		double venueVolume = getVenueVolume( i, venue );
+		double volume      = candles.getVolume( i );
+
+		return Double.isNaN( venueVolume ) || volume == 0 ? 0 : venueVolume / volume;
+	}
+
+	/**
+	 * @param venue			Venue index, see indexOf( )
+	 * @return				Fraction of the volume of the whole series traded on the venue
+	 */
+	public double getVolumeShare( int venue )
+	{
+		if( venue < 0 || venue >= exchanges.length )
+			throw new IndexOutOfBoundsException( "venue: " + venue );
+
+		double venueVolume = 0;
+		double volume      = 0;
+
+		for( int i = 0; i < candles.size( ); i++ )
+		{
+			double traded = venueVolumes[ i * exchanges.length + venue ];
+
+			if( !Double.isNaN( traded ) )
+				venueVolume += traded;
+
+			volume += candles.getVolume( i );
+		}
+
+		return volume == 0 ? 0 : venueVolume / volume;
+	}
+
+	/**
+	 * @param i				Index of the consolidated candle
+	 * @return				Number of venues with a priced candle at this open time
+	 */
+	public int getVenueCount( int i )
+	{
+		int count = 0;
+
+		for( int v = 0; v < exchanges.length; v++ )
+		{
+			if( !Double.isNaN( getVenueVolume( i, v ) ) )
+				count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Internal method to add a venue to the heap, ordered by the open time of its next candle
+	 * then by venue index
+	 */
+	private static int push( int[] heap, int size, int venue, CandleSeries[] input, int[] cursor )
+	{
+		int child = size;
+		heap[ child ] = venue;
+
+		while( child > 0 )
+		{
+			int parent = ( child - 1 ) >>> 1;
+
+			if( !before( heap[ child ], heap[ parent ], input, cursor ) )
+				break;
+
+			swap( heap, child, parent );
+			child = parent;
+		}
+
+		return size + 1;
+	}
+
+	/**
+	 * Internal method to remove the head of the heap
+	 */
+	private static int pop( int[] heap, int size, CandleSeries[] input, int[] cursor )
+	{
+		size--;
+		heap[ 0 ] = heap[ size ];
+
+		int parent = 0;
+
+		while( true )
+		{
+			int child = 2 * parent + 1;
+
+			if( child >= size )
+				break;
+
+			if( child + 1 < size && before( heap[ child + 1 ], heap[ child ], input, cursor ) )
+				child++;
+
+			if( !before( heap[ child ], heap[ parent ], input, cursor ) )
+				break;
+
+			swap( heap, child, parent );
+			parent = child;
+		}
+
+		return size;
+	}
+
+	private static boolean before( int a, int b, CandleSeries[] input, int[] cursor )
+	{
+		long timestampA = input[ a ].getTimestamp( cursor[ a ] );
+		long timestampB = input[ b ].getTimestamp( cursor[ b ] );
+
+		return timestampA < timestampB || ( timestampA == timestampB && a < b );
+	}
+
+	private static void swap( int[] heap, int i, int j )
+	{
+		int venue = heap[ i ];
+		heap[ i ] = heap[ j ];
+		heap[ j ] = venue;
+	}
+}
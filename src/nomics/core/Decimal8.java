@@ -0,0 +1,360 @@
+package nomics.core;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed point decimals with 8 digits after the point, the precision nomics prices are quoted
+ * in, held as a plain long counting units of 0.00000001:
+ *
+ * long price = Decimal8.parse( "8909.7211" );		//890972110000
+ * long ratio = Decimal8.divide( price, Decimal8.parse( "0.0321" ), RoundingMode.DOWN );
+ * String out = Decimal8.toString( ratio );
+ *
+ * Values are longs, so nothing is allocated to hold, add, compare or divide them and results
+ * never pick up the binary noise of a double.  Every magnitude up to about 92 billion is
+ * representable; operations that overflow throw an ArithmeticException rather than wrap.
+ * @author danielanderson
+ *
+ */
+public final class Decimal8 {
+
+	/**
+	 * Digits after the decimal point
+	 */
+	public static final int SCALE = 8;
+
+	/**
+	 * 1 as a Decimal8
+	 */
+	public static final long ONE = 100000000L;
+
+	public static final long ZERO = 0L;
+
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L };
+
+	private Decimal8( )
+	{
+	}
+
+	/**
+	 * Parse a plain decimal ie. "8909.7211" or "-0.5".  Digits past the 8th decimal are dropped
+	 * (rounded down), as is done to every price before use
+	 * @param value
+	 * @return
+	 * @throws NumberFormatException	If the value is not a number or is out of range
+	 */
+	public static long parse( CharSequence value )
+	{
+		long units = parse( null, value, 0, value.length( ) );
+
+		if( units != Long.MIN_VALUE )
+			return units;
+
+		//Exponents and out of range values
+		try
+		{
+			return fromBigDecimal( new BigDecimal( value.toString( ) ), RoundingMode.DOWN );
+		}
+		catch( ArithmeticException e )
+		{
+			throw new NumberFormatException( "Out of Decimal8 range: " + value );
+		}
+	}
+
+	/**
+	 * Parse a plain decimal out of ASCII bytes without allocating
+	 * @param ascii
+	 * @param from			Index of the first character
+	 * @param to				Index past the last character
+	 * @return				The value, or Long.MIN_VALUE if it is not a plain decimal in range
+	 * 						(exponents are left to the caller)
+	 */
+	static long parse( byte[] ascii, int from, int to )
+	{
+		return parse( ascii, null, from, to );
+	}
+
+	/**
+	 * Internal method parsing either ASCII bytes or characters, whichever is not null
+	 */
+	private static long parse( byte[] ascii, CharSequence chars, int from, int to )
+	{
+		int i         = from;
+		boolean minus = false;
+		char first    = i < to ? charAt( ascii, chars, i ) : 0;
+
+		if( first == '-' || first == '+' )
+		{
+			minus = first == '-';
+			i++;
+		}
+
+		long units   = 0;
+		int fraction = -1;
+		int digits   = 0;
+
+		for( ; i < to; i++ )
+		{
+			char c = charAt( ascii, chars, i );
+
+			if( c >= '0' && c <= '9' )
+			{
+				digits++;
+
+				if( fraction >= SCALE )
+					continue;
+
+				if( units > ( Long.MAX_VALUE - 9 ) / 10 )
+					return Long.MIN_VALUE;
+
+				units = units * 10 + ( c - '0' );
+
+				if( fraction >= 0 )
+					fraction++;
+			}
+			else if( c == '.' && fraction < 0 )
+			{
+				fraction = 0;
+			}
+			else
+			{
+				return Long.MIN_VALUE;
+			}
+		}
+
+		if( digits == 0 )
+			return Long.MIN_VALUE;
+
+		int scaleUp = SCALE - Math.max( fraction, 0 );
+
+		if( units > Long.MAX_VALUE / POWERS_OF_TEN[ scaleUp ] )
+			return Long.MIN_VALUE;
+
+		units *= POWERS_OF_TEN[ scaleUp ];
+		return minus ? -units : units;
+	}
+
+	/**
+	 * Round a double to the nearest Decimal8, ie. 8566.43 (stored as 8566.42999999999...) becomes
+	 * exactly 8566.43
+	 * @param value
+	 * @return
+	 * @throws ArithmeticException	If the value is not finite or out of range
+	 */
+	public static long fromDouble( double value )
+	{
+		double scaled = value * ONE;
+
+		if( Double.isNaN( scaled ) || Math.abs( scaled ) >= 0x1p63 )
+			throw new ArithmeticException( "Out of Decimal8 range: " + value );
+
+		return Math.round( scaled );
+	}
+
+	public static double toDouble( long units )
+	{
+		return (double) units / ONE;
+	}
+
+	/**
+	 * @param value
+	 * @param roundingMode	How to drop digits past the 8th decimal
+	 * @return
+	 * @throws ArithmeticException	If the value is out of range
+	 */
+	public static long fromBigDecimal( BigDecimal value, RoundingMode roundingMode )
+	{
+		return value.setScale( SCALE, roundingMode ).unscaledValue( ).longValueExact( );
+	}
+
+	/**
+	 * @param units
+	 * @return				The value as a BigDecimal with a scale of 8
+	 */
+	public static BigDecimal toBigDecimal( long units )
+	{
+		return BigDecimal.valueOf( units, SCALE );
+	}
+
+	public static long add( long a, long b )
+	{
+		return Math.addExact( a, b );
+	}
+
+	public static long subtract( long a, long b )
+	{
+		return Math.subtractExact( a, b );
+	}
+
+	public static int compare( long a, long b )
+	{
+		return Long.compare( a, b );
+	}
+
+	public static long min( long a, long b )
+	{
+		return Math.min( a, b );
+	}
+
+	public static long max( long a, long b )
+	{
+		return Math.max( a, b );
+	}
+
+	/**
+	 * Multiply, rounding the product to 8 decimals
+	 * @param a
+	 * @param b
+	 * @param roundingMode
+	 * @return
+	 */
+	public static long multiply( long a, long b, RoundingMode roundingMode )
+	{
+		long product;
+
+		try
+		{
+			product = Math.multiplyExact( a, b );
+		}
+		catch( ArithmeticException e )
+		{
+			//The exact product needs more than 64 bits
+			return fromBigDecimal( toBigDecimal( a ).multiply( toBigDecimal( b ) ), roundingMode );
+		}
+
+		return divide( product, ONE, 0, roundingMode );
+	}
+
+	/**
+	 * Divide, rounding the quotient to 8 decimals.  Long division on longs, allocation free as
+	 * long as the divisor is below about 9 billion
+	 * @param dividend
+	 * @param divisor
+	 * @param roundingMode
+	 * @return
+	 * @throws ArithmeticException	On division by zero, overflow or an inexact UNNECESSARY
+	 */
+	public static long divide( long dividend, long divisor, RoundingMode roundingMode )
+	{
+		if( divisor == 0 )
+			throw new ArithmeticException( "Division by zero" );
+
+		if( dividend == Long.MIN_VALUE || divisor == Long.MIN_VALUE || Math.abs( divisor ) > Long.MAX_VALUE / 10 )
+			return fromBigDecimal( toBigDecimal( dividend ).divide( toBigDecimal( divisor ), SCALE, roundingMode ), roundingMode );
+
+		return divide( dividend, divisor, SCALE, roundingMode );
+	}
+
+	/**
+	 * Internal method computing dividend / divisor * 10^digits, rounded
+	 */
+	private static long divide( long dividend, long divisor, int digits, RoundingMode roundingMode )
+	{
+		boolean negative = ( dividend < 0 ) != ( divisor < 0 );
+		long a           = Math.abs( dividend );
+		long b           = Math.abs( divisor );
+		long quotient    = a / b;
+		long remainder   = a % b;
+
+		//One decimal digit at a time, remainder < b so remainder * 10 cannot overflow
+		for( int d = 0; d < digits; d++ )
+		{
+			remainder *= 10;
+			quotient   = Math.addExact( Math.multiplyExact( quotient, 10 ), remainder / b );
+			remainder %= b;
+		}
+
+		if( remainder != 0 && roundUp( quotient, remainder, b, negative, roundingMode ) )
+			quotient = Math.addExact( quotient, 1 );
+
+		return negative ? -quotient : quotient;
+	}
+
+	/**
+	 * Whether to increment the magnitude of a truncated quotient
+	 */
+	private static boolean roundUp( long quotient, long remainder, long divisor, boolean negative, RoundingMode roundingMode )
+	{
+		//Compare the remainder with half of the divisor without overflowing
+		int half = Long.compare( remainder, divisor - remainder );
+
+		switch( roundingMode )
+		{
+			case DOWN:
+				return false;
+			case UP:
+				return true;
+			case FLOOR:
+				return negative;
+			case CEILING:
+				return !negative;
+			case HALF_UP:
+				return half >= 0;
+			case HALF_DOWN:
+				return half > 0;
+			case HALF_EVEN:
+				return half > 0 || ( half == 0 && ( quotient & 1 ) == 1 );
+			default:
+				throw new ArithmeticException( "Rounding necessary" );
+		}
+	}
+
+	/**
+	 * Format as a plain decimal with trailing zeros dropped ie. "8909.7211", "0.5" or "100"
+	 * @param units
+	 * @return
+	 */
+	public static String toString( long units )
+	{
+		return appendTo( new StringBuilder( 24 ), units ).toString( );
+	}
+
+	/**
+	 * Append as a plain decimal with trailing zeros dropped, see toString( )
+	 * @param builder
+	 * @param units
+	 * @return				The builder
+	 */
+	public static StringBuilder appendTo( StringBuilder builder, long units )
+	{
+		if( units == Long.MIN_VALUE )
+			return builder.append( toBigDecimal( units ).stripTrailingZeros( ).toPlainString( ) );
+
+		if( units < 0 )
+		{
+			builder.append( '-' );
+			units = -units;
+		}
+
+		builder.append( units / ONE );
+
+		long fraction = units % ONE;
+
+		if( fraction != 0 )
+		{
+			int digits = SCALE;
+
+			while( fraction % 10 == 0 )
+			{
+				fraction /= 10;
+				digits--;
+			}
+
+			builder.append( '.' );
+
+			for( int d = digits - 1; d > 0 && fraction < POWERS_OF_TEN[ d ]; d-- )
+			{
+				builder.append( '0' );
+			}
+
+			builder.append( fraction );
+		}
+
+		return builder;
+	}
+
+	private static char charAt( byte[] ascii, CharSequence chars, int i )
+	{
+		return ascii != null ? (char) ( ascii[ i ] & 0xFF ) : chars.charAt( i );
+	}
+}
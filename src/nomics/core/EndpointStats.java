@@ -0,0 +1,228 @@
+package nomics.core;
+import java.beans.ConstructorProperties;
+
+/**
+ * Point in time view of the metrics InMemoryMetrics keeps for one endpoint.  Durations are
+ * in milliseconds
+ * @author danielanderson
+ *
+ */
+public final class EndpointStats {
+
+	private final String endpoint;
+
+	private final long requests;
+
+	private final long failures;
+
+	private final double latencyP50;
+
+	private final double latencyP99;
+
+	private final double latencyP999;
+
+	private final double latencyMax;
+
+	private final long bytesReceived;
+
+	private final double decodeP50;
+
+	private final double decodeP99;
+
+	private final long cacheHits;
+
+	private final long cacheMisses;
+
+	private final long notModified;
+
+	private final long coalesced;
+
+	private final long rateLimitWaits;
+
+	private final double rateLimitWaitTotal;
+
+	private final long rateLimitRejections;
+
+	private final long retries;
+
+	private final long hedges;
+
+	private final long circuitRejections;
+
+	@ConstructorProperties( { "endpoint", "requests", "failures", "latencyP50", "latencyP99", "latencyP999", "latencyMax", "bytesReceived", "decodeP50", "decodeP99", "cacheHits", "cacheMisses", "notModified", "coalesced", "rateLimitWaits", "rateLimitWaitTotal", "rateLimitRejections", "retries", "hedges", "circuitRejections" } )
+	public EndpointStats( String endpoint, long requests, long failures, double latencyP50, double latencyP99, double latencyP999, double latencyMax, long bytesReceived, double decodeP50, double decodeP99, long cacheHits, long cacheMisses, long notModified, long coalesced, long rateLimitWaits, double rateLimitWaitTotal, long rateLimitRejections, long retries, long hedges, long circuitRejections )
+	{
+		this.endpoint            = endpoint;
+		this.requests            = requests;
+		this.failures            = failures;
+		this.latencyP50          = latencyP50;
+		this.latencyP99          = latencyP99;
+		this.latencyP999         = latencyP999;
+		this.latencyMax          = latencyMax;
+		this.bytesReceived       = bytesReceived;
+		this.decodeP50           = decodeP50;
+		this.decodeP99           = decodeP99;
+		this.cacheHits           = cacheHits;
+		this.cacheMisses         = cacheMisses;
+		this.notModified         = notModified;
+		this.coalesced           = coalesced;
+		this.rateLimitWaits      = rateLimitWaits;
+		this.rateLimitWaitTotal  = rateLimitWaitTotal;
+		this.rateLimitRejections = rateLimitRejections;
+		this.retries             = retries;
+		this.hedges              = hedges;
+		this.circuitRejections   = circuitRejections;
+	}
+
+	/**
+	 * @return				The URL path ie. "/v1/prices"
+	 */
+	public String getEndpoint( )
+	{
+		return endpoint;
+	}
+
+	/**
+	 * @return				Requests that got a 2xx response
+	 */
+	public long getRequests( )
+	{
+		return requests;
+	}
+
+	/**
+	 * @return				Requests that failed on the network or with a non 2xx status
+	 */
+	public long getFailures( )
+	{
+		return failures;
+	}
+
+	public double getLatencyP50( )
+	{
+		return latencyP50;
+	}
+
+	public double getLatencyP99( )
+	{
+		return latencyP99;
+	}
+
+	public double getLatencyP999( )
+	{
+		return latencyP999;
+	}
+
+	public double getLatencyMax( )
+	{
+		return latencyMax;
+	}
+
+	/**
+	 * @return				Bytes received on the wire, before decompression
+	 */
+	public long getBytesReceived( )
+	{
+		return bytesReceived;
+	}
+
+	public double getDecodeP50( )
+	{
+		return decodeP50;
+	}
+
+	public double getDecodeP99( )
+	{
+		return decodeP99;
+	}
+
+	public long getCacheHits( )
+	{
+		return cacheHits;
+	}
+
+	public long getCacheMisses( )
+	{
+		return cacheMisses;
+	}
+
+	/**
+	 * @return				Fraction of cache lookups that were hits, 0 without lookups
+	 */
+	public double getCacheHitRatio( )
+	{
+		long lookups = cacheHits + cacheMisses;
+		return lookups == 0 ? 0 : (double) cacheHits / lookups;
+	}
+
+	/**
+	 * @return				Conditional GETs answered 304, reusing the last body
+	 */
+	public long getNotModified( )
+	{
+		return notModified;
+	}
+
+	/**
+	 * @return				GETs that joined an identical request already in flight
+	 */
+	public long getCoalesced( )
+	{
+		return coalesced;
+	}
+
+	/**
+	 * @return				Requests that had to wait on a rate limiter
+	 */
+	public long getRateLimitWaits( )
+	{
+		return rateLimitWaits;
+	}
+
+	/**
+	 * @return				Total time spent waiting on rate limiters
+	 */
+	public double getRateLimitWaitTotal( )
+	{
+		return rateLimitWaitTotal;
+	}
+
+	/**
+	 * @return				Requests refused by fail fast rate limiters
+	 */
+	public long getRateLimitRejections( )
+	{
+		return rateLimitRejections;
+	}
+
+	/**
+	 * @return				Failed requests that were retried
+	 */
+	public long getRetries( )
+	{
+		return retries;
+	}
+
+	/**
+	 * @return				Slow requests a hedge was sent for
+	 */
+	public long getHedges( )
+	{
+		return hedges;
+	}
+
+	/**
+	 * @return				Requests failed fast by an open circuit breaker
+	 */
+	public long getCircuitRejections( )
+	{
+		return circuitRejections;
+	}
+
+	@Override
+	public String toString( )
+	{
+		return endpoint + " requests=" + requests + " failures=" + failures + " p50=" + latencyP50 + "ms p99=" + latencyP99 + "ms p999=" + latencyP999
+			+ "ms bytes=" + bytesReceived + " decodeP50=" + decodeP50 + "ms cacheHitRatio=" + getCacheHitRatio( ) + " notModified=" + notModified + " rateLimitWaits=" + rateLimitWaits + " retries=" + retries + " hedges=" + hedges;
+	}
+}
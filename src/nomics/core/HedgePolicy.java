@@ -0,0 +1,68 @@
+package nomics.core;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When to send a hedge, a second copy of a GET that has not answered yet.  The hedge goes out
+ * once the first request has been outstanding for the given percentile of the endpoint's latencies
+ * so far (clamped to [minimumDelay, maximumDelay]), and the first response to arrive wins.
+ * Hedging at the 95th percentile costs about 5% more requests and cuts off the slowest tail.
+ * Until minimumSamples requests have completed the maximum delay is used
+ * @author danielanderson
+ *
+ */
+public class HedgePolicy {
+
+	private final double percentile;
+
+	private final long minimumDelay;
+
+	private final long maximumDelay;
+
+	private int minimumSamples = 20;
+
+	/**
+	 * @param percentile			Latency percentile to hedge at ie. 0.95
+	 * @param minimumDelay		Never hedge sooner than this
+	 * @param maximumDelay		Always hedge after this long
+	 * @param unit
+	 */
+	public HedgePolicy( double percentile, long minimumDelay, long maximumDelay, TimeUnit unit )
+	{
+		if( percentile <= 0 || percentile >= 1 )
+			throw new IllegalArgumentException( "percentile must be between 0 and 1" );
+
+		if( minimumDelay < 0 || maximumDelay < minimumDelay )
+			throw new IllegalArgumentException( "Delays must be non negative with minimum <= maximum" );
+
+		this.percentile   = percentile;
+		this.minimumDelay = unit.toNanos( minimumDelay );
+		this.maximumDelay = unit.toNanos( maximumDelay );
+	}
+
+	/**
+	 * @param minimumSamples		Latencies to collect before the percentile is trusted, defaults to 20
+	 * @return					This policy
+	 */
+	public HedgePolicy setMinimumSamples( int minimumSamples )
+	{
+		this.minimumSamples = minimumSamples;
+		return this;
+	}
+
+	public double getPercentile( )
+	{
+		return percentile;
+	}
+
+	/**
+	 * @param latencies		Recent latencies of the endpoint in nanoseconds
+	 * @return				Nanoseconds to wait for the first request before hedging
+	 */
+	public long getDelay( LatencyHistogram latencies )
+	{
+		if( latencies.getCount( ) < minimumSamples )
+			return maximumDelay;
+
+		return Math.max( minimumDelay, Math.min( maximumDelay, latencies.getPercentile( percentile ) ) );
+	}
+}
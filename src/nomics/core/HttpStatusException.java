@@ -0,0 +1,51 @@
+package nomics.core;
+import java.io.IOException;
+
+/**
+ * Thrown when the server answers with a non 2xx status.  Carries the status, the endpoint
+ * (never the full URL, it holds the API key) and the server's Retry-After hint if it sent one
+ * @author danielanderson
+ *
+ */
+public class HttpStatusException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+
+	private final String endpoint;
+
+	private final long retryAfter;
+
+	/**
+	 * @param statusCode		The HTTP status ie. 503
+	 * @param endpoint		The URL path ie. "/v1/prices"
+	 * @param retryAfter		Milliseconds the server asked to wait before retrying, or -1
+	 */
+	public HttpStatusException( int statusCode, String endpoint, long retryAfter )
+	{
+		super( "Server returned HTTP response code: " + statusCode + " for " + endpoint );
+
+		this.statusCode = statusCode;
+		this.endpoint   = endpoint;
+		this.retryAfter = retryAfter;
+	}
+
+	public int getStatusCode( )
+	{
+		return statusCode;
+	}
+
+	public String getEndpoint( )
+	{
+		return endpoint;
+	}
+
+	/**
+	 * @return				Milliseconds from the Retry-After header, or -1 when it was absent
+	 */
+	public long getRetryAfter( )
+	{
+		return retryAfter;
+	}
+}
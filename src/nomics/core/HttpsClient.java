@@ -1,20 +1,465 @@
 package nomics.core;
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
-import javax.net.ssl.HttpsURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.json.JSONException;
 
 /**
  * Vanilla HTTPS client class for performing GET
- * requests provided some URL
+ * requests provided some URL.  A single instance is thread safe and is meant
+ * to be shared by all of the wrapper classes so that connections are kept alive
+ * and reused between calls rather than paying for a new TLS handshake on every request.
+ *
+ * The number of concurrent connections is bounded by the configured pool size, every
+ * connection is opened with a connect and read timeout, gzip or deflate is requested from
+ * the server and decompressed while the body streams in, and bodies are read as raw bytes.  The base URL can be overridden to point
+ * the wrappers at a local stand-in server ie. "http://localhost:8080".  An optional
+ * ResponseCache can be placed in front of the network for slow changing endpoints,
+ * RateLimiters can cap the request rate per endpoint and per API key, and identical
+ * concurrent GETs can be coalesced into one request.  Endpoints that rarely change can be
+ * revalidated with conditional GETs, a 304 hands back the very same body array as the
+ * last 200 so callers can tell nothing changed.  Latency, payload sizes, decode time,
+ * cache and rate limit activity are reported to a ClientMetrics, nothing is logged.
+ *
+ * To keep slow or failing upstream responses from stalling callers, timeouts can be set per
+ * endpoint, failed GETs retried under a RetryPolicy, slow GETs hedged under a HedgePolicy and
+ * a CircuitBreaker can fail requests fast while the API is down.  Non 2xx responses are
+ * thrown as an HttpStatusException
+ *
+ * Connections are kept alive by the JDK's HttpURLConnection, whose keep-alive cache holds
+ * only 5 idle connections per host unless the JVM wide http.maxConnections system property
+ * says otherwise.  That setting is shared by every HttpURLConnection in the process, so the
+ * client leaves it alone: applications using a pool larger than 5 should set it, ideally to
+ * the pool size, before the first request ie. -Dhttp.maxConnections=20
  * @author danielanderson
  *
  */
 public class HttpsClient {
-		
+
+	/**
+	 * Base URL of the nomics API
+	 */
+	public static final String DEFAULT_BASE_URL = "https://api.nomics.com";
+
+	/**
+	 * Default maximum number of concurrent (and kept alive) connections
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+	/**
+	 * Default connect timeout in milliseconds
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	/**
+	 * Default read timeout in milliseconds
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+	/**
+	 * Size of the chunks read off of the socket
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
 	private final String USER_AGENT = "Mozilla/5.0";
 
+	private final String baseURL;
+
+	private final int maxConnections;
+
+	private final int connectTimeout;
+
+	private final int readTimeout;
+
+	/**
+	 * Permits for the connection pool, one per open connection
+	 */
+	private final Semaphore connections;
+
+	/**
+	 * Optional cache of response bodies, null when caching is off
+	 */
+	private volatile ResponseCache responseCache;
+
+	/**
+	 * Rate limiters by endpoint path ie. "/v1/prices"
+	 */
+	private final Map< String, RateLimiter > endpointLimiters = new ConcurrentHashMap< String, RateLimiter >( );
+
+	/**
+	 * Rate limiters by API key
+	 */
+	private final Map< String, RateLimiter > keyLimiters = new ConcurrentHashMap< String, RateLimiter >( );
+
+	/**
+	 * Requests currently on the wire by URL, used to coalesce identical concurrent GETs
+	 */
+	private final Map< String, CompletableFuture< byte[] > > inFlight = new ConcurrentHashMap< String, CompletableFuture< byte[] > >( );
+
+	private volatile boolean coalescing;
+
+	private volatile ClientMetrics metrics = ClientMetrics.NONE;
+
+	/**
+	 * Connect and read timeouts by endpoint path, overriding the client's
+	 */
+	private final Map< String, int[] > endpointTimeouts = new ConcurrentHashMap< String, int[] >( );
+
+	/**
+	 * Retry policy of endpoints without their own, null for no retries
+	 */
+	private volatile RetryPolicy retryPolicy;
+
+	private final Map< String, RetryPolicy > endpointRetryPolicies = new ConcurrentHashMap< String, RetryPolicy >( );
+
+	private volatile CircuitBreaker circuitBreaker;
+
+	private final Map< String, HedgePolicy > hedgePolicies = new ConcurrentHashMap< String, HedgePolicy >( );
+
+	/**
+	 * Latencies of hedged endpoints, the hedge delay is a percentile of these
+	 */
+	private final Map< String, LatencyHistogram > hedgeLatencies = new ConcurrentHashMap< String, LatencyHistogram >( );
+
+	/**
+	 * Runs both copies of hedged requests, created on first use
+	 */
+	private ExecutorService hedgeExecutor;
+
+	private static final AtomicInteger HEDGE_THREAD_COUNT = new AtomicInteger( );
+
+	/**
+	 * Most URLs whose validators are kept for conditional GETs
+	 */
+	private static final int MAX_VALIDATED_URLS = 256;
+
+	/**
+	 * Endpoints GET conditionally
+	 */
+	private final Set< String > conditionalEndpoints = ConcurrentHashMap.newKeySet( );
+
+	/**
+	 * Validators and body of the last 200 per URL of a conditional endpoint, least recently used
+	 * first, guarded by itself
+	 */
+	private final Map< String, Validated > validated = new LinkedHashMap< String, Validated >( 16, 0.75f, true ) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( Map.Entry< String, Validated > eldest )
+		{
+			return size( ) > MAX_VALIDATED_URLS;
+		}
+	};
+
+	/**
+	 * Lazily created client shared by all wrappers built with their no-arg constructors
+	 */
+	private static volatile HttpsClient defaultClient;
+
+	/**
+	 * Create a client against the nomics API using the default pool size and timeouts
+	 */
+	public HttpsClient( )
+	{
+		this( DEFAULT_BASE_URL );
+	}
+
+	/**
+	 * Create a client against a different base URL using the default pool size and timeouts
+	 * @param baseURL			Scheme, host and port of the API ie. "http://localhost:8080"
+	 */
+	public HttpsClient( String baseURL )
+	{
+		this( baseURL, DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT );
+	}
+
+	/**
+	 * Create a fully configured client
+	 * @param baseURL			Scheme, host and port of the API ie. "https://api.nomics.com"
+	 * @param maxConnections		Maximum number of concurrent connections kept in the pool
+	 * @param connectTimeout		Connect timeout in milliseconds, 0 for none
+	 * @param readTimeout		Read timeout in milliseconds, 0 for none
+	 */
+	public HttpsClient( String baseURL, int maxConnections, int connectTimeout, int readTimeout )
+	{
+		if( maxConnections < 1 )
+			throw new IllegalArgumentException( "maxConnections must be at least 1" );
+
+		this.baseURL		= baseURL.endsWith( "/" ) ? baseURL.substring( 0, baseURL.length( ) - 1 ) : baseURL;
+		this.maxConnections	= maxConnections;
+		this.connectTimeout	= connectTimeout;
+		this.readTimeout		= readTimeout;
+		this.connections		= new Semaphore( maxConnections, true );
+	}
+
+	/**
+	 * Returns the client shared by every wrapper created without an explicit client
+	 * @return				The shared client
+	 */
+	public static HttpsClient getDefault( )
+	{
+		HttpsClient client = defaultClient;
+
+		if( client == null )
+		{
+			synchronized( HttpsClient.class )
+			{
+				client = defaultClient;
+
+				if( client == null )
+				{
+					client = new HttpsClient( );
+					defaultClient = client;
+				}
+			}
+		}
+
+		return client;
+	}
+
+	/**
+	 * Build an absolute URL from a path relative to the base URL
+	 * @param path			Path and query ie. "/v1/prices?key=1234"
+	 * @return				The absolute URL
+	 */
+	public String buildURL( String path )
+	{
+		return baseURL + path;
+	}
+
+	public String getBaseURL( )
+	{
+		return baseURL;
+	}
+
+	public int getMaxConnections( )
+	{
+		return maxConnections;
+	}
+
+	public int getConnectTimeout( )
+	{
+		return connectTimeout;
+	}
+
+	public int getReadTimeout( )
+	{
+		return readTimeout;
+	}
+
+	public ResponseCache getResponseCache( )
+	{
+		return responseCache;
+	}
+
+	/**
+	 * Put a cache in front of the network, or remove it by passing null
+	 * @param responseCache		The cache to consult before every GET
+	 */
+	public void setResponseCache( ResponseCache responseCache )
+	{
+		this.responseCache = responseCache;
+	}
+
+	/**
+	 * Limit the request rate to an endpoint, across all API keys
+	 * @param endpoint			The URL path ie. "/v1/prices"
+	 * @param rateLimiter		The limiter, or null to remove the limit
+	 */
+	public void setEndpointRateLimiter( String endpoint, RateLimiter rateLimiter )
+	{
+		if( rateLimiter == null )
+			endpointLimiters.remove( endpoint );
+		else
+			endpointLimiters.put( endpoint, rateLimiter );
+	}
+
+	/**
+	 * Limit the request rate of an API key, across all endpoints
+	 * @param key				The private API key
+	 * @param rateLimiter		The limiter, or null to remove the limit
+	 */
+	public void setKeyRateLimiter( String key, RateLimiter rateLimiter )
+	{
+		if( rateLimiter == null )
+			keyLimiters.remove( key );
+		else
+			keyLimiters.put( key, rateLimiter );
+	}
+
+	public boolean isRequestCoalescing( )
+	{
+		return coalescing;
+	}
+
+	/**
+	 * When on, concurrent GETs for the same URL share a single request: the first caller
+	 * goes to the network and everyone else waits for its response.  Streamed responses are
+	 * then buffered so the body can be handed to every caller
+	 * @param coalescing			true to coalesce identical concurrent GETs
+	 */
+	public void setRequestCoalescing( boolean coalescing )
+	{
+		this.coalescing = coalescing;
+	}
+
+	public ClientMetrics getMetrics( )
+	{
+		return metrics;
+	}
+
+	/**
+	 * Report requests to a metrics implementation ie. an InMemoryMetrics
+	 * @param metrics			Where to report, or null to stop reporting
+	 */
+	public void setMetrics( ClientMetrics metrics )
+	{
+		this.metrics = metrics == null ? ClientMetrics.NONE : metrics;
+	}
+
+	/**
+	 * Use different timeouts for one endpoint, ie. a short read timeout for "/v1/prices"
+	 * @param endpoint			The URL path ie. "/v1/prices"
+	 * @param connectTimeout		Connect timeout in milliseconds, 0 for none
+	 * @param readTimeout		Read timeout in milliseconds, 0 for none
+	 */
+	public void setEndpointTimeouts( String endpoint, int connectTimeout, int readTimeout )
+	{
+		endpointTimeouts.put( endpoint, new int[] { connectTimeout, readTimeout } );
+	}
+
+	/**
+	 * Go back to the client's timeouts for an endpoint
+	 * @param endpoint			The URL path ie. "/v1/prices"
+	 */
+	public void removeEndpointTimeouts( String endpoint )
+	{
+		endpointTimeouts.remove( endpoint );
+	}
+
+	public RetryPolicy getRetryPolicy( )
+	{
+		return retryPolicy;
+	}
+
+	/**
+	 * Retry failed GETs to every endpoint without a policy of its own
+	 * @param retryPolicy		The policy, or null to stop retrying
+	 */
+	public void setRetryPolicy( RetryPolicy retryPolicy )
+	{
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Retry failed GETs to one endpoint differently, ie. new RetryPolicy( 1 ) to never retry it
+	 * @param endpoint			The URL path ie. "/v1/prices"
+	 * @param retryPolicy		The policy, or null to fall back to the client's
+	 */
+	public void setEndpointRetryPolicy( String endpoint, RetryPolicy retryPolicy )
+	{
+		if( retryPolicy == null )
+			endpointRetryPolicies.remove( endpoint );
+		else
+			endpointRetryPolicies.put( endpoint, retryPolicy );
+	}
+
+	public CircuitBreaker getCircuitBreaker( )
+	{
+		return circuitBreaker;
+	}
+
+	/**
+	 * Fail requests fast while the API keeps failing
+	 * @param circuitBreaker		The breaker shared by every endpoint, or null for none
+	 */
+	public void setCircuitBreaker( CircuitBreaker circuitBreaker )
+	{
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * GET an endpoint conditionally.  The ETag and Last-Modified of each URL's last 200 are kept
+	 * with its body and sent back as If-None-Match and If-Modified-Since; a 304 answer returns
+	 * that same body array without transferring it again.  Responses of conditional endpoints
+	 * are buffered before they are decoded.  Meant for endpoints with few distinct URLs ie. the
+	 * markets and prices catalogs, validators of at most 256 URLs are kept
+	 * @param endpoint			The URL path ie. "/v1/markets"
+	 * @param enabled			false to stop and forget the validators held for the endpoint
+	 */
+	public void setConditionalGet( String endpoint, boolean enabled )
+	{
+		if( enabled )
+		{
+			conditionalEndpoints.add( endpoint );
+			return;
+		}
+
+		conditionalEndpoints.remove( endpoint );
+
+		synchronized( validated )
+		{
+			validated.keySet( ).removeIf( url -> endpoint( url ).equals( endpoint ) );
+		}
+	}
+
+	/**
+	 * @param url				An absolute request URL
+	 * @return					Whether GETs of the URL are sent conditionally
+	 */
+	public boolean isConditional( String url )
+	{
+		return !conditionalEndpoints.isEmpty( ) && conditionalEndpoints.contains( endpoint( url ) );
+	}
+
+	/**
+	 * Hedge slow GETs to an endpoint.  Hedged responses are buffered before they are decoded.
+	 * A hedge is only sent if a pooled connection and the rate limits allow it right away
+	 * @param endpoint			The URL path ie. "/v1/prices"
+	 * @param hedgePolicy		The policy, or null to stop hedging
+	 */
+	public void setHedgePolicy( String endpoint, HedgePolicy hedgePolicy )
+	{
+		if( hedgePolicy == null )
+		{
+			hedgePolicies.remove( endpoint );
+		}
+		else
+		{
+			hedgeLatencies.computeIfAbsent( endpoint, path -> new LatencyHistogram( ) );
+			hedgePolicies.put( endpoint, hedgePolicy );
+		}
+	}
+
 	/**
 	 * Public method to perform GET request and return
 	 * the response as a string
@@ -24,32 +469,1051 @@ public class HttpsClient {
 	 */
 	public String doGet( String getURL ) throws IOException
 	{
-		
+		return new String( doGetBytes( getURL ), StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Perform a GET request and return the raw (decompressed) body
+	 * @param getURL			URL to GET to
+	 * @return				response body as bytes
+	 * @throws IOException	On connection failures, timeouts or a non 2xx response
+	 */
+	public byte[] doGetBytes( String getURL ) throws IOException
+	{
+		ResponseCache cache = responseCache;
+
+		if( cache == null || !cache.isCacheable( getURL ) )
+			return load( getURL );
+
+		byte[] body = cache.get( getURL );
+
+		metrics.cacheLookup( endpoint( getURL ), body != null );
+
+		if( body == null )
+		{
+			body = load( getURL );
+			cache.put( getURL, body );
+		}
+
+		return body;
+	}
+
+	/**
+	 * Internal method to download a body, joining an identical request already in flight
+	 * when coalescing is on
+	 * @param getURL
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] load( String getURL ) throws IOException
+	{
+		if( !coalescing )
+			return fetch( getURL );
+
+		CompletableFuture< byte[] > mine     = new CompletableFuture< byte[] >( );
+		CompletableFuture< byte[] > existing = inFlight.putIfAbsent( getURL, mine );
+
+		if( existing != null )
+		{
+			metrics.requestCoalesced( endpoint( getURL ) );
+			return await( existing );
+		}
+
+		try
+		{
+			byte[] body = fetch( getURL );
+			mine.complete( body );
+			return body;
+		}
+		catch( IOException | RuntimeException e )
+		{
+			mine.completeExceptionally( e );
+			throw e;
+		}
+		finally
+		{
+			inFlight.remove( getURL, mine );
+		}
+	}
+
+	/**
+	 * Internal method to wait for a request started by another thread
+	 * @param request
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] await( CompletableFuture< byte[] > request ) throws IOException
+	{
+		try
+		{
+			return request.get( );
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new IOException( "Interrupted while waiting for a coalesced request", e );
+		}
+		catch( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+
+			if( cause instanceof RateLimitExceededException )
+				throw new RateLimitExceededException( cause.getMessage( ) );
+
+			if( cause instanceof CircuitOpenException )
+				throw new CircuitOpenException( cause.getMessage( ) );
+
+			if( cause instanceof HttpStatusException )
+			{
+				HttpStatusException status = (HttpStatusException) cause;
+				throw new HttpStatusException( status.getStatusCode( ), status.getEndpoint( ), status.getRetryAfter( ) );
+			}
+
+			if( cause instanceof IOException )
+				throw new IOException( cause.getMessage( ), cause );
+
+			throw new IOException( cause );
+		}
+	}
+
+	/**
+	 * Internal method to download a body over pooled connections, bypassing the cache.  Hedged
+	 * and retried as configured for the endpoint
+	 * @param getURL
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] fetch( String getURL ) throws IOException
+	{
+		String endpoint    = endpoint( getURL );
+		HedgePolicy hedge  = hedgePolicies.isEmpty( ) ? null : hedgePolicies.get( endpoint );
+
+		try
+		{
+			if( hedge == null )
+				return execute( endpoint, ( ) -> fetchOnce( getURL, endpoint ) );
+
+			return execute( endpoint, ( ) -> fetchHedged( getURL, endpoint, hedge ) );
+		}
+		catch( JSONException e )
+		{
+			//Not thrown, nothing is decoded while fetching
+			throw new IOException( e );
+		}
+	}
+
+	/**
+	 * Internal method to download a body with a single request
+	 * @param getURL
+	 * @param endpoint
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] fetchOnce( String getURL, String endpoint ) throws IOException
+	{
+		reserve( getURL, endpoint );
+
+		return transfer( getURL, endpoint, null );
+	}
+
+	/**
+	 * Internal method to read a body over a connection permit already taken from the pool,
+	 * the permit is given back when done
+	 * @param getURL
+	 * @param endpoint
+	 * @param call			Lets a hedged request be cancelled, null otherwise
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] transfer( String getURL, String endpoint, Call call ) throws IOException
+	{
+		long started       = System.nanoTime( );
+		boolean revalidate = isConditional( getURL );
+		Validated previous = revalidate ? validated( getURL ) : null;
+
+		try
+		{
+			HttpURLConnection con    = connect( getURL, endpoint, call, previous );
+			boolean notModified      = con.getResponseCode( ) == HttpURLConnection.HTTP_NOT_MODIFIED;
+			CountingInputStream wire = new CountingInputStream( con.getInputStream( ) );
+			InputStream in           = notModified ? wire : openBody( con, wire );
+
+			try
+			{
+				byte[] body   = notModified ? previous.body : readFully( in, isCompressed( con ) ? 0 : con.getContentLength( ) );
+				long finished = System.nanoTime( );
+
+				if( notModified )
+				{
+					//Drain whatever the 304 carried so the connection can be reused
+					readFully( in, 0 );
+					metrics.responseNotModified( endpoint );
+				}
+				else if( revalidate )
+				{
+					validate( getURL, con, body );
+				}
+
+				LatencyHistogram latencies = hedgeLatencies.isEmpty( ) ? null : hedgeLatencies.get( endpoint );
+
+				if( latencies != null )
+					latencies.record( finished - started );
+
+				metrics.requestCompleted( endpoint, finished - started, wire.count );
+				return body;
+			}
+			finally
+			{
+				//Closing (rather than disconnecting) hands the socket back for reuse
+				in.close( );
+
+				if( call != null )
+					call.finish( );
+			}
+		}
+		catch( IOException e )
+		{
+			//The loser of a hedge is cut off on purpose, that is not a failure
+			if( call == null || !call.isCancelled( ) )
+				metrics.requestFailed( endpoint, System.nanoTime( ) - started, statusOf( e ) );
+
+			throw e;
+		}
+		finally
+		{
+			connections.release( );
+		}
+	}
+
+	/**
+	 * Internal method to look up the validators kept for a URL
+	 * @param getURL
+	 * @return				null if there are none
+	 */
+	private Validated validated( String getURL )
+	{
+		synchronized( validated )
+		{
+			return validated.get( getURL );
+		}
+	}
+
+	/**
+	 * Internal method to keep the validators and body of a 200, or forget the URL if the
+	 * response has no validators
+	 * @param getURL
+	 * @param con
+	 * @param body
+	 */
+	private void validate( String getURL, HttpURLConnection con, byte[] body )
+	{
+		String etag         = con.getHeaderField( "ETag" );
+		String lastModified = con.getHeaderField( "Last-Modified" );
+
+		synchronized( validated )
+		{
+			if( etag == null && lastModified == null )
+				validated.remove( getURL );
+			else
+				validated.put( getURL, new Validated( etag, lastModified, body ) );
+		}
+	}
+
+	/**
+	 * Internal method to download a body, sending a second copy of the request if the first is
+	 * slower than the hedge delay and returning whichever answers first.  The other is cancelled
+	 * @param getURL
+	 * @param endpoint
+	 * @param policy
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] fetchHedged( String getURL, String endpoint, HedgePolicy policy ) throws IOException
+	{
+		LatencyHistogram latencies = hedgeLatencies.computeIfAbsent( endpoint, path -> new LatencyHistogram( ) );
+
+		reserve( getURL, endpoint );
+
+		Call primary                        = new Call( );
+		CompletableFuture< byte[] > first   = send( getURL, endpoint, primary );
+		Call hedge                          = null;
+
+		try
+		{
+			try
+			{
+				return first.get( policy.getDelay( latencies ), TimeUnit.NANOSECONDS );
+			}
+			catch( TimeoutException e )
+			{
+				//Slower than usual, hedge below
+			}
+
+			//Never queue a hedge behind the pool or the rate limits, it would only add load.  The
+			//connection is taken first so no permit is spent on a hedge that is never sent
+			if( !connections.tryAcquire( ) )
+				return first.get( );
+
+			if( !tryThrottle( getURL, endpoint ) )
+			{
+				connections.release( );
+				return first.get( );
+			}
+
+			metrics.requestHedged( endpoint );
+
+			hedge                               = new Call( );
+			CompletableFuture< byte[] > second  = send( getURL, endpoint, hedge );
+			CompletableFuture< byte[] > winner  = new CompletableFuture< byte[] >( );
+			AtomicInteger failed                = new AtomicInteger( );
+
+			//First body wins, a failure only counts once both copies have failed
+			BiConsumer< byte[], Throwable > race = ( body, error ) -> {
+				if( error == null )
+					winner.complete( body );
+				else if( failed.incrementAndGet( ) == 2 )
+					winner.completeExceptionally( error );
+			};
+
+			first.whenComplete( race );
+			second.whenComplete( race );
+
+			return winner.get( );
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new IOException( "Interrupted while waiting for a hedged request", e );
+		}
+		catch( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+
+			if( cause instanceof IOException )
+				throw (IOException) cause;
+
+			throw new IOException( cause );
+		}
+		finally
+		{
+			primary.cancel( );
+
+			if( hedge != null )
+				hedge.cancel( );
+		}
+	}
+
+	/**
+	 * Internal method to run a transfer on the hedging threads
+	 * @param getURL
+	 * @param endpoint
+	 * @param call
+	 * @return
+	 */
+	private CompletableFuture< byte[] > send( String getURL, String endpoint, Call call )
+	{
+		CompletableFuture< byte[] > response = new CompletableFuture< byte[] >( );
+
+		try
+		{
+			hedgeExecutor( ).execute( ( ) -> {
+				try
+				{
+					response.complete( transfer( getURL, endpoint, call ) );
+				}
+				catch( Throwable e )
+				{
+					response.completeExceptionally( e );
+				}
+			} );
+		}
+		catch( RejectedExecutionException e )
+		{
+			connections.release( );
+			response.completeExceptionally( new IOException( "Could not send a hedged request", e ) );
+		}
+
+		return response;
+	}
+
+	private synchronized ExecutorService hedgeExecutor( )
+	{
+		if( hedgeExecutor == null )
+		{
+			hedgeExecutor = Executors.newCachedThreadPool( runnable -> {
+				Thread thread = new Thread( runnable, "nomics-hedge-" + HEDGE_THREAD_COUNT.incrementAndGet( ) );
+				thread.setDaemon( true );
+				return thread;
+			} );
+		}
+
+		return hedgeExecutor;
+	}
+
+	/**
+	 * Perform a GET request and decode the body while it is being read off of the connection
+	 * @param getURL			URL to GET to
+	 * @param handler		Decoder for the response body
+	 * @return				The decoded response
+	 * @throws IOException	On connection failures, timeouts or a non 2xx response
+	 * @throws JSONException	When the handler fails to decode the body
+	 */
+	public < T > T doGet( String getURL, ResponseHandler< T > handler ) throws IOException, JSONException
+	{
+		ResponseCache cache = responseCache;
+
+		String endpoint     = endpoint( getURL );
+
+		//Cached, coalesced, conditional and hedged requests are decoded from a shared body instead of the socket
+		if( coalescing || ( cache != null && cache.isCacheable( getURL ) ) || isConditional( getURL )
+				|| ( !hedgePolicies.isEmpty( ) && hedgePolicies.containsKey( endpoint ) ) )
+		{
+			InputStream body = new ByteArrayInputStream( doGetBytes( getURL ) );
+			long decoding    = System.nanoTime( );
+			T response       = handler.handle( body );
+			metrics.responseDecoded( endpoint, System.nanoTime( ) - decoding );
+			return response;
+		}
+
+		return execute( endpoint, ( ) -> stream( getURL, endpoint, handler ) );
+	}
+
+	/**
+	 * Internal method to decode a body off of a single request
+	 * @param getURL
+	 * @param endpoint
+	 * @param handler
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private < T > T stream( String getURL, String endpoint, ResponseHandler< T > handler ) throws IOException, JSONException
+	{
+		reserve( getURL, endpoint );
+
+		long started = System.nanoTime( );
+
+		try
+		{
+			HttpURLConnection con    = connect( getURL, endpoint, null, null );
+			CountingInputStream wire = new CountingInputStream( con.getInputStream( ) );
+			InputStream in           = openBody( con, wire );
+
+			try
+			{
+				long decoding = System.nanoTime( );
+				T response    = handler.handle( in );
+				long finished = System.nanoTime( );
+
+				metrics.responseDecoded( endpoint, finished - decoding );
+				metrics.requestCompleted( endpoint, finished - started, wire.count );
+				return response;
+			}
+			finally
+			{
+				in.close( );
+			}
+		}
+		catch( IOException e )
+		{
+			metrics.requestFailed( endpoint, System.nanoTime( ) - started, statusOf( e ) );
+			throw e;
+		}
+		finally
+		{
+			connections.release( );
+		}
+	}
+
+	/**
+	 * One attempt at a request
+	 */
+	private interface Attempt< T > {
+
+		T run( ) throws IOException, JSONException;
+	}
+
+	/**
+	 * Internal method to run attempts at a request through the circuit breaker, retrying
+	 * failures as the endpoint's retry policy allows
+	 * @param endpoint
+	 * @param attempt
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private < T > T execute( String endpoint, Attempt< T > attempt ) throws IOException, JSONException
+	{
+		RetryPolicy policy     = endpointRetryPolicies.isEmpty( ) ? null : endpointRetryPolicies.get( endpoint );
+		CircuitBreaker breaker = circuitBreaker;
+
+		if( policy == null )
+			policy = retryPolicy;
+
+		if( policy == null && breaker == null )
+			return attempt.run( );
+
+		long started = System.nanoTime( );
+
+		for( int attempts = 1; ; attempts++ )
+		{
+			if( breaker != null && !breaker.tryAcquire( ) )
+			{
+				metrics.circuitRejected( endpoint );
+				throw new CircuitOpenException( "Circuit open for " + endpoint + ", next trial in " + breaker.getRemainingOpenMillis( ) + "ms" );
+			}
+
+			IOException failure;
+
+			try
+			{
+				T response = attempt.run( );
+
+				if( breaker != null )
+					breaker.onSuccess( );
+
+				return response;
+			}
+			catch( JSONException e )
+			{
+				//The API answered, the body just did not decode
+				if( breaker != null )
+					breaker.onSuccess( );
+
+				throw e;
+			}
+			catch( RuntimeException e )
+			{
+				if( breaker != null )
+					breaker.onIgnored( );
+
+				throw e;
+			}
+			catch( IOException e )
+			{
+				failure = e;
+			}
+
+			boolean interrupted = Thread.currentThread( ).isInterrupted( );
+
+			if( breaker != null )
+			{
+				if( interrupted || failure instanceof RateLimitExceededException )
+					breaker.onIgnored( );
+				else if( isUpstreamFailure( failure ) )
+					breaker.onFailure( );
+				else
+					breaker.onSuccess( );
+			}
+
+			long delay = policy == null || interrupted ? -1 : policy.nextDelay( attempts, failure, System.nanoTime( ) - started );
+
+			if( delay < 0 )
+				throw failure;
+
+			metrics.requestRetried( endpoint, attempts, delay );
+
+			try
+			{
+				TimeUnit.NANOSECONDS.sleep( delay );
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+				failure.addSuppressed( e );
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * Whether a failure says the API is unhealthy: no response, a timeout, 408, 429 or a 5xx
+	 * @param failure
+	 * @return
+	 */
+	private static boolean isUpstreamFailure( IOException failure )
+	{
+		if( !( failure instanceof HttpStatusException ) )
+			return true;
+
+		int status = ( (HttpStatusException) failure ).getStatusCode( );
+		return status == 408 || status == 429 || status >= 500;
+	}
+
+	private static int statusOf( IOException failure )
+	{
+		return failure instanceof HttpStatusException ? ( (HttpStatusException) failure ).getStatusCode( ) : -1;
+	}
+
+	/**
+	 * Internal method to wait for (or fail on) the rate limits of the endpoint and the API key
+	 * @param getURL
+	 * @param endpoint
+	 * @throws IOException
+	 */
+	private void throttle( String getURL, String endpoint ) throws IOException
+	{
+		RateLimiter endpointLimiter = endpointLimiters.isEmpty( ) ? null : endpointLimiters.get( endpoint );
+		RateLimiter keyLimiter      = keyLimiters.isEmpty( ) ? null : keyLimiters.get( queryParameter( getURL, "key" ) );
+
+		if( endpointLimiter == null && keyLimiter == null )
+			return;
+
+		long waited           = 0;
+		boolean endpointTaken = false;
+
+		try
+		{
+			if( endpointLimiter != null )
+			{
+				waited += endpointLimiter.acquire( );
+				endpointTaken = true;
+			}
+
+			if( keyLimiter != null )
+				waited += keyLimiter.acquire( );
+		}
+		catch( RateLimitExceededException e )
+		{
+			//The request is not sent, so the endpoint permit must not be spent on it
+			if( endpointTaken )
+				endpointLimiter.release( );
+
+			metrics.rateLimitRejected( endpoint );
+			throw e;
+		}
+		catch( InterruptedException e )
+		{
+			if( endpointTaken )
+				endpointLimiter.release( );
+
+			Thread.currentThread( ).interrupt( );
+			throw new IOException( "Interrupted while waiting on the rate limit", e );
+		}
+
+		if( waited > 0 )
+			metrics.rateLimitWaited( endpoint, waited );
+	}
+
+	/**
+	 * Internal method to take a permit from the rate limits of the endpoint and the API key
+	 * only if that needs no waiting.  Either both permits are taken or neither is
+	 * @param getURL
+	 * @param endpoint
+	 * @return				false if a limit has no permit available right now
+	 */
+	private boolean tryThrottle( String getURL, String endpoint )
+	{
+		RateLimiter endpointLimiter = endpointLimiters.isEmpty( ) ? null : endpointLimiters.get( endpoint );
+		RateLimiter keyLimiter      = keyLimiters.isEmpty( ) ? null : keyLimiters.get( queryParameter( getURL, "key" ) );
+
+		if( endpointLimiter != null && !endpointLimiter.tryAcquire( ) )
+			return false;
+
+		if( keyLimiter != null && !keyLimiter.tryAcquire( ) )
+		{
+			if( endpointLimiter != null )
+				endpointLimiter.release( );
+
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Internal method to take a connection from the pool and then the rate permits.  The
+	 * connection is taken first so no permit is spent on a request that is never sent, it
+	 * is given back if the rate limits refuse or the wait is interrupted
+	 * @param getURL
+	 * @param endpoint
+	 * @throws IOException
+	 */
+	private void reserve( String getURL, String endpoint ) throws IOException
+	{
+		acquire( );
+
+		try
+		{
+			throttle( getURL, endpoint );
+		}
+		catch( IOException | RuntimeException e )
+		{
+			connections.release( );
+			throw e;
+		}
+	}
+
+	/**
+	 * Internal method to take a connection from the pool
+	 * @throws IOException
+	 */
+	private void acquire( ) throws IOException
+	{
+		try
+		{
+			connections.acquire( );
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new IOException( "Interrupted while waiting for a connection", e );
+		}
+	}
+
+	/**
+	 * Internal method to open a connection and send the GET, failing on any non 2xx response.
+	 * Errors name the endpoint but never the full URL since it carries the API key
+	 * @param getURL
+	 * @param endpoint
+	 * @param call			Registered with the connection so a hedge can be cut off while it waits, or null
+	 * @param previous		Validators to make the GET conditional with, a 304 is then accepted, or null
+	 * @return
+	 * @throws IOException
+	 */
+	private HttpURLConnection connect( String getURL, String endpoint, Call call, Validated previous ) throws IOException
+	{
 		URL obj = new URL( getURL );
-		HttpsURLConnection con = (HttpsURLConnection) obj.openConnection();
+		HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+
+		if( call != null && !call.open( con ) )
+			throw new IOException( "Hedged request to " + endpoint + " cancelled" );
+
+		int[] timeouts = endpointTimeouts.isEmpty( ) ? null : endpointTimeouts.get( endpoint );
 
 		// optional default is GET
 		con.setRequestMethod("GET");
+		con.setConnectTimeout( timeouts == null ? connectTimeout : timeouts[ 0 ] );
+		con.setReadTimeout( timeouts == null ? readTimeout : timeouts[ 1 ] );
 
 		//add request header
 		con.setRequestProperty("User-Agent", USER_AGENT);
+		con.setRequestProperty( "Accept-Encoding", "gzip, deflate" );
+		con.setRequestProperty( "Connection", "keep-alive" );
+
+		if( previous != null )
+		{
+			if( previous.etag != null )
+				con.setRequestProperty( "If-None-Match", previous.etag );
+
+			if( previous.lastModified != null )
+				con.setRequestProperty( "If-Modified-Since", previous.lastModified );
+		}
+
+		int responseCode = con.getResponseCode( );
+
+		if( responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null )
+			return con;
+
+		if( responseCode < 200 || responseCode > 299 )
+		{
+			long retryAfter = parseRetryAfter( con.getHeaderField( "Retry-After" ) );
+
+			//Drain the error body so the connection can go back into the keep-alive cache
+			InputStream error = con.getErrorStream( );
+
+			if( error != null )
+			{
+				try
+				{
+					readFully( error, 0 );
+				}
+				finally
+				{
+					error.close( );
+				}
+			}
+
+			throw new HttpStatusException( responseCode, endpoint, retryAfter );
+		}
+
+		return con;
+	}
+
+	/**
+	 * Returns the milliseconds a Retry-After header asks to wait, given either in seconds or
+	 * as an HTTP date
+	 * @param retryAfter		The header value, may be null
+	 * @return				Milliseconds to wait, or -1 if absent or unreadable
+	 */
+	static long parseRetryAfter( String retryAfter )
+	{
+		if( retryAfter == null || retryAfter.trim( ).isEmpty( ) )
+			return -1;
+
+		String value = retryAfter.trim( );
+
+		try
+		{
+			return TimeUnit.SECONDS.toMillis( Math.max( 0, Long.parseLong( value ) ) );
+		}
+		catch( NumberFormatException e )
+		{
+			//Not delta seconds, try a date
+		}
+
+		try
+		{
+			long at = ZonedDateTime.parse( value, DateTimeFormatter.RFC_1123_DATE_TIME ).toInstant( ).toEpochMilli( );
+			return Math.max( 0, at - System.currentTimeMillis( ) );
+		}
+		catch( DateTimeParseException e )
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * Internal method returning the decompressed body stream of an open connection
+	 * @param con
+	 * @param in			The connection's input stream
+	 * @return
+	 * @throws IOException
+	 */
+	private static InputStream openBody( HttpURLConnection con, InputStream in ) throws IOException
+	{
+		String encoding = con.getContentEncoding( );
+
+		if( "gzip".equalsIgnoreCase( encoding ) )
+			return new GZIPInputStream( in, BUFFER_SIZE );
+
+		if( "deflate".equalsIgnoreCase( encoding ) )
+			return inflate( in );
+
+		return in;
+	}
+
+	/**
+	 * Internal method to decompress a deflate body.  The encoding is meant to be zlib wrapped
+	 * but some servers send a raw deflate stream, the first two bytes tell them apart
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private static InputStream inflate( InputStream in ) throws IOException
+	{
+		BufferedInputStream buffered = new BufferedInputStream( in, BUFFER_SIZE );
+
+		buffered.mark( 2 );
+
+		int cmf = buffered.read( );
+		int flg = buffered.read( );
+
+		buffered.reset( );
+
+		//zlib header: compression method 8 and a check value making the pair a multiple of 31
+		boolean zlib = cmf >= 0 && flg >= 0 && ( cmf & 0x0F ) == 8 && ( ( cmf << 8 ) | flg ) % 31 == 0;
+
+		return new InflaterInputStream( buffered, new Inflater( !zlib ), BUFFER_SIZE ) {
+
+			@Override
+			public void close( ) throws IOException
+			{
+				//Own inflaters are not ended by InflaterInputStream, release the native memory
+				try
+				{
+					super.close( );
+				}
+				finally
+				{
+					inf.end( );
+				}
+			}
+		};
+	}
+
+	private static boolean isCompressed( HttpURLConnection con )
+	{
+		String encoding = con.getContentEncoding( );
+		return "gzip".equalsIgnoreCase( encoding ) || "deflate".equalsIgnoreCase( encoding );
+	}
+
+	/**
+	 * Returns the path of a URL without scheme, host or query ie. "/v1/markets"
+	 * @param url
+	 * @return
+	 */
+	static String endpoint( String url )
+	{
+		int scheme = url.indexOf( "://" );
+		int start  = url.indexOf( '/', scheme < 0 ? 0 : scheme + 3 );
+
+		if( start < 0 )
+			return "/";
+
+		int end = url.indexOf( '?', start );
+		return end < 0 ? url.substring( start ) : url.substring( start, end );
+	}
+
+	/**
+	 * Returns the raw value of a query parameter, or "" when absent
+	 * @param url
+	 * @param name
+	 * @return
+	 */
+	static String queryParameter( String url, String name )
+	{
+		int query = url.indexOf( '?' );
 
-		int responseCode = con.getResponseCode();
-		System.out.println("\nSending 'GET' request to URL : " + getURL);
-		System.out.println("Response Code : " + responseCode);
+		while( query >= 0 )
+		{
+			int start = query + 1;
 
-		BufferedReader in = new BufferedReader(
-		        new InputStreamReader(con.getInputStream()));
-		String inputLine;
-		StringBuffer response = new StringBuffer();
+			if( url.startsWith( name, start ) && url.startsWith( "=", start + name.length( ) ) )
+			{
+				int valueStart = start + name.length( ) + 1;
+				int end        = url.indexOf( '&', valueStart );
+				return end < 0 ? url.substring( valueStart ) : url.substring( valueStart, end );
+			}
 
-		while ((inputLine = in.readLine()) != null) {
-			response.append(inputLine);
+			query = url.indexOf( '&', start );
 		}
-		
-		in.close();
 
-		//print result
-		return response.toString( );
-   }
+		return "";
+	}
+
+	/**
+	 * Read a stream to the end into a byte array
+	 * @param in				The stream to read
+	 * @param sizeHint		Expected number of bytes, or anything below 1 when unknown
+	 * @return				All bytes read
+	 * @throws IOException
+	 */
+	static byte[] readFully( InputStream in, int sizeHint ) throws IOException
+	{
+		byte[] buffer = new byte[ sizeHint > 0 ? sizeHint : BUFFER_SIZE ];
+		int length    = 0;
+		int read;
+
+		while( ( read = in.read( buffer, length, buffer.length - length ) ) != -1 )
+		{
+			length += read;
+
+			if( length == buffer.length )
+			{
+				//Content-Length was exact, check for end of stream before growing
+				int next = in.read( );
+
+				if( next == -1 )
+					break;
+
+				buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+				buffer[ length++ ] = (byte) next;
+			}
+		}
+
+		return length == buffer.length ? buffer : Arrays.copyOf( buffer, length );
+	}
+
+	/**
+	 * A hedged request that can be cut off once the other copy has answered
+	 */
+	private static final class Call {
+
+		private HttpURLConnection connection;
+
+		private boolean cancelled;
+
+		private boolean finished;
+
+		/**
+		 * @return				false if the call was cancelled before it connected
+		 */
+		synchronized boolean open( HttpURLConnection connection )
+		{
+			if( cancelled )
+				return false;
+
+			this.connection = connection;
+			return true;
+		}
+
+		synchronized void finish( )
+		{
+			finished   = true;
+			connection = null;
+		}
+
+		/**
+		 * Drop the connection unless the body has been read, a finished connection is left
+		 * alone so it can be reused
+		 */
+		synchronized void cancel( )
+		{
+			if( finished )
+				return;
+
+			cancelled = true;
+
+			if( connection != null )
+				connection.disconnect( );
+		}
+
+		synchronized boolean isCancelled( )
+		{
+			return cancelled;
+		}
+	}
+
+	/**
+	 * Validators of the last 200 for a URL together with its body
+	 */
+	private static final class Validated {
+
+		final String etag;
+
+		final String lastModified;
+
+		final byte[] body;
+
+		Validated( String etag, String lastModified, byte[] body )
+		{
+			this.etag         = etag;
+			this.lastModified = lastModified;
+			this.body         = body;
+		}
+	}
+
+	/**
+	 * Counts the bytes read through it, used to measure payloads before decompression
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		long count;
+
+		CountingInputStream( InputStream in )
+		{
+			super( in );
+		}
+
+		@Override
+		public int read( ) throws IOException
+		{
+			int b = super.read( );
+
+			if( b >= 0 )
+				count++;
+
+			return b;
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len ) throws IOException
+		{
+			int n = super.read( b, off, len );
+
+			if( n > 0 )
+				count += n;
+
+			return n;
+		}
+
+		@Override
+		public long skip( long n ) throws IOException
+		{
+			long skipped = super.skip( n );
+			count       += skipped;
+			return skipped;
+		}
+	}
 }
@@ -0,0 +1,245 @@
+package nomics.core;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * ClientMetrics kept in memory per endpoint: request latency and decode time histograms,
+ * bytes received, failures, cache hits and misses, 304 responses, coalesced requests, rate limit waits, retries,
+ * hedges and circuit breaker rejections.  Recording only touches striped counters and lock free
+ * histograms, the numbers are read through getEndpoints( ) or over JMX once registered:
+ *
+ * InMemoryMetrics metrics = new InMemoryMetrics( );
+ * httpsClient.setMetrics( metrics );
+ * metrics.registerMBean( "nomics" );
+ * ...
+ * EndpointStats prices = metrics.getEndpoints( ).get( "/v1/prices" );
+ *
+ * @author danielanderson
+ *
+ */
+public class InMemoryMetrics implements ClientMetrics, ClientMetricsMXBean {
+
+	private final Map< String, Endpoint > endpoints = new ConcurrentHashMap< String, Endpoint >( );
+
+	@Override
+	public void requestCompleted( String endpoint, long nanos, long bytes )
+	{
+		Endpoint stats = endpoint( endpoint );
+		stats.latency.record( nanos );
+		stats.bytes.add( bytes );
+	}
+
+	@Override
+	public void requestFailed( String endpoint, long nanos, int status )
+	{
+		endpoint( endpoint ).failures.increment( );
+	}
+
+	@Override
+	public void responseDecoded( String endpoint, long nanos )
+	{
+		endpoint( endpoint ).decode.record( nanos );
+	}
+
+	@Override
+	public void cacheLookup( String endpoint, boolean hit )
+	{
+		Endpoint stats = endpoint( endpoint );
+
+		if( hit )
+			stats.cacheHits.increment( );
+		else
+			stats.cacheMisses.increment( );
+	}
+
+	@Override
+	public void responseNotModified( String endpoint )
+	{
+		endpoint( endpoint ).notModified.increment( );
+	}
+
+	@Override
+	public void requestCoalesced( String endpoint )
+	{
+		endpoint( endpoint ).coalesced.increment( );
+	}
+
+	@Override
+	public void rateLimitWaited( String endpoint, long nanos )
+	{
+		Endpoint stats = endpoint( endpoint );
+		stats.rateLimitWaits.increment( );
+		stats.rateLimitWaitNanos.add( nanos );
+	}
+
+	@Override
+	public void rateLimitRejected( String endpoint )
+	{
+		endpoint( endpoint ).rateLimitRejections.increment( );
+	}
+
+	@Override
+	public void requestRetried( String endpoint, int attempt, long delayNanos )
+	{
+		endpoint( endpoint ).retries.increment( );
+	}
+
+	@Override
+	public void requestHedged( String endpoint )
+	{
+		endpoint( endpoint ).hedges.increment( );
+	}
+
+	@Override
+	public void circuitRejected( String endpoint )
+	{
+		endpoint( endpoint ).circuitRejections.increment( );
+	}
+
+	@Override
+	public Map< String, EndpointStats > getEndpoints( )
+	{
+		Map< String, EndpointStats > stats = new TreeMap< String, EndpointStats >( );
+
+		for( Map.Entry< String, Endpoint > entry : endpoints.entrySet( ) )
+		{
+			stats.put( entry.getKey( ), entry.getValue( ).snapshot( entry.getKey( ) ) );
+		}
+
+		return stats;
+	}
+
+	@Override
+	public long getRequests( )
+	{
+		long requests = 0;
+
+		for( Endpoint stats : endpoints.values( ) )
+		{
+			requests += stats.latency.getCount( );
+		}
+
+		return requests;
+	}
+
+	@Override
+	public long getFailures( )
+	{
+		long failures = 0;
+
+		for( Endpoint stats : endpoints.values( ) )
+		{
+			failures += stats.failures.sum( );
+		}
+
+		return failures;
+	}
+
+	@Override
+	public long getBytesReceived( )
+	{
+		long bytes = 0;
+
+		for( Endpoint stats : endpoints.values( ) )
+		{
+			bytes += stats.bytes.sum( );
+		}
+
+		return bytes;
+	}
+
+	@Override
+	public void reset( )
+	{
+		endpoints.clear( );
+	}
+
+	/**
+	 * Expose these metrics on the platform MBean server as
+	 * nomics.core:type=ClientMetrics,name=<name>
+	 * @param name			Distinguishes clients when there are several ie. "nomics"
+	 * @return				The name registered under
+	 * @throws JMException	If the name is taken or invalid
+	 */
+	public ObjectName registerMBean( String name ) throws JMException
+	{
+		MBeanServer server    = ManagementFactory.getPlatformMBeanServer( );
+		ObjectName objectName = new ObjectName( "nomics.core:type=ClientMetrics,name=" + ObjectName.quote( name ) );
+
+		server.registerMBean( this, objectName );
+		return objectName;
+	}
+
+	/**
+	 * Remove a registration made by registerMBean( )
+	 * @param objectName
+	 * @throws JMException
+	 */
+	public void unregisterMBean( ObjectName objectName ) throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer( ).unregisterMBean( objectName );
+	}
+
+	private Endpoint endpoint( String endpoint )
+	{
+		Endpoint stats = endpoints.get( endpoint );
+		return stats != null ? stats : endpoints.computeIfAbsent( endpoint, path -> new Endpoint( ) );
+	}
+
+	private static double millis( long nanos )
+	{
+		return (double) nanos / TimeUnit.MILLISECONDS.toNanos( 1 );
+	}
+
+	/**
+	 * Live counters of one endpoint
+	 */
+	private static final class Endpoint {
+
+		final LatencyHistogram latency = new LatencyHistogram( );
+
+		final LatencyHistogram decode = new LatencyHistogram( );
+
+		final LongAdder bytes = new LongAdder( );
+
+		final LongAdder failures = new LongAdder( );
+
+		final LongAdder cacheHits = new LongAdder( );
+
+		final LongAdder cacheMisses = new LongAdder( );
+
+		final LongAdder notModified = new LongAdder( );
+
+		final LongAdder coalesced = new LongAdder( );
+
+		final LongAdder rateLimitWaits = new LongAdder( );
+
+		final LongAdder rateLimitWaitNanos = new LongAdder( );
+
+		final LongAdder rateLimitRejections = new LongAdder( );
+
+		final LongAdder retries = new LongAdder( );
+
+		final LongAdder hedges = new LongAdder( );
+
+		final LongAdder circuitRejections = new LongAdder( );
+
+		EndpointStats snapshot( String endpoint )
+		{
+			return new EndpointStats( endpoint, latency.getCount( ), failures.sum( ),
+				millis( latency.getPercentile( 0.5 ) ), millis( latency.getPercentile( 0.99 ) ), millis( latency.getPercentile( 0.999 ) ), millis( latency.getMax( ) ),
+				bytes.sum( ), millis( decode.getPercentile( 0.5 ) ), millis( decode.getPercentile( 0.99 ) ),
+				cacheHits.sum( ), cacheMisses.sum( ), notModified.sum( ), coalesced.sum( ),
+				rateLimitWaits.sum( ), millis( rateLimitWaitNanos.sum( ) ), rateLimitRejections.sum( ),
+				retries.sum( ), hedges.sum( ), circuitRejections.sum( ) );
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package nomics.core;
+
+/**
+ * Computes a set of indicators over a market's candles in one pass and then keeps them up
+ * to date as new candles close, at a constant cost per candle no matter how long the
+ * history is:
+ *
+ * IndicatorEngine indicators = new IndicatorEngine( 14 ).update( history );
+ * ...
+ * indicators.update( timestamp, open, high, low, close, volume );
+ * double atr = indicators.getAtr( );
+ *
+ * Tracked are the all time high and low, the simple and exponential moving averages of the
+ * close, the volume weighted average price since the first candle, the average true range
+ * (Wilder's smoothing) and the rolling volatility (standard deviation of log returns of the
+ * close).  All state lives in primitive fields and fixed size ring buffers sized up front,
+ * updates never allocate.  Window sums are kept running and re-added once per lap of the
+ * window, so an update is O(1) amortized.
+ *
+ * Feed closed candles only, oldest first.  Candles at or before the last one seen are ignored,
+ * as are candles that closed at 0.  Instances are not thread safe.
+ * @author danielanderson
+ *
+ */
+public class IndicatorEngine {
+
+	private final int smaPeriod;
+
+	private final int emaPeriod;
+
+	private final int atrPeriod;
+
+	private final int volatilityPeriod;
+
+	private long count;
+
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	private double lastClose = Double.NaN;
+
+	private double allTimeHigh = Double.NaN;
+
+	private double allTimeLow = Double.NaN;
+
+	/**
+	 * Last smaPeriod closes and their running sum
+	 */
+	private final double[] closes;
+
+	private double closeSum;
+
+	private double ema = Double.NaN;
+
+	private double emaSeedSum;
+
+	private double priceVolume;
+
+	private double totalVolume;
+
+	private double atr = Double.NaN;
+
+	private double trueRangeSum;
+
+	/**
+	 * Last volatilityPeriod log returns and their running sums
+	 */
+	private final double[] returns;
+
+	private double returnSum;
+
+	private double returnSquareSum;
+
+	private long returnCount;
+
+	/**
+	 * Create an engine using the same period for every windowed indicator
+	 * @param period				Number of candles in each window ie. 14
+	 */
+	public IndicatorEngine( int period )
+	{
+		this( period, period, period, period );
+	}
+
+	/**
+	 * @param smaPeriod			Candles in the simple moving average
+	 * @param emaPeriod			Candles in the exponential moving average
+	 * @param atrPeriod			Candles in the average true range
+	 * @param volatilityPeriod	Returns in the rolling volatility
+	 */
+	public IndicatorEngine( int smaPeriod, int emaPeriod, int atrPeriod, int volatilityPeriod )
+	{
+		if( smaPeriod < 1 || emaPeriod < 1 || atrPeriod < 1 || volatilityPeriod < 2 )
+			throw new IllegalArgumentException( "Periods must be at least 1, and at least 2 for volatility" );
+
+		this.smaPeriod        = smaPeriod;
+		this.emaPeriod        = emaPeriod;
+		this.atrPeriod        = atrPeriod;
+		this.volatilityPeriod = volatilityPeriod;
+		this.closes           = new double[ smaPeriod ];
+		this.returns          = new double[ volatilityPeriod ];
+	}
+
+	/**
+	 * Feed every candle of a series
+	 * @param candles		Candles sorted oldest first
+	 * @return				This engine
+	 */
+	public IndicatorEngine update( CandleSeries candles )
+	{
+		for( int i = 0; i < candles.size( ); i++ )
+		{
+			update( candles.getTimestamp( i ), candles.getOpen( i ), candles.getHigh( i ), candles.getLow( i ), candles.getClose( i ), candles.getVolume( i ) );
+		}
+
+		return this;
+	}
+
+	/**
+	 * Feed one closed candle
+	 * @return				True if the candle was used, false if it was ignored
+	 */
+	public boolean update( long timestamp, double open, double high, double low, double close, double volume )
+	{
+		if( timestamp <= lastTimestamp || close == 0 )
+			return false;
+
+		double previousClose = lastClose;
+
+		count++;
+		lastTimestamp = timestamp;
+		lastClose     = close;
+
+		//All time high and low
+		if( !( high <= allTimeHigh ) )
+			allTimeHigh = high;
+
+		if( !( low >= allTimeLow ) )
+			allTimeLow = low;
+
+		//Simple moving average over a ring of closes
+		int slot = (int) ( ( count - 1 ) % smaPeriod );
+
+		if( count > smaPeriod )
+			closeSum -= closes[ slot ];
+
+		closes[ slot ] = close;
+		closeSum      += close;
+
+		//Re-add the window once per lap so rounding in the running sum cannot build up
+		if( slot == smaPeriod - 1 )
+			closeSum = sum( closes );
+
+		//Exponential moving average, seeded with the simple average of the first emaPeriod closes
+		if( count < emaPeriod )
+		{
+			emaSeedSum += close;
+		}
+		else if( count == emaPeriod )
+		{
+			ema = ( emaSeedSum + close ) / emaPeriod;
+		}
+		else
+		{
+			ema += ( close - ema ) * 2 / ( emaPeriod + 1 );
+		}
+
+		//Volume weighted average of the typical price
+		priceVolume += ( high + low + close ) / 3 * volume;
+		totalVolume += volume;
+
+		//Average true range, seeded with the simple average of the first atrPeriod ranges
+		double trueRange = Double.isNaN( previousClose ) ? high - low : Math.max( high - low, Math.max( Math.abs( high - previousClose ), Math.abs( low - previousClose ) ) );
+
+		if( count < atrPeriod )
+		{
+			trueRangeSum += trueRange;
+		}
+		else if( count == atrPeriod )
+		{
+			atr = ( trueRangeSum + trueRange ) / atrPeriod;
+		}
+		else
+		{
+			atr = ( atr * ( atrPeriod - 1 ) + trueRange ) / atrPeriod;
+		}
+
+		//Rolling volatility of log returns
+		if( !Double.isNaN( previousClose ) )
+		{
+			double logReturn = Math.log( close / previousClose );
+			int returnSlot   = (int) ( returnCount % volatilityPeriod );
+
+			if( returnCount >= volatilityPeriod )
+			{
+				double dropped   = returns[ returnSlot ];
+				returnSum       -= dropped;
+				returnSquareSum -= dropped * dropped;
+			}
+
+			returns[ returnSlot ] = logReturn;
+			returnSum            += logReturn;
+			returnSquareSum      += logReturn * logReturn;
+			returnCount++;
+
+			if( returnSlot == volatilityPeriod - 1 )
+			{
+				returnSum       = sum( returns );
+				returnSquareSum = sumOfSquares( returns );
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return				Number of candles used so far
+	 */
+	public long getCount( )
+	{
+		return count;
+	}
+
+	/**
+	 * @return				Open time of the last candle used, or -1 if none
+	 */
+	public long getLastTimestamp( )
+	{
+		return count == 0 ? -1 : lastTimestamp;
+	}
+
+	/**
+	 * @return				Highest high, NaN until the first candle
+	 */
+	public double getAllTimeHigh( )
+	{
+		return allTimeHigh;
+	}
+
+	/**
+	 * @return				Lowest low, NaN until the first candle
+	 */
+	public double getAllTimeLow( )
+	{
+		return allTimeLow;
+	}
+
+	/**
+	 * @return				Simple moving average of the close, NaN until smaPeriod candles
+	 */
+	public double getSma( )
+	{
+		return count < smaPeriod ? Double.NaN : closeSum / smaPeriod;
+	}
+
+	/**
+	 * @return				Exponential moving average of the close, NaN until emaPeriod candles
+	 */
+	public double getEma( )
+	{
+		return ema;
+	}
+
+	/**
+	 * @return				Volume weighted average price since the first candle, NaN without volume
+	 */
+	public double getVwap( )
+	{
+		return totalVolume == 0 ? Double.NaN : priceVolume / totalVolume;
+	}
+
+	/**
+	 * @return				Average true range, NaN until atrPeriod candles
+	 */
+	public double getAtr( )
+	{
+		return atr;
+	}
+
+	/**
+	 * @return				Sample standard deviation of the last volatilityPeriod log returns of the
+	 * 						close (not annualized), NaN until that many returns
+	 */
+	public double getVolatility( )
+	{
+		if( returnCount < volatilityPeriod )
+			return Double.NaN;
+
+		double mean     = returnSum / volatilityPeriod;
+		double variance = ( returnSquareSum - mean * returnSum ) / ( volatilityPeriod - 1 );
+
+		//Rounding can take the variance of a flat market a hair below zero
+		return Math.sqrt( Math.max( 0, variance ) );
+	}
+
+	private static double sum( double[] values )
+	{
+		double sum = 0;
+
+		for( double value : values )
+		{
+			sum += value;
+		}
+
+		return sum;
+	}
+
+	private static double sumOfSquares( double[] values )
+	{
+		double sum = 0;
+
+		for( double value : values )
+		{
+			sum += value * value;
+		}
+
+		return sum;
+	}
+}
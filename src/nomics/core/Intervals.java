@@ -0,0 +1,61 @@
+package nomics.core;
+
+/**
+ * Helpers for candle interval strings as used by the nomics API ie. "1m", "30m", "1h", "1d"
+ * @author danielanderson
+ *
+ */
+public final class Intervals {
+
+	public static final long MINUTE = 60 * 1000L;
+
+	public static final long HOUR = 60 * MINUTE;
+
+	public static final long DAY = 24 * HOUR;
+
+	public static final long WEEK = 7 * DAY;
+
+	private Intervals( )
+	{
+	}
+
+	/**
+	 * Convert an interval string to its length in milliseconds
+	 * @param interval		A count followed by a unit: m, h, d or w ie. "15m", "4h", "1w"
+	 * @return				The length of the interval in milliseconds
+	 * @throws IllegalArgumentException	When the interval is not understood
+	 */
+	public static long toMillis( String interval )
+	{
+		if( interval == null || interval.length( ) < 2 )
+			throw new IllegalArgumentException( "Invalid interval: " + interval );
+
+		long count;
+
+		try
+		{
+			count = Long.parseLong( interval.substring( 0, interval.length( ) - 1 ) );
+		}
+		catch( NumberFormatException e )
+		{
+			throw new IllegalArgumentException( "Invalid interval: " + interval );
+		}
+
+		if( count < 1 )
+			throw new IllegalArgumentException( "Invalid interval: " + interval );
+
+		switch( interval.charAt( interval.length( ) - 1 ) )
+		{
+			case 'm':
+				return count * MINUTE;
+			case 'h':
+				return count * HOUR;
+			case 'd':
+				return count * DAY;
+			case 'w':
+				return count * WEEK;
+			default:
+				throw new IllegalArgumentException( "Invalid interval: " + interval );
+		}
+	}
+}
@@ -0,0 +1,874 @@
+package nomics.core;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+import org.json.JSONException;
+
+/**
+ * Minimal pull parser that reads JSON tokens straight off of a byte stream.  The
+ * nomics API returns large arrays of small flat objects, so rather than building
+ * a String and then a JSONArray tree the wrappers walk the response token by token
+ * and only keep the values they need.  Usage mirrors the shape of the document:
+ *
+ * reader.beginArray( );
+ * while( reader.hasNext( ) )
+ * {
+ *   reader.beginObject( );
+ *   while( reader.hasNext( ) )
+ *   {
+ *     switch( reader.nextName( NAMES ) ) { ... }
+ *   }
+ *   reader.endObject( );
+ * }
+ * reader.endArray( );
+ *
+ * Instances are not thread safe.
+ * @author danielanderson
+ *
+ */
+public class JsonReader implements Closeable {
+
+	public enum Token { BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, LITERAL, END_DOCUMENT };
+
+	/**
+	 * Pre-encoded set of field names that can be matched without allocating a String per field
+	 */
+	public static final class Names {
+
+		private final byte[][] names;
+
+		private Names( byte[][] names )
+		{
+			this.names = names;
+		}
+
+		/**
+		 * Build a set of names, nextName( Names ) returns the index of the matched name
+		 * @param names			Field names in the order their indexes should be returned
+		 * @return
+		 */
+		public static Names of( String... names )
+		{
+			byte[][] encoded = new byte[ names.length ][ ];
+
+			for( int i = 0; i < names.length; i++ )
+			{
+				encoded[ i ] = names[ i ].getBytes( StandardCharsets.UTF_8 );
+			}
+
+			return new Names( encoded );
+		}
+	}
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final double[] POWERS_OF_TEN = new double[ 23 ];
+
+	static
+	{
+		POWERS_OF_TEN[ 0 ] = 1;
+
+		for( int i = 1; i < POWERS_OF_TEN.length; i++ )
+		{
+			POWERS_OF_TEN[ i ] = POWERS_OF_TEN[ i - 1 ] * 10;
+		}
+	}
+
+	/**
+	 * Size of the table used to de-duplicate repeated string values
+	 */
+	private static final int POOL_SIZE = 512;
+
+	private static final int EMPTY_ARRAY		= 1;
+	private static final int NONEMPTY_ARRAY		= 2;
+	private static final int EMPTY_OBJECT		= 3;
+	private static final int DANGLING_NAME		= 4;
+	private static final int NONEMPTY_OBJECT	= 5;
+	private static final int EMPTY_DOCUMENT		= 6;
+	private static final int NONEMPTY_DOCUMENT	= 7;
+
+	private final InputStream in;
+
+	private byte[] buffer;
+
+	private int pos;
+
+	private int limit;
+
+	private int[] stack = new int[ 16 ];
+
+	private int depth;
+
+	private Token peeked;
+
+	/**
+	 * Scratch space holding the bytes of the last string read
+	 */
+	private byte[] scratch = new byte[ 64 ];
+
+	private int scratchLength;
+
+	private String[] pool;
+
+	/**
+	 * Read JSON from a stream, the stream is closed with the reader
+	 * @param in				Stream positioned at the start of the document
+	 */
+	public JsonReader( InputStream in )
+	{
+		this.in     = in;
+		this.buffer = new byte[ BUFFER_SIZE ];
+		stack[ depth++ ] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * Read JSON already held in memory
+	 * @param data			Array holding the document
+	 * @param offset			Start of the document
+	 * @param length			Length of the document in bytes
+	 */
+	public JsonReader( byte[] data, int offset, int length )
+	{
+		this.in     = null;
+		this.buffer = data;
+		this.pos    = offset;
+		this.limit  = offset + length;
+		stack[ depth++ ] = EMPTY_DOCUMENT;
+	}
+
+	/**
+	 * Returns the type of the next token without consuming it
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public Token peek( ) throws IOException, JSONException
+	{
+		if( peeked != null )
+			return peeked;
+
+		int scope = stack[ depth - 1 ];
+		int c;
+
+		switch( scope )
+		{
+			case EMPTY_ARRAY:
+				stack[ depth - 1 ] = NONEMPTY_ARRAY;
+				c = nextNonWhitespace( );
+				if( c == ']' )
+					return peeked = Token.END_ARRAY;
+				pos--;
+				break;
+			case NONEMPTY_ARRAY:
+				c = nextNonWhitespace( );
+				if( c == ']' )
+					return peeked = Token.END_ARRAY;
+				if( c != ',' )
+					throw syntaxError( "Expected ',' or ']'" );
+				break;
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				stack[ depth - 1 ] = DANGLING_NAME;
+				c = nextNonWhitespace( );
+				if( c == '}' )
+					return peeked = Token.END_OBJECT;
+				if( scope == NONEMPTY_OBJECT )
+				{
+					if( c != ',' )
+						throw syntaxError( "Expected ',' or '}'" );
+					c = nextNonWhitespace( );
+				}
+				if( c != '"' )
+					throw syntaxError( "Expected name" );
+				return peeked = Token.NAME;
+			case DANGLING_NAME:
+				stack[ depth - 1 ] = NONEMPTY_OBJECT;
+				if( nextNonWhitespace( ) != ':' )
+					throw syntaxError( "Expected ':'" );
+				break;
+			case EMPTY_DOCUMENT:
+				stack[ depth - 1 ] = NONEMPTY_DOCUMENT;
+				break;
+			case NONEMPTY_DOCUMENT:
+				if( skipWhitespace( ) == -1 )
+					return peeked = Token.END_DOCUMENT;
+				throw syntaxError( "Expected end of document" );
+		}
+
+		c = nextNonWhitespace( );
+
+		switch( c )
+		{
+			case '[':
+				return peeked = Token.BEGIN_ARRAY;
+			case '{':
+				return peeked = Token.BEGIN_OBJECT;
+			case '"':
+				return peeked = Token.STRING;
+			case 't':
+			case 'f':
+			case 'n':
+				pos--;
+				return peeked = Token.LITERAL;
+			default:
+				pos--;
+				return peeked = Token.NUMBER;
+		}
+	}
+
+	public void beginArray( ) throws IOException, JSONException
+	{
+		expect( Token.BEGIN_ARRAY );
+		push( EMPTY_ARRAY );
+	}
+
+	public void endArray( ) throws IOException, JSONException
+	{
+		expect( Token.END_ARRAY );
+		depth--;
+	}
+
+	public void beginObject( ) throws IOException, JSONException
+	{
+		expect( Token.BEGIN_OBJECT );
+		push( EMPTY_OBJECT );
+	}
+
+	public void endObject( ) throws IOException, JSONException
+	{
+		expect( Token.END_OBJECT );
+		depth--;
+	}
+
+	/**
+	 * Returns true while the current array or object has more elements
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public boolean hasNext( ) throws IOException, JSONException
+	{
+		Token token = peek( );
+		return token != Token.END_ARRAY && token != Token.END_OBJECT && token != Token.END_DOCUMENT;
+	}
+
+	/**
+	 * Consume the next field name
+	 * @return				The name as a String
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public String nextName( ) throws IOException, JSONException
+	{
+		expect( Token.NAME );
+		readString( );
+		return new String( scratch, 0, scratchLength, StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Consume the next field name and match it against a set of known names without allocating
+	 * @param names			The names of interest
+	 * @return				The index of the matched name, or -1 if the name is not in the set
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public int nextName( Names names ) throws IOException, JSONException
+	{
+		expect( Token.NAME );
+		readString( );
+
+		for( int i = 0; i < names.names.length; i++ )
+		{
+			byte[] name = names.names[ i ];
+
+			if( name.length == scratchLength && rangeEquals( name, scratch, scratchLength ) )
+				return i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Consume the next value as a String.  Numbers and literals are returned as written
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public String nextString( ) throws IOException, JSONException
+	{
+		readValue( );
+		return new String( scratch, 0, scratchLength, StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * Same as nextString( ) except repeated values (exchange ids, symbols ...) share
+	 * one String instance per reader, which keeps large catalogs small on the heap
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public String nextPooledString( ) throws IOException, JSONException
+	{
+		readValue( );
+
+		if( pool == null )
+			pool = new String[ POOL_SIZE ];
+
+		int hash = 1;
+		for( int i = 0; i < scratchLength; i++ )
+		{
+			hash = 31 * hash + scratch[ i ];
+		}
+
+		int slot      = ( hash ^ ( hash >>> 16 ) ) & ( POOL_SIZE - 1 );
+		String cached = pool[ slot ];
+
+		if( cached != null && cached.length( ) == scratchLength && asciiEquals( cached ) )
+			return cached;
+
+		String value = new String( scratch, 0, scratchLength, StandardCharsets.UTF_8 );
+		pool[ slot ] = value;
+		return value;
+	}
+
+	/**
+	 * Consume the next value, quoted or not, as a double.  Plain decimals of up to 15 significant
+	 * digits (every price and volume nomics returns) are converted without allocating, anything
+	 * else falls back to Double.parseDouble( )
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public double nextDouble( ) throws IOException, JSONException
+	{
+		readValue( );
+
+		int i          = 0;
+		boolean minus  = false;
+		long mantissa  = 0;
+		int digits     = 0;
+		int numerals   = 0;
+		int fraction   = -1;
+
+		if( scratchLength > 0 && ( scratch[ 0 ] == '-' || scratch[ 0 ] == '+' ) )
+		{
+			minus = scratch[ 0 ] == '-';
+			i++;
+		}
+
+		for( ; i < scratchLength; i++ )
+		{
+			int c = scratch[ i ];
+
+			if( c >= '0' && c <= '9' )
+			{
+				if( mantissa != 0 || c != '0' )
+					digits++;
+
+				numerals++;
+				mantissa = mantissa * 10 + ( c - '0' );
+
+				if( fraction >= 0 )
+					fraction++;
+			}
+			else if( c == '.' && fraction < 0 )
+			{
+				fraction = 0;
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		//Fast path: an exact mantissa divided by an exact power of ten rounds correctly.  A lone
+		//sign or point has no digits and is left to parseDouble( ) to reject
+		if( i == scratchLength && numerals > 0 && digits <= 15 && fraction <= 22 )
+		{
+			double value = fraction > 0 ? mantissa / POWERS_OF_TEN[ fraction ] : mantissa;
+			return minus ? -value : value;
+		}
+
+		String value = new String( scratch, 0, scratchLength, StandardCharsets.UTF_8 );
+
+		try
+		{
+			return Double.parseDouble( value );
+		}
+		catch( NumberFormatException e )
+		{
+			throw syntaxError( "Expected a number but was " + value );
+		}
+	}
+
+	/**
+	 * Consume the next value, quoted or not, as a Decimal8.  Plain decimals are converted exactly
+	 * and without allocating, digits past the 8th decimal are dropped
+	 * @return				The value in units of 0.00000001, see Decimal8
+	 * @throws IOException
+	 * @throws JSONException	If the value is not a number or is out of range
+	 */
+	public long nextDecimal8( ) throws IOException, JSONException
+	{
+		readValue( );
+
+		long units = Decimal8.parse( scratch, 0, scratchLength );
+
+		if( units != Long.MIN_VALUE )
+			return units;
+
+		String value = new String( scratch, 0, scratchLength, StandardCharsets.UTF_8 );
+
+		try
+		{
+			return Decimal8.parse( value );
+		}
+		catch( NumberFormatException e )
+		{
+			throw syntaxError( "Expected a number but was " + value );
+		}
+	}
+
+	/**
+	 * Consume the next value as an ISO-8601 UTC timestamp ie. "2018-03-19T10:00:00Z" and return
+	 * it in epoch milliseconds.  The common form is parsed without allocating, other forms
+	 * (offsets, fractions of a second) go through java.time
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public long nextTimestamp( ) throws IOException, JSONException
+	{
+		readValue( );
+
+		if( scratchLength == 20 && scratch[ 4 ] == '-' && scratch[ 7 ] == '-' && scratch[ 10 ] == 'T'
+				&& scratch[ 13 ] == ':' && scratch[ 16 ] == ':' && scratch[ 19 ] == 'Z' )
+		{
+			int year   = digits( 0, 4 );
+			int month  = digits( 5, 2 );
+			int day    = digits( 8, 2 );
+			int hour   = digits( 11, 2 );
+			int minute = digits( 14, 2 );
+			int second = digits( 17, 2 );
+
+			if( year >= 0 && month >= 1 && month <= 12 && day >= 1 && hour >= 0 && minute >= 0 && second >= 0 )
+			{
+				return ( ( ( epochDay( year, month, day ) * 24 + hour ) * 60 + minute ) * 60 + second ) * 1000L;
+			}
+		}
+
+		String value = new String( scratch, 0, scratchLength, StandardCharsets.UTF_8 );
+
+		try
+		{
+			return OffsetDateTime.parse( value ).toInstant( ).toEpochMilli( );
+		}
+		catch( DateTimeParseException e )
+		{
+			throw syntaxError( "Expected a timestamp but was " + value );
+		}
+	}
+
+	/**
+	 * Internal method to parse a run of decimal digits out of scratch, -1 if any is not a digit
+	 * @param start
+	 * @param length
+	 * @return
+	 */
+	private int digits( int start, int length )
+	{
+		int value = 0;
+
+		for( int i = start; i < start + length; i++ )
+		{
+			int c = scratch[ i ] - '0';
+
+			if( c < 0 || c > 9 )
+				return -1;
+
+			value = value * 10 + c;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Days since 1970-01-01 of a proleptic Gregorian date
+	 * @param year
+	 * @param month			1 - 12
+	 * @param day			1 - 31
+	 * @return
+	 */
+	static long epochDay( int year, int month, int day )
+	{
+		long y   = month <= 2 ? year - 1 : year;
+		long era = ( y >= 0 ? y : y - 399 ) / 400;
+		long yoe = y - era * 400;
+		long doy = ( 153 * ( month + ( month > 2 ? -3 : 9 ) ) + 2 ) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	/**
+	 * Skip the next value, including any nested arrays or objects
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public void skipValue( ) throws IOException, JSONException
+	{
+		int count = 0;
+
+		do
+		{
+			switch( peek( ) )
+			{
+				case BEGIN_ARRAY:
+					beginArray( );
+					count++;
+					break;
+				case BEGIN_OBJECT:
+					beginObject( );
+					count++;
+					break;
+				case END_ARRAY:
+					endArray( );
+					count--;
+					break;
+				case END_OBJECT:
+					endObject( );
+					count--;
+					break;
+				case NAME:
+				case STRING:
+					//peek has already consumed the opening quote
+					peeked = null;
+					readString( );
+					break;
+				case NUMBER:
+				case LITERAL:
+					peeked = null;
+					readUnquoted( );
+					break;
+				case END_DOCUMENT:
+					throw syntaxError( "Unexpected end of document" );
+			}
+		}
+		while( count > 0 );
+	}
+
+	@Override
+	public void close( ) throws IOException
+	{
+		peeked = null;
+		depth  = 0;
+
+		if( in != null )
+			in.close( );
+	}
+
+	/**
+	 * Internal method to consume a token of the expected type
+	 * @param expected
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private void expect( Token expected ) throws IOException, JSONException
+	{
+		Token token = peek( );
+
+		if( token != expected )
+			throw syntaxError( "Expected " + expected + " but was " + token );
+
+		peeked = null;
+	}
+
+	/**
+	 * Internal method to read a string, number or literal value into scratch
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private void readValue( ) throws IOException, JSONException
+	{
+		Token token = peek( );
+
+		if( token == Token.STRING )
+		{
+			peeked = null;
+			readString( );
+		}
+		else if( token == Token.NUMBER || token == Token.LITERAL )
+		{
+			peeked = null;
+			readUnquoted( );
+		}
+		else
+		{
+			throw syntaxError( "Expected a value but was " + token );
+		}
+	}
+
+	private void push( int scope )
+	{
+		if( depth == stack.length )
+			stack = Arrays.copyOf( stack, depth * 2 );
+
+		stack[ depth++ ] = scope;
+	}
+
+	/**
+	 * Internal method to read the remainder of a quoted string into scratch.  The
+	 * opening quote has already been consumed
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private void readString( ) throws IOException, JSONException
+	{
+		scratchLength = 0;
+
+		while( true )
+		{
+			if( pos == limit && !fill( ) )
+				throw syntaxError( "Unterminated string" );
+
+			int c = buffer[ pos++ ];
+
+			if( c == '"' )
+				return;
+
+			if( c == '\\' )
+			{
+				if( pos == limit && !fill( ) )
+					throw syntaxError( "Unterminated escape" );
+
+				c = buffer[ pos++ ];
+
+				switch( c )
+				{
+					case 'b': appendScratch( '\b' ); break;
+					case 'f': appendScratch( '\f' ); break;
+					case 'n': appendScratch( '\n' ); break;
+					case 'r': appendScratch( '\r' ); break;
+					case 't': appendScratch( '\t' ); break;
+					case 'u': appendCodePoint( readEscapedCodePoint( ) ); break;
+					default:  appendScratch( c );
+				}
+			}
+			else
+			{
+				appendScratch( c );
+			}
+		}
+	}
+
+	/**
+	 * Internal method to read a number or literal into scratch
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private void readUnquoted( ) throws IOException, JSONException
+	{
+		scratchLength = 0;
+
+		while( pos < limit || fill( ) )
+		{
+			int c = buffer[ pos ];
+
+			if( c == ',' || c == ']' || c == '}' || c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ':' )
+				break;
+
+			appendScratch( c );
+			pos++;
+		}
+
+		if( scratchLength == 0 )
+			throw syntaxError( "Expected a value" );
+	}
+
+	/**
+	 * Internal method to read the code point of a \\u escape whose backslash and u have been
+	 * consumed.  A high surrogate must be followed by a \\u escape of a low surrogate, the two
+	 * are joined into one supplementary code point
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException	On a non hex digit or an unpaired surrogate
+	 */
+	private int readEscapedCodePoint( ) throws IOException, JSONException
+	{
+		int unit = readHex( );
+
+		if( Character.isLowSurrogate( (char) unit ) )
+			throw syntaxError( "Unpaired low surrogate \\u" + Integer.toHexString( unit ) );
+
+		if( !Character.isHighSurrogate( (char) unit ) )
+			return unit;
+
+		if( nextByte( ) != '\\' || nextByte( ) != 'u' )
+			throw syntaxError( "Unpaired high surrogate \\u" + Integer.toHexString( unit ) );
+
+		int low = readHex( );
+
+		if( !Character.isLowSurrogate( (char) low ) )
+			throw syntaxError( "Unpaired high surrogate \\u" + Integer.toHexString( unit ) );
+
+		return Character.toCodePoint( (char) unit, (char) low );
+	}
+
+	private int readHex( ) throws IOException, JSONException
+	{
+		int value = 0;
+
+		for( int i = 0; i < 4; i++ )
+		{
+			int c     = nextByte( );
+			int digit = Character.digit( c, 16 );
+
+			if( digit < 0 )
+				throw syntaxError( "Invalid hex digit '" + (char) c + "' in \\u escape" );
+
+			value = ( value << 4 ) | digit;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Internal method returning the next byte of an escape, failing at the end of the input
+	 */
+	private int nextByte( ) throws IOException, JSONException
+	{
+		if( pos == limit && !fill( ) )
+			throw syntaxError( "Unterminated escape" );
+
+		return buffer[ pos++ ];
+	}
+
+	private void appendCodePoint( int codePoint )
+	{
+		if( codePoint < 0x80 )
+		{
+			appendScratch( codePoint );
+		}
+		else if( codePoint < 0x800 )
+		{
+			appendScratch( 0xC0 | ( codePoint >> 6 ) );
+			appendScratch( 0x80 | ( codePoint & 0x3F ) );
+		}
+		else if( codePoint < 0x10000 )
+		{
+			appendScratch( 0xE0 | ( codePoint >> 12 ) );
+			appendScratch( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );
+			appendScratch( 0x80 | ( codePoint & 0x3F ) );
+		}
+		else
+		{
+			appendScratch( 0xF0 | ( codePoint >> 18 ) );
+			appendScratch( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) );
+			appendScratch( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );
+			appendScratch( 0x80 | ( codePoint & 0x3F ) );
+		}
+	}
+
+	private void appendScratch( int c )
+	{
+		if( scratchLength == scratch.length )
+			scratch = Arrays.copyOf( scratch, scratchLength * 2 );
+
+		scratch[ scratchLength++ ] = (byte) c;
+	}
+
+	private boolean asciiEquals( String value )
+	{
+		for( int i = 0; i < scratchLength; i++ )
+		{
+			if( value.charAt( i ) != scratch[ i ] )
+				return false;
+		}
+
+		return true;
+	}
+
+	private static boolean rangeEquals( byte[] a, byte[] b, int length )
+	{
+		for( int i = 0; i < length; i++ )
+		{
+			if( a[ i ] != b[ i ] )
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the next non whitespace character, failing at the end of the input
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private int nextNonWhitespace( ) throws IOException, JSONException
+	{
+		int c = skipWhitespace( );
+
+		if( c == -1 )
+			throw syntaxError( "Unexpected end of document" );
+
+		pos++;
+		return c;
+	}
+
+	/**
+	 * Skips whitespace and returns the next character without consuming it, or -1 at the end of input
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private int skipWhitespace( ) throws IOException, JSONException
+	{
+		while( pos < limit || fill( ) )
+		{
+			int c = buffer[ pos ];
+
+			if( c != ' ' && c != '\n' && c != '\r' && c != '\t' )
+				return c;
+
+			pos++;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Internal method to refill the buffer from the stream
+	 * @return				false at the end of the stream
+	 * @throws IOException
+	 */
+	private boolean fill( ) throws IOException
+	{
+		if( in == null )
+			return false;
+
+		//Keep the last consumed byte around so callers may step back one position
+		if( limit > 0 )
+		{
+			buffer[ 0 ] = buffer[ limit - 1 ];
+			pos = limit = 1;
+		}
+
+		int read = in.read( buffer, limit, buffer.length - limit );
+
+		if( read == -1 )
+			return false;
+
+		limit += read;
+		return true;
+	}
+
+	private JSONException syntaxError( String message )
+	{
+		return new JSONException( message + " at offset " + pos );
+	}
+}
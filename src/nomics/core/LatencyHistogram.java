@@ -0,0 +1,116 @@
+package nomics.core;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations (or any non negative long).  Values are counted in log
+ * linear buckets, 16 per power of two, so any percentile is reported within about 6% of the
+ * true value while recording is a couple of atomic increments and memory is fixed at 8KB
+ * @author danielanderson
+ *
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * Buckets per power of two, as a power of two
+	 */
+	private static final int SUB_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private static final int BUCKETS = ( 64 - SUB_BITS ) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+
+	private final AtomicLong count = new AtomicLong( );
+
+	private final AtomicLong sum = new AtomicLong( );
+
+	private final AtomicLong max = new AtomicLong( );
+
+	/**
+	 * Count a value, negative values are counted as 0
+	 * @param value
+	 */
+	public void record( long value )
+	{
+		value = Math.max( 0, value );
+
+		counts.incrementAndGet( bucket( value ) );
+		count.incrementAndGet( );
+		sum.addAndGet( value );
+
+		long current;
+
+		while( value > ( current = max.get( ) ) && !max.compareAndSet( current, value ) )
+		{
+			//Lost a race with a concurrent record, try again
+		}
+	}
+
+	public long getCount( )
+	{
+		return count.get( );
+	}
+
+	public long getMax( )
+	{
+		return max.get( );
+	}
+
+	/**
+	 * @return				Mean of the recorded values, 0 when empty
+	 */
+	public double getMean( )
+	{
+		long n = count.get( );
+		return n == 0 ? 0 : (double) sum.get( ) / n;
+	}
+
+	/**
+	 * @param quantile		ie. 0.5, 0.99, 0.999
+	 * @return				The value below which that fraction of the recorded values fall, 0 when empty
+	 */
+	public long getPercentile( double quantile )
+	{
+		long n = count.get( );
+
+		if( n == 0 )
+			return 0;
+
+		long rank       = Math.max( 1, (long) Math.ceil( quantile * n ) );
+		long cumulative = 0;
+
+		for( int i = 0; i < BUCKETS; i++ )
+		{
+			cumulative += counts.get( i );
+
+			if( cumulative >= rank )
+				return Math.min( upperBound( i ), max.get( ) );
+		}
+
+		//Records landed after count was read
+		return max.get( );
+	}
+
+	private static int bucket( long value )
+	{
+		if( value < SUB_BUCKETS )
+			return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros( value );
+		int sub      = (int) ( value >>> ( exponent - SUB_BITS ) ) & ( SUB_BUCKETS - 1 );
+		return ( exponent - SUB_BITS + 1 ) * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBound( int bucket )
+	{
+		if( bucket < SUB_BUCKETS )
+			return bucket;
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		int sub      = bucket % SUB_BUCKETS;
+		int shift    = exponent - SUB_BITS;
+		return ( (long) ( SUB_BUCKETS + sub ) << shift ) + ( 1L << shift ) - 1;
+	}
+}
@@ -0,0 +1,239 @@
+package nomics.core;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded, least recently used response cache with a time to live per endpoint.
+ * Endpoints are matched on the URL path ie. "/v1/markets", so the markets catalog can be
+ * kept for hours while candle histories expire after a minute:
+ *
+ * LruResponseCache cache = new LruResponseCache( 64 * 1024 * 1024 );
+ * cache.setTimeToLive( "/v1/markets", 6, TimeUnit.HOURS );
+ * cache.setTimeToLive( "/v1/exchange_candles", 1, TimeUnit.MINUTES );
+ * httpsClient.setResponseCache( cache );
+ *
+ * Endpoints without a time to live are not cached.  When the bodies held exceed the
+ * memory budget the least recently used entries are evicted first.
+ * @author danielanderson
+ *
+ */
+public class LruResponseCache implements ResponseCache {
+
+	/**
+	 * Rough per entry cost of the map node, entry object and array headers
+	 */
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private final long maxBytes;
+
+	private final Map< String, Long > timeToLive = new ConcurrentHashMap< String, Long >( );
+
+	/**
+	 * Entries in access order, guarded by this
+	 */
+	private final LinkedHashMap< String, Entry > entries = new LinkedHashMap< String, Entry >( 64, 0.75f, true );
+
+	private long bytes;
+
+	private final AtomicLong hits = new AtomicLong( );
+
+	private final AtomicLong misses = new AtomicLong( );
+
+	private final AtomicLong evictions = new AtomicLong( );
+
+	/**
+	 * Create an empty cache
+	 * @param maxBytes		Memory budget for the cached bodies (and keys) in bytes
+	 */
+	public LruResponseCache( long maxBytes )
+	{
+		if( maxBytes < 1 )
+			throw new IllegalArgumentException( "maxBytes must be positive" );
+
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Set how long responses of an endpoint stay fresh, 0 disables caching for it
+	 * @param endpoint		The URL path ie. "/v1/markets"
+	 * @param duration
+	 * @param unit
+	 * @return				This cache
+	 */
+	public LruResponseCache setTimeToLive( String endpoint, long duration, TimeUnit unit )
+	{
+		timeToLive.put( endpoint, unit.toNanos( duration ) );
+		return this;
+	}
+
+	@Override
+	public boolean isCacheable( String url )
+	{
+		return ttl( url ) > 0;
+	}
+
+	@Override
+	public byte[] get( String url )
+	{
+		Entry entry;
+
+		synchronized( this )
+		{
+			entry = entries.get( url );
+
+			if( entry != null && System.nanoTime( ) - entry.expiresAt >= 0 )
+			{
+				remove( url );
+				entry = null;
+			}
+		}
+
+		if( entry == null )
+		{
+			misses.incrementAndGet( );
+			return null;
+		}
+
+		hits.incrementAndGet( );
+		return entry.body;
+	}
+
+	@Override
+	public void put( String url, byte[] body )
+	{
+		long ttl = ttl( url );
+
+		if( ttl <= 0 )
+			return;
+
+		Entry entry = new Entry( body, System.nanoTime( ) + ttl, weigh( url, body ) );
+
+		//A single body larger than the whole budget is never worth keeping
+		if( entry.weight > maxBytes )
+			return;
+
+		synchronized( this )
+		{
+			Entry previous = entries.put( url, entry );
+
+			if( previous != null )
+				bytes -= previous.weight;
+
+			bytes += entry.weight;
+
+			Iterator< Map.Entry< String, Entry > > eldest = entries.entrySet( ).iterator( );
+
+			while( bytes > maxBytes && eldest.hasNext( ) )
+			{
+				bytes -= eldest.next( ).getValue( ).weight;
+				eldest.remove( );
+				evictions.incrementAndGet( );
+			}
+		}
+	}
+
+	@Override
+	public synchronized void invalidate( String url )
+	{
+		remove( url );
+	}
+
+	@Override
+	public synchronized void clear( )
+	{
+		entries.clear( );
+		bytes = 0;
+	}
+
+	@Override
+	public long getHitCount( )
+	{
+		return hits.get( );
+	}
+
+	@Override
+	public long getMissCount( )
+	{
+		return misses.get( );
+	}
+
+	/**
+	 * @return				Number of entries dropped to stay within the memory budget
+	 */
+	public long getEvictionCount( )
+	{
+		return evictions.get( );
+	}
+
+	/**
+	 * @return				Share of lookups served from the cache, 0 when there have been none
+	 */
+	public double getHitRatio( )
+	{
+		long hit   = hits.get( );
+		long total = hit + misses.get( );
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	/**
+	 * @return				Estimated bytes currently held
+	 */
+	public synchronized long getSize( )
+	{
+		return bytes;
+	}
+
+	public synchronized int getEntryCount( )
+	{
+		return entries.size( );
+	}
+
+	public long getMaxBytes( )
+	{
+		return maxBytes;
+	}
+
+	private void remove( String url )
+	{
+		Entry removed = entries.remove( url );
+
+		if( removed != null )
+			bytes -= removed.weight;
+	}
+
+	/**
+	 * Internal method to find the time to live of the endpoint a URL belongs to
+	 * @param url
+	 * @return				Time to live in nanoseconds, 0 when not cached
+	 */
+	private long ttl( String url )
+	{
+		Long ttl = timeToLive.get( HttpsClient.endpoint( url ) );
+		return ttl == null ? 0 : ttl;
+	}
+
+	private static long weigh( String url, byte[] body )
+	{
+		return ENTRY_OVERHEAD + 2L * url.length( ) + body.length;
+	}
+
+	private static final class Entry {
+
+		final byte[] body;
+
+		final long expiresAt;
+
+		final long weight;
+
+		Entry( byte[] body, long expiresAt, long weight )
+		{
+			this.body      = body;
+			this.expiresAt = expiresAt;
+			this.weight    = weight;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package nomics.core;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Immutable market (currency pair) listed on an exchange as returned by the nomics markets API
+ * 
+ * {
+ *   "exchange":"bitfinex",
+ *   "market":"avtbtc",
+ *   "base":"AVT",
+ *   "quote":"BTC"
+ * }
+ * 
+ * @author danielanderson
+ *
+ */
+public final class Market {
+
+	private final String exchange;
+
+	private final String market;
+
+	private final String base;
+
+	private final String quote;
+
+	public Market( String exchange, String market, String base, String quote )
+	{
+		this.exchange = exchange;
+		this.market   = market;
+		this.base     = base;
+		this.quote    = quote;
+	}
+
+	/**
+	 * @return			The id for the exchange ie. "binance", "gdax" ...
+	 */
+	public String getExchange( )
+	{
+		return exchange;
+	}
+
+	/**
+	 * @return			The exchange specific market id ie. "avtbtc", "BTC-USD" ...
+	 */
+	public String getMarket( )
+	{
+		return market;
+	}
+
+	public String getBase( )
+	{
+		return base;
+	}
+
+	public String getQuote( )
+	{
+		return quote;
+	}
+
+	/**
+	 * Decode a market from the JSON form the API uses
+	 * @param object
+	 * @return
+	 * @throws JSONException	If a field is missing
+	 */
+	public static Market fromJSONObject( JSONObject object ) throws JSONException
+	{
+		return new Market( object.getString( "exchange" ), object.getString( "market" ), object.getString( "base" ), object.getString( "quote" ) );
+	}
+
+	/**
+	 * Returns this market in the same JSON form the API uses
+	 * @return
+	 * @throws JSONException
+	 */
+	public JSONObject toJSONObject( ) throws JSONException
+	{
+		JSONObject object = new JSONObject( );
+		object.put( "exchange", exchange );
+		object.put( "market", market );
+		object.put( "base", base );
+		object.put( "quote", quote );
+		return object;
+	}
+
+	@Override
+	public boolean equals( Object other )
+	{
+		if( this == other )
+			return true;
+
+		if( !( other instanceof Market ) )
+			return false;
+
+		Market that = (Market) other;
+		return exchange.equals( that.exchange ) && market.equals( that.market ) && base.equals( that.base ) && quote.equals( that.quote );
+	}
+
+	@Override
+	public int hashCode( )
+	{
+		return 31 * ( 31 * ( 31 * exchange.hashCode( ) + market.hashCode( ) ) + base.hashCode( ) ) + quote.hashCode( );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return exchange + ":" + market + " (" + base + "-" + quote + ")";
+	}
+}
@@ -0,0 +1,269 @@
+package nomics.core;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, indexed snapshot of the nomics markets catalog.  The catalog is decoded once
+ * and then indexed by exchange, by (exchange, base, quote), by base and by quote so every
+ * lookup is a single hash map hit.  Keys are case insensitive:
+ *
+ * MarketCatalog catalog = nomicsMarkets.getCatalog( key );
+ * Market market         = catalog.find( "gdax", "eth", "BTC" );
+ *
+ * @author danielanderson
+ *
+ */
+public final class MarketCatalog {
+
+	private final List< Market > markets;
+
+	private final Map< String, List< Market > > byExchange;
+
+	private final Map< String, Market > byPair;
+
+	private final Map< String, List< Market > > byBase;
+
+	private final Map< String, List< Market > > byQuote;
+
+	private MarketCatalog( List< Market > markets )
+	{
+		Map< String, List< Market > > byExchange = new LinkedHashMap< String, List< Market > >( );
+		Map< String, Market > byPair             = new HashMap< String, Market >( markets.size( ) * 2 );
+		Map< String, List< Market > > byBase     = new HashMap< String, List< Market > >( );
+		Map< String, List< Market > > byQuote    = new HashMap< String, List< Market > >( );
+
+		for( Market market : markets )
+		{
+			String exchange = normalize( market.getExchange( ) );
+
+			index( byExchange, exchange, market );
+			index( byBase, normalize( market.getBase( ) ), market );
+			index( byQuote, normalize( market.getQuote( ) ), market );
+
+			//Keep the first listing if an exchange reports the same pair twice
+			byPair.putIfAbsent( pairKey( exchange, normalize( market.getBase( ) ), normalize( market.getQuote( ) ) ), market );
+		}
+
+		this.markets    = Collections.unmodifiableList( new ArrayList< Market >( markets ) );
+		this.byExchange = freeze( byExchange );
+		this.byPair     = byPair;
+		this.byBase     = freeze( byBase );
+		this.byQuote    = freeze( byQuote );
+	}
+
+	/**
+	 * Build a catalog from decoded markets
+	 * @param markets		Markets as returned by NomicsMarkets.getMarkets( )
+	 * @return
+	 */
+	public static MarketCatalog of( List< Market > markets )
+	{
+		return new MarketCatalog( markets );
+	}
+
+	/**
+	 * Find the market listing a pair on an exchange
+	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
+	 * @param base			The base currency ie. "ETH"
+	 * @param quote			The quote currency ie. "BTC"
+	 * @return				The market, or null if the exchange does not list the pair
+	 */
+	public Market find( String exchange, String base, String quote )
+	{
+		return byPair.get( pairKey( normalize( exchange ), normalize( base ), normalize( quote ) ) );
+	}
+
+	/**
+	 * @param base			The base currency ie. "ETH"
+	 * @param quote			The quote currency ie. "BTC"
+	 * @return				The market listing the pair on each exchange that has it, in exchange order
+	 */
+	public List< Market > getMarketsForPair( String base, String quote )
+	{
+		String baseKey        = normalize( base );
+		String quoteKey       = normalize( quote );
+		List< Market > found  = new ArrayList< Market >( );
+
+		for( String exchange : byExchange.keySet( ) )
+		{
+			Market market = byPair.get( pairKey( exchange, baseKey, quoteKey ) );
+
+			if( market != null )
+				found.add( market );
+		}
+
+		return Collections.unmodifiableList( found );
+	}
+
+	/**
+	 * Typed intersection of exchanges: the markets of the pairs listed on every one of them
+	 * @param exchanges		The ids of the exchanges ie. [ "binance", "gdax" ]
+	 * @return				For each pair listed on all of the exchanges its market on each of them,
+	 * 						grouped by exchange in the order given
+	 */
+	public List< Market > getIntersection( Collection< String > exchanges )
+	{
+		List< Market > found = new ArrayList< Market >( );
+
+		for( List< Market > markets : getIntersectionByExchange( exchanges ) )
+		{
+			found.addAll( markets );
+		}
+
+		return Collections.unmodifiableList( found );
+	}
+
+	/**
+	 * Same as getIntersection( ) split per exchange
+	 * @param exchanges		The ids of the exchanges ie. [ "binance", "gdax" ]
+	 * @return				For each exchange, in the order given, its markets of the pairs listed on
+	 * 						all of the exchanges in the order the API lists them
+	 */
+	public List< List< Market > > getIntersectionByExchange( Collection< String > exchanges )
+	{
+		List< String > keys = new ArrayList< String >( exchanges.size( ) );
+
+		for( String exchange : exchanges )
+		{
+			keys.add( normalize( exchange ) );
+		}
+
+		List< List< Market > > found = new ArrayList< List< Market > >( keys.size( ) );
+
+		for( String exchange : keys )
+		{
+			List< Market > intersecting = new ArrayList< Market >( );
+
+			for( Market market : lookup( byExchange, exchange ) )
+			{
+				String base  = normalize( market.getBase( ) );
+				String quote = normalize( market.getQuote( ) );
+
+				//Only the first listing if an exchange reports the same pair twice
+				if( byPair.get( pairKey( exchange, base, quote ) ) == market && listedOnAll( keys, base, quote ) )
+					intersecting.add( market );
+			}
+
+			found.add( Collections.unmodifiableList( intersecting ) );
+		}
+
+		return Collections.unmodifiableList( found );
+	}
+
+	/**
+	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
+	 * @return				Markets listed on the exchange, empty if it is unknown
+	 */
+	public List< Market > getMarketsOnExchange( String exchange )
+	{
+		return lookup( byExchange, exchange );
+	}
+
+	/**
+	 * @param base			The base currency ie. "ETH"
+	 * @return				Markets on every exchange with this base currency
+	 */
+	public List< Market > getMarketsWithBase( String base )
+	{
+		return lookup( byBase, base );
+	}
+
+	/**
+	 * @param quote			The quote currency ie. "BTC"
+	 * @return				Markets on every exchange with this quote currency
+	 */
+	public List< Market > getMarketsWithQuote( String quote )
+	{
+		return lookup( byQuote, quote );
+	}
+
+	/**
+	 * @return				Every exchange in the catalog, in the order the API lists them
+	 */
+	public List< String > getExchanges( )
+	{
+		List< String > exchanges = new ArrayList< String >( byExchange.size( ) );
+
+		for( List< Market > markets : byExchange.values( ) )
+		{
+			exchanges.add( markets.get( 0 ).getExchange( ) );
+		}
+
+		return exchanges;
+	}
+
+	/**
+	 * @return				Normalized (lower case) exchange ids
+	 */
+	public Set< String > getExchangeKeys( )
+	{
+		return byExchange.keySet( );
+	}
+
+	public List< Market > getMarkets( )
+	{
+		return markets;
+	}
+
+	public int size( )
+	{
+		return markets.size( );
+	}
+
+	private boolean listedOnAll( List< String > exchanges, String base, String quote )
+	{
+		for( String exchange : exchanges )
+		{
+			if( !byPair.containsKey( pairKey( exchange, base, quote ) ) )
+				return false;
+		}
+
+		return true;
+	}
+
+	private static List< Market > lookup( Map< String, List< Market > > index, String key )
+	{
+		List< Market > markets = index.get( normalize( key ) );
+		return markets == null ? Collections.< Market >emptyList( ) : markets;
+	}
+
+	private static void index( Map< String, List< Market > > index, String key, Market market )
+	{
+		List< Market > markets = index.get( key );
+
+		if( markets == null )
+		{
+			markets = new ArrayList< Market >( );
+			index.put( key, markets );
+		}
+
+		markets.add( market );
+	}
+
+	private static Map< String, List< Market > > freeze( Map< String, List< Market > > index )
+	{
+		for( Map.Entry< String, List< Market > > entry : index.entrySet( ) )
+		{
+			entry.setValue( Collections.unmodifiableList( entry.getValue( ) ) );
+		}
+
+		return Collections.unmodifiableMap( index );
+	}
+
+	static String normalize( String value )
+	{
+		return value == null ? "" : value.toLowerCase( Locale.ROOT );
+	}
+
+	private static String pairKey( String exchange, String base, String quote )
+	{
+		return exchange + '\u0000' + base + '\u0000' + quote;
+	}
+}
@@ -1,10 +1,11 @@
 package nomics.core;
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 
 /**
@@ -30,43 +31,66 @@ import org.json.JSONException;
 public class NomicsAggregatedCandles {
 
 	/**
-	 * URL for grabbing all the aggregated candles for a specific currency
+	 * Path (relative to the client base URL) for grabbing all the aggregated candles for a specific currency
 	 */
-	private static final String URL = "https://api.nomics.com/v1/candles?key=%s&interval=%s&currency=%s";
+	private static final String URL = "/v1/candles?key=%s&interval=%s&currency=%s";
 	
 	/**
-	 * Allow the user to grab a candle set froma  specific timestamp
+	 * Shared transport used for every request
+	 */
+	private final HttpsClient httpsClient;
+	
+	/**
+	 * Create a wrapper using the shared default client
+	 */
+	public NomicsAggregatedCandles( )
+	{
+		this( HttpsClient.getDefault( ) );
+	}
+	
+	/**
+	 * Create a wrapper on top of the provided client ie. one pointed at a local stand-in server
+	 * @param httpsClient		The transport to send requests through
+	 */
+	public NomicsAggregatedCandles( HttpsClient httpsClient )
+	{
+		this.httpsClient = httpsClient;
+	}
+	
+	/**
+	 * Allow the user to grab a candle set froma  specific timestamp.  If no candle opened at
+	 * exactly that time the set starts from the next one that did
 	 * @param key
 	 * @param interval
 	 * @param symbol
-	 * @param timestamp
+	 * @param timestamp	ISO timestamp ie. "2018-03-19T10:00:00Z"
 	 * @return
 	 * @throws JSONException
 	 * @throws IOException
-	 * @throws ParseException
+	 * @throws ParseException	If the timestamp is not in the form above
 	 */
 	public String getCandlesFromTimestamp( String key, String interval, String symbol, String timestamp ) throws JSONException, IOException, ParseException
 	{
-		//2018-03-19T10:00:00Z
-		JSONArray candles 		= new JSONArray( getCandles( key, interval, symbol ) );
-		JSONArray returnCandles = new JSONArray( );
-		
-		Boolean foundStamp = false;
-		for( int i = 0; i < candles.length( ); i++ )
-		{
-			if( candles.getJSONObject( i ).getString( "timestamp" ).equalsIgnoreCase( timestamp ) )
-			{
-				foundStamp = true;
-			}
-			
-			if( foundStamp )
-			{
-				returnCandles.put( candles.getJSONObject( i ) );
-			}
-		}
-		
-		return returnCandles.toString( );
+		CandleSeries candles = getCandleSeries( key, interval, symbol );
+		return candles.since( CandleSeries.parseTimestampStrict( timestamp ) ).toJSON( );
+	}
+	
+	/**
+	 * Returns the candles that opened in [from, to) as a view over the decoded series
+	 * @param key				The private API key
+	 * @param interval			The interval for the candles ie. "1d", "1h"
+	 * @param symbol				The symbol of queried currency
+	 * @param from				Epoch milliseconds, inclusive
+	 * @param to					Epoch milliseconds, exclusive
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public CandleSeries getCandleSeries( String key, String interval, String symbol, long from, long to ) throws IOException, JSONException
+	{
+		return getCandleSeries( key, interval, symbol ).between( from, to );
 	}
+	
 	/**
 	 * Public method to grab all the aggregated candles for a given currency (symbol) from date == unixTimestamp
 	 * @param key				The private API key
@@ -77,9 +101,62 @@ public class NomicsAggregatedCandles {
 	 */
 	public String getCandles( String key, String interval, String symbol ) throws IOException
 	{
-		HttpsClient httpsClient = new HttpsClient( );
-		String formattedURL     = buildURL( key, interval, symbol );
-		return httpsClient.doGet( formattedURL );
+		//No filter applies to this endpoint, pass the body through rather than decode and re-encode it
+		return httpsClient.doGet( buildURL( key, interval, symbol ) );
+	}
+	
+	/**
+	 * Typed version of getCandles( ), the response is decoded once straight into a columnar series
+	 * @param key				The private API key
+	 * @param interval			The interval for the candles ie. "1d", "1h"
+	 * @param symbol				The symbol of queried currency
+	 * @return					The candles, oldest first
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public CandleSeries getCandleSeries( String key, String interval, String symbol ) throws IOException, JSONException
+	{
+		String formattedURL = buildURL( key, interval, symbol );
+		return httpsClient.doGet( formattedURL, body -> CandleSeries.read( new JsonReader( body ) ) );
+	}
+	
+	/**
+	 * Same as getCandleSeries( ) but closed candles are kept in a local store under
+	 * CandleStore.AGGREGATED.  Only the candles that opened after the newest stored one are
+	 * downloaded, the rest of the history is read from disk
+	 * @param key				The private API key
+	 * @param interval			The interval for the candles ie. "1d", "1h"
+	 * @param symbol				The symbol of queried currency
+	 * @param store				Store holding the closed history
+	 * @return					The full history, oldest first
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public CandleSeries getCandleSeries( String key, String interval, String symbol, CandleStore store ) throws IOException, JSONException
+	{
+		long last           = store.getLastTimestamp( CandleStore.AGGREGATED, symbol, interval );
+		String formattedURL = buildURL( key, interval, symbol );
+		
+		if( last >= 0 )
+		{
+			formattedURL += "&start=" + URLEncoder.encode( CandleSeries.formatTimestamp( last + Intervals.toMillis( interval ) ), "UTF-8" );
+		}
+		
+		CandleSeries update = httpsClient.doGet( formattedURL, body -> CandleSeries.read( new JsonReader( body ) ) );
+		return store.sync( CandleStore.AGGREGATED, symbol, interval, update, System.currentTimeMillis( ) );
+	}
+	
+	/**
+	 * Batch version of getCandleSeries( ), fetching the candles of many currencies concurrently
+	 * @param key				The private API key
+	 * @param interval			The interval for the candles ie. "1d", "1h"
+	 * @param symbols			The symbols of the queried currencies
+	 * @param batch				Executor and concurrency limit for the batch
+	 * @return					A future per symbol, in the order the symbols were given
+	 */
+	public Map< String, CompletableFuture< CandleSeries > > getCandleSeries( String key, String interval, Collection< String > symbols, BatchExecutor batch )
+	{
+		return batch.submitAll( symbols, symbol -> getCandleSeries( key, interval, symbol ) );
 	}
 	
 	/**
@@ -89,7 +166,7 @@ public class NomicsAggregatedCandles {
 	 */
 	private String buildURL( String key, String unixTimestamp, String symbol )
 	{
-		return String.format( URL, key, unixTimestamp, symbol );
+		return httpsClient.buildURL( String.format( URL, key, unixTimestamp, symbol ) );
 	}
 	
 	/**
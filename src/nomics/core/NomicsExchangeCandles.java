@@ -1,8 +1,18 @@
 package nomics.core;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
+import java.net.URLEncoder;
 import java.text.ParseException;
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -29,16 +39,50 @@ import org.json.JSONObject;
  */
 public class NomicsExchangeCandles {
 
-	public enum CANDLE_FILTER_MODE { NONE, REPLACE_ZEROS, OMIT_ZEROS };
+	/**
+	 * What to do with candles the API returns with a 0 close, applied while the response is decoded.
+	 * NONE keeps them, REPLACE_ZEROS copies the previous candle, OMIT_ZEROS drops them,
+	 * FILL_CLOSE carries the previous close forward as open/high/low/close with 0 volume and
+	 * FLAG_ZEROS keeps them as they are but flagged.  Filled and flagged candles report
+	 * CandleSeries.isFlagged( ), leading zero candles have nothing to fill from and are dropped
+	 */
+	public enum CANDLE_FILTER_MODE { NONE, REPLACE_ZEROS, OMIT_ZEROS, FILL_CLOSE, FLAG_ZEROS };
+	
+	/**
+	 * Intervals served by the API, coarsest first
+	 */
+	private static final String[] NATIVE_INTERVALS = { "1d", "1h", "30m", "5m", "1m" };
+	
+	/**
+	 * Path (relative to the client base URL) for grabbing all the aggregated candles for a specific currency
+	 */
+	private static final String URL = "/v1/exchange_candles?key=%s&interval=%s&exchange=%s&market=%s";
+	
+	/**
+	 * Shared transport used for every request
+	 */
+	private final HttpsClient httpsClient;
+	
+	/**
+	 * Create a wrapper using the shared default client
+	 */
+	public NomicsExchangeCandles( )
+	{
+		this( HttpsClient.getDefault( ) );
+	}
 	
 	/**
-	 * URL for grabbing all the aggregated candles for a specific currency
+	 * Create a wrapper on top of the provided client ie. one pointed at a local stand-in server
+	 * @param httpsClient		The transport to send requests through
 	 */
-	private static final String URL = "https://api.nomics.com/v1/exchange_candles?key=%s&interval=%s&exchange=%s&market=%s";
+	public NomicsExchangeCandles( HttpsClient httpsClient )
+	{
+		this.httpsClient = httpsClient;
+	}
 	
 	/**
 	 * Method to grab all the candles by exchange for provided currency and interval. Valid values: 1d, 1h, 30m, 5m, 1m.
-	 * This method can also accept 2h, 4h, 6h, 12h, but these are generated as a layer 2 function
+	 * This method can also accept any coarser interval ie. 2h, 4h, 6h, 12h, 15m, 3d, 1w, but these are generated as a layer 2 function
 	 * @param key			The API key
 	 * @param interval		The iterval for the kline as a string: Valid values: 1d, 1h, 30m, 5m, 1m
 	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
@@ -49,93 +93,160 @@ public class NomicsExchangeCandles {
 	 */
 	public String getExchangeCandles( String key, String interval, String exchange, String symbol, CANDLE_FILTER_MODE candleFilterMode ) throws IOException, JSONException
 	{
-		HttpsClient httpsClient = new HttpsClient( );
-		
-		
-		if( interval.equals( "2h" ) || interval.equals( "6h" ) || interval.equals( "12h" ) ) 
-		{
-			String formattedURL  = buildURL( key, "1h", exchange, symbol );
-			String candles   	 = httpsClient.doGet( formattedURL );
-			JSONArray candlesA	 = new JSONArray( replaceZeroCandles( candles ) );
-			return createNewCandleSet( candlesA, interval );
-		}
-		
-		String formattedURL = buildURL( key, interval, exchange, symbol );
-		String candles      =  httpsClient.doGet( formattedURL );
-		
-		if( candleFilterMode == CANDLE_FILTER_MODE.REPLACE_ZEROS ) {
-			return replaceZeroCandles( candles );
-		}
-		else if( candleFilterMode == CANDLE_FILTER_MODE.OMIT_ZEROS  ) {
-			return omitZeroCandles( candles );
-		}
+		return getExchangeCandleSeries( key, interval, exchange, symbol, candleFilterMode ).toJSON( );
+	}
+	
+	/**
+	 * Typed version of getExchangeCandles( ).  The response is decoded once, straight into a
+	 * columnar series, and any filtering happens on primitive arrays
+	 * @param key			The API key
+	 * @param interval		The iterval for the kline as a string: Valid values: 1d, 1h, 30m, 5m, 1m or any multiple of one of them
+	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
+	 * @param symbol			The symbol for the currency of iterest, ie: "ETH", "LTC", "BTC"
+	 * @return				The candles, oldest first
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public CandleSeries getExchangeCandleSeries( String key, String interval, String exchange, String symbol, CANDLE_FILTER_MODE candleFilterMode ) throws IOException, JSONException
+	{
+		return getExchangeCandleSeries( key, interval, exchange, symbol, candleFilterMode, -1 );
+	}
+	
+	/**
+	 * Same as getExchangeCandleSeries( ) but only asks the API for candles opened at or after
+	 * a point in time, so callers that already hold older history only download the tail
+	 * @param key			The API key
+	 * @param interval		The iterval for the kline as a string: Valid values: 1d, 1h, 30m, 5m, 1m or any multiple of one of them
+	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
+	 * @param symbol			The symbol for the currency of iterest, ie: "ETH", "LTC", "BTC"
+	 * @param start			Epoch milliseconds of the first candle wanted, or -1 for all history
+	 * @return				The candles, oldest first
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public CandleSeries getExchangeCandleSeries( String key, String interval, String exchange, String symbol, CANDLE_FILTER_MODE candleFilterMode, long start ) throws IOException, JSONException
+	{
+		String source = isNativeInterval( interval ) ? interval : sourceInterval( interval );
+		return resample( fetchCandles( buildURL( key, source, exchange, symbol, start ), candleFilterMode ), source, interval );
+	}
+	
+	/**
+	 * Same as getExchangeCandleSeries( ) but closed candles are kept in a local store.  Only
+	 * the candles that opened after the newest stored one are downloaded, the rest of the
+	 * history is read from disk
+	 * @param key			The API key
+	 * @param interval		The iterval for the kline as a string: Valid values: 1d, 1h, 30m, 5m, 1m or any multiple of one of them
+	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
+	 * @param symbol			The symbol for the currency of iterest, ie: "ETH", "LTC", "BTC"
+	 * @param store			Store holding the closed history
+	 * @return				The full history, oldest first
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public CandleSeries getExchangeCandleSeries( String key, String interval, String exchange, String symbol, CANDLE_FILTER_MODE candleFilterMode, CandleStore store ) throws IOException, JSONException
+	{
+		String source        = isNativeInterval( interval ) ? interval : sourceInterval( interval );
+		long last            = store.getLastTimestamp( exchange, symbol, source );
+		CandleSeries update  = fetchCandles( buildURL( key, source, exchange, symbol, last < 0 ? -1 : last + Intervals.toMillis( source ) ), CANDLE_FILTER_MODE.NONE );
+		CandleSeries candles = store.sync( exchange, symbol, source, update, System.currentTimeMillis( ) );
 		
-		return candles;
+		//The store keeps candles as the API returned them, filter on the way out
+		return resample( candles.filter( candleFilterMode ), source, interval );
 	}
 	
 	/**
-	 * Internal method to return all exchange candles, with all 0-volume
-	 * candles omitted 
+	 * Internal method that turns filtered candles fetched at the source interval into the ones asked for
+	 * @param candles		Candles at the source interval
+	 * @param source			The native interval the candles were fetched at
+	 * @param interval		The interval asked for
 	 * @return
-	 * @throws JSONException 
 	 */
-	private String omitZeroCandles( String candles ) throws JSONException {
-		
-		JSONArray candlesArray   	= new JSONArray( candles );
-		JSONArray returnArray    	= new JSONArray( );
+	private static CandleSeries resample( CandleSeries candles, String source, String interval )
+	{
+		if( source.equals( interval ) ) 
+			return candles;
 		
-		for( int i = 0; i < candlesArray.length( ); i++ ) {
-			
-			JSONObject object = candlesArray.getJSONObject( i );
-			Double price      = new Double( object.getString( "close") );
+		return CandleResampler.resample( candles, Intervals.toMillis( source ), Intervals.toMillis( interval ), false );
+	}
+	
+	/**
+	 * Batch version of getExchangeCandleSeries( ).  Every query is fetched concurrently, bounded
+	 * by the batch executor, and a failing query only fails its own future
+	 * @param key			The API key
+	 * @param queries		The (exchange, market, interval) combinations to fetch
+	 * @param batch			Executor and concurrency limit for the batch
+	 * @return				A future per query, in the order the queries were given
+	 */
+	public Map< CandleQuery, CompletableFuture< CandleSeries > > getExchangeCandleSeries( String key, Collection< CandleQuery > queries, BatchExecutor batch )
+	{
+		return batch.submitAll( queries, query -> getExchangeCandleSeries( key, query.getInterval( ), query.getExchange( ), query.getMarket( ), query.getCandleFilterMode( ) ) );
+	}
+	
+	/**
+	 * Fetch one pair on several exchanges concurrently and consolidate it into a single series,
+	 * see ConsolidatedCandles
+	 * @param key			The API key
+	 * @param interval		The iterval for the kline as a string: Valid values: 1d, 1h, 30m, 5m, 1m or any multiple of one of them
+	 * @param markets		The pair's market on each exchange to include ie. catalog.getMarketsForPair( "BTC", "USD" ),
+	 * 						at most one market per exchange
+	 * @param batch			Executor and concurrency limit for the downloads
+	 * @return				The consolidated candles, venues in the order the markets were given
+	 * @throws IOException	If any exchange failed to download
+	 * @throws JSONException
+	 * @throws IllegalArgumentException	If two markets are on the same exchange, venues are keyed by exchange
+	 */
+	public ConsolidatedCandles getConsolidatedCandles( String key, String interval, Collection< Market > markets, CANDLE_FILTER_MODE candleFilterMode, BatchExecutor batch ) throws IOException, JSONException
+	{
+		List< CandleQuery > queries = new ArrayList< CandleQuery >( markets.size( ) );
+		Set< String > exchanges     = new HashSet< String >( );
+
+		for( Market market : markets )
+		{
+			if( !exchanges.add( MarketCatalog.normalize( market.getExchange( ) ) ) )
+				throw new IllegalArgumentException( "More than one market on exchange " + market.getExchange( ) + ", consolidate one market per exchange" );
+
+			queries.add( new CandleQuery( market.getExchange( ), market.getMarket( ), interval, candleFilterMode ) );
+		}
 
-			if( price.equals( new Double( 0 ) ) ) {
-				continue;
+		Map< CandleQuery, CompletableFuture< CandleSeries > > results = getExchangeCandleSeries( key, queries, batch );
+		Map< String, CandleSeries > series                           = new LinkedHashMap< String, CandleSeries >( );
+
+		for( Map.Entry< CandleQuery, CompletableFuture< CandleSeries > > result : results.entrySet( ) )
+		{
+			try
+			{
+				series.put( result.getKey( ).getExchange( ), result.getValue( ).get( ) );
 			}
-			else{
-				returnArray.put( object );
+			catch( InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+				throw new IOException( "Interrupted while fetching candles", e );
+			}
+			catch( ExecutionException e )
+			{
+				Throwable cause = e.getCause( );
+
+				if( cause instanceof JSONException )
+					throw (JSONException) cause;
+
+				throw new IOException( "Could not fetch candles for " + result.getKey( ), cause );
 			}
-			
 		}
-		
-		return returnArray.toString( );
+
+		return ConsolidatedCandles.merge( series );
 	}
 	
 	/**
-	 * Internal method to replace all 0 candles with their previous price
-	 * @param candles
+	 * Internal method to download and decode a candle response, filtering zero candles as they are decoded
+	 * @param formattedURL
+	 * @param candleFilterMode
 	 * @return
+	 * @throws IOException
 	 * @throws JSONException
 	 */
-	private String replaceZeroCandles( String candles ) throws JSONException {
-		
-		JSONArray candlesArray   	= new JSONArray( candles );
-		JSONArray returnArray    	= new JSONArray( );
-		JSONObject lastNonZeroCandle = null;
-		
-		for( int i = 0; i < candlesArray.length( ); i++ ) {
-			
-			JSONObject object = candlesArray.getJSONObject( i );
-			Double price      = new Double( object.getString( "close") );
-
-			if( price.equals( new Double( 0 ) ) ) {
-				
-				if( lastNonZeroCandle == null ){
-					continue;
-				}
-				JSONObject newCandle = new JSONObject( lastNonZeroCandle.toString( ) );
-				newCandle.put( "timestamp", object.getString( "timestamp" ) );
-				returnArray.put( newCandle );
-			}
-			else{
-				returnArray.put( object );
-				lastNonZeroCandle = object;
-			}
-			
-		}
-		
-		return returnArray.toString( );
-		
+	private CandleSeries fetchCandles( String formattedURL, CANDLE_FILTER_MODE candleFilterMode ) throws IOException, JSONException
+	{
+		return httpsClient.doGet( formattedURL, body -> CandleSeries.read( new JsonReader( body ), candleFilterMode ) );
 	}
 	
 	/**
@@ -147,74 +258,54 @@ public class NomicsExchangeCandles {
 	 */
 	public String createNewCandleSet( JSONArray candles, String interval ) throws JSONException
 	{
-		JSONArray returnArray = new JSONArray( );
-		int hour = 2;
-		
-		switch( interval )
+		return createNewCandleSet( CandleSeries.parse( candles.toString( ) ), interval ).toJSON( );
+	}
+	
+	/**
+	 * Create a candle set not already provided by the API from hourly candles.  Candles are
+	 * grouped on UTC clock boundaries and buckets the hourly candles do not fully cover at the
+	 * start or end of the series are dropped
+	 * @param candles		Hourly candles
+	 * @param interval		The interval to build ie. 2h, 4h, 6h, 12h
+	 * @return
+	 */
+	public CandleSeries createNewCandleSet( CandleSeries candles, String interval )
+	{
+		return CandleResampler.resample( candles, Intervals.HOUR, Intervals.toMillis( interval ), false );
+	}
+	
+	/**
+	 * Returns true for the intervals the API serves directly
+	 * @param interval
+	 * @return
+	 */
+	public static boolean isNativeInterval( String interval )
+	{
+		for( String nativeInterval : NATIVE_INTERVALS )
 		{
-			case "2h":
-				hour = 2;
-				break;
-			case "6h":
-				hour = 6;
-				break;
-			case "12h":
-				hour = 12;
-				break;
+			if( nativeInterval.equals( interval ) )
+				return true;
 		}
 		
-		String timestamp = "";
-		BigDecimal open  = new BigDecimal( 0 );
-		BigDecimal close = new BigDecimal( 0 );
-		BigDecimal high  = new BigDecimal( 0 );
-		BigDecimal low	 = new BigDecimal( Double.MAX_VALUE );
-		BigDecimal volume = new BigDecimal( 0 );
-		
-		int c = 1;
+		return false;
+	}
+	
+	/**
+	 * Internal method picking the coarsest native interval a derived interval can be built from
+	 * @param interval
+	 * @return
+	 */
+	private static String sourceInterval( String interval )
+	{
+		long millis = Intervals.toMillis( interval );
 		
-		for( int i = 0; i < candles.length( ); i++ )
+		for( String nativeInterval : NATIVE_INTERVALS )
 		{
-			JSONObject kline = candles.getJSONObject( i ); 
-			
-			//Always grab the high and the low - we need to check these each time
-			BigDecimal klineHigh = new BigDecimal( kline.getDouble( "high" ) );
-			BigDecimal klineLow = new BigDecimal( kline.getDouble( "low" ) );
-			
-			high   = new BigDecimal( Math.max( klineHigh.doubleValue( ), high.doubleValue( ) ) );
-			low    = new BigDecimal( Math.min( klineLow.doubleValue( ), low.doubleValue( ) ) );
-			volume = volume.add( new BigDecimal( kline.getDouble("volume") ) );
-			
-			//This is the start of the candle
-			if( c == 1 )
-			{
-				open      = new BigDecimal( kline.getDouble( "open" ) );
-				timestamp = kline.getString( "timestamp" );
-			}
-			
-			//This is the end of the candle
-			if( c == hour )
-			{
-				close 			  = new BigDecimal( kline.getDouble( "close" ) );
-				String thisCandle = createKline( timestamp, open.setScale( 8, BigDecimal.ROUND_DOWN ), 
-												close.setScale( 8, BigDecimal.ROUND_DOWN ), 
-												high.setScale( 8, BigDecimal.ROUND_DOWN ), 
-												low.setScale( 8, BigDecimal.ROUND_DOWN ),
-												volume.setScale( 8, BigDecimal.ROUND_DOWN ) );
-				c = 0;
-				returnArray.put( new JSONObject( thisCandle ) );
-				timestamp = "";
-				open      = new BigDecimal( 0 );
-				close  	  = new BigDecimal( 0 );
-				high  	  = new BigDecimal( 0 );
-				low	 	  = new BigDecimal( Double.MAX_VALUE );
-				volume 	  = new BigDecimal( 0 );
-			}
-			
-			c++;
-			
+			if( millis % Intervals.toMillis( nativeInterval ) == 0 )
+				return nativeInterval;
 		}
 		
-		return returnArray.toString( );
+		throw new IllegalArgumentException( "Interval " + interval + " is not a multiple of any of " + String.join( ", ", NATIVE_INTERVALS ) );
 	}
 	
 	/**
@@ -252,14 +343,29 @@ public class NomicsExchangeCandles {
 	 */
 	public String getMostRecentCandle( String key, String interval, String exchange, String symbol ) throws JSONException, IOException
 	{
-		JSONArray allCandles = new JSONArray ( getExchangeCandles( key, interval, exchange, symbol, CANDLE_FILTER_MODE.NONE ) );
+		Candle candle = getLatestCandle( key, interval, exchange, symbol );
 		
-		if( allCandles.length( ) == 0 )
+		if( candle == null )
 			return "{}";
 		
-		JSONObject lastCandle = allCandles.getJSONObject( allCandles.length( ) - 1 );
+		return candle.toJSONObject( ).toString( ); 
+	}
+	
+	/**
+	 * Typed version of getMostRecentCandle( )
+	 * @param key			API key
+	 * @param interval		Kline interval: Valid values: 1d, 1h, 30m, 5m, 1m
+	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
+	 * @param symbol			The symbol for the currency of iterest, ie: "ETH", "LTC", "BTC"
+	 * @return				The most recent candle, or null if there are none
+	 * @throws JSONException
+	 * @throws IOException
+	 */
+	public Candle getLatestCandle( String key, String interval, String exchange, String symbol ) throws JSONException, IOException
+	{
+		CandleSeries lastCandle = fetchLastCandles( key, interval, exchange, symbol, 1, CANDLE_FILTER_MODE.NONE );
 		
-		return lastCandle.toString( ); 
+		return lastCandle.isEmpty( ) ? null : lastCandle.get( 0 );
 	}
 	
 	/**
@@ -275,28 +381,61 @@ public class NomicsExchangeCandles {
 	 */
 	public String getLastNCandles( String key, String interval, String exchange, String symbol, int numCandles, CANDLE_FILTER_MODE candleFilterMode ) throws JSONException, IOException
 	{
-		JSONArray allCandles   = new JSONArray ( getExchangeCandles( key, interval, exchange, symbol, candleFilterMode ) );
-		JSONArray lastNCandles = new JSONArray( );
+		CandleSeries lastCandles = getLastNCandleSeries( key, interval, exchange, symbol, numCandles, candleFilterMode );
 		
-		if( allCandles.length( ) == 0 )
+		if( lastCandles.isEmpty( ) )
 			return "{}";
 		
-		Stack< JSONObject > stack = new Stack< JSONObject >( );
+		return lastCandles.toJSON( ); 
+	}
+	
+	/**
+	 * Typed version of getLastNCandles( )
+	 * @param key			API key
+	 * @param interval		Kline interval: Valid values: 1d, 1h, 30m, 5m, 1m or any multiple of one of them
+	 * @param exchange		The id for the exchange ie. "binance", "gdax" ...
+	 * @param symbol			The symbol for the currency of iterest, ie: "ETH", "LTC", "BTC"
+	 * @param numCandles		Number of candles wanted
+	 * @return				The last numCandles candles, or all of them if there are fewer, oldest first
+	 * @throws JSONException
+	 * @throws IOException
+	 */
+	public CandleSeries getLastNCandleSeries( String key, String interval, String exchange, String symbol, int numCandles, CANDLE_FILTER_MODE candleFilterMode ) throws JSONException, IOException
+	{
+		return fetchLastCandles( key, interval, exchange, symbol, numCandles, candleFilterMode );
+	}
+	
+	/**
+	 * Internal method to download a candle response and decode only its last candles, see
+	 * CandleSeries.readLast( ).  Derived intervals decode enough source candles for one more
+	 * bucket than asked for, the leading bucket may be partial and is dropped, and fall back
+	 * to decoding the whole response when gaps leave too few buckets
+	 * @param key
+	 * @param interval
+	 * @param exchange
+	 * @param symbol
+	 * @param numCandles
+	 * @param candleFilterMode
+	 * @return				The last numCandles candles, oldest first
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private CandleSeries fetchLastCandles( String key, String interval, String exchange, String symbol, int numCandles, CANDLE_FILTER_MODE candleFilterMode ) throws IOException, JSONException
+	{
+		String source = isNativeInterval( interval ) ? interval : sourceInterval( interval );
+		byte[] body   = httpsClient.doGetBytes( buildURL( key, source, exchange, symbol ) );
 		
-		numCandles = Math.min( allCandles.length( ), numCandles );
+		if( source.equals( interval ) )
+			return CandleSeries.readLast( body, 0, body.length, numCandles, candleFilterMode );
 		
-		for( int i = allCandles.length( ) - 1; i >= allCandles.length( ) - numCandles; i-- )
-		{
-			stack.push( allCandles.getJSONObject( i ) );
-		}
+		long perBucket      = Intervals.toMillis( interval ) / Intervals.toMillis( source );
+		int sourceCandles   = (int) Math.min( Integer.MAX_VALUE, ( numCandles + 1L ) * perBucket );
+		CandleSeries recent = resample( CandleSeries.readLast( body, 0, body.length, sourceCandles, candleFilterMode ), source, interval );
 		
-		//Pop all objects off into json array
-		while( !stack.isEmpty( ) )
-		{
-			lastNCandles.put( stack.pop( ) );
-		}
+		if( recent.size( ) >= numCandles )
+			return recent.last( numCandles );
 		
-		return lastNCandles.toString( ); 
+		return resample( CandleSeries.read( new JsonReader( body, 0, body.length ), candleFilterMode ), source, interval ).last( numCandles );
 	}
 	
 	/**
@@ -311,51 +450,61 @@ public class NomicsExchangeCandles {
 	 */
 	public BigDecimal getAllTimeHigh( String key, String interval, String exchange, String symbol ) throws JSONException, IOException
 	{
-		JSONArray allCandles = new JSONArray ( getExchangeCandles( key, interval, exchange, symbol, CANDLE_FILTER_MODE.NONE ) );
-		BigDecimal maxPrice  = new BigDecimal( Double.MIN_VALUE );
+		return getAllTimeHigh( getExchangeCandleSeries( key, interval, exchange, symbol, CANDLE_FILTER_MODE.NONE ) );
+	}
+	
+	/**
+	 * Returns the highest high of an already fetched series
+	 * @param candles	The candles to scan
+	 * @return
+	 */
+	public static BigDecimal getAllTimeHigh( CandleSeries candles )
+	{
+		//Every candle counts, including zero and out of order ones, and an empty series is 0
+		double maxPrice = 0;
 		
-		for( int i = 0; i < allCandles.length( ); i++ )
-		{ 
-			JSONObject kline = allCandles.getJSONObject( i );
-			double high		 = Double.parseDouble( kline.getString( "high" ) );
-			System.out.println( high );
-			maxPrice 		 = new  BigDecimal ( Math.max( maxPrice.doubleValue( ), high ) );
+		for( int i = 0; i < candles.size( ); i++ )
+		{
+			maxPrice = Math.max( maxPrice, candles.getHigh( i ) );
 		}
 		
-		return maxPrice.setScale( 8, BigDecimal.ROUND_DOWN );
+		//Nearest 8 decimal value, new BigDecimal( double ) would carry the binary expansion along
+		return Decimal8.toBigDecimal( Decimal8.fromDouble( maxPrice ) );
 	}
+	
 	/**
-	 * Grab a candle from a given point in time
+	 * Grab the candles from a given point in time.  If no candle opened at exactly that time the
+	 * candles start from the next one that did
 	 * @param key
 	 * @param interval
 	 * @param symbol
-	 * @param timestamp
+	 * @param timestamp	ISO timestamp ie. "2018-03-19T10:00:00Z"
 	 * @return
 	 * @throws JSONException
 	 * @throws IOException
-	 * @throws ParseException
+	 * @throws ParseException	If the timestamp is not in the form above
 	 */
 	public String getCandlesFromTimestamp( String key, String interval, String exchange, String symbol, String timestamp ) throws JSONException, IOException, ParseException
 	{
-		//2018-03-19T10:00:00Z
-		JSONArray candles 		= new JSONArray( getExchangeCandles( key, interval, exchange, symbol, CANDLE_FILTER_MODE.NONE ) );
-		JSONArray returnCandles = new JSONArray( );
-		
-		Boolean foundStamp = false;
-		for( int i = 0; i < candles.length( ); i++ )
-		{
-			if( candles.getJSONObject( i ).getString( "timestamp" ).equalsIgnoreCase( timestamp ) )
-			{
-				foundStamp = true;
-			}
-			
-			if( foundStamp )
-			{
-				returnCandles.put( candles.getJSONObject( i ) );
-			}
-		}
-		
-		return returnCandles.toString( );
+		CandleSeries candles = getExchangeCandleSeries( key, interval, exchange, symbol, CANDLE_FILTER_MODE.NONE );
+		return candles.since( CandleSeries.parseTimestampStrict( timestamp ) ).toJSON( );
+	}
+	
+	/**
+	 * Returns the candles that opened in [from, to) as a view over the decoded series
+	 * @param key		The private key for the nomics API
+	 * @param interval	Kline interval ie. 1d, 1h, 30m, 5m, 1m
+	 * @param exchange	The id for the exchange ie. "binance", "gdax" ...
+	 * @param symbol		The market symbol ie. "BTC-USD"
+	 * @param from		Epoch milliseconds, inclusive
+	 * @param to			Epoch milliseconds, exclusive
+	 * @return
+	 * @throws JSONException
+	 * @throws IOException
+	 */
+	public CandleSeries getExchangeCandleSeries( String key, String interval, String exchange, String symbol, long from, long to ) throws JSONException, IOException
+	{
+		return getExchangeCandleSeries( key, interval, exchange, symbol, CANDLE_FILTER_MODE.NONE, from ).between( from, to );
 	}
 	
 	/**
@@ -368,7 +517,33 @@ public class NomicsExchangeCandles {
 	 */
 	private String buildURL( String key, String interval, String exchange, String symbol )
 	{
-		return String.format( URL, key, interval, exchange, symbol );
+		return httpsClient.buildURL( String.format( URL, key, interval, exchange, symbol ) );
+	}
+	
+	/**
+	 * Internal method for building the API call starting at a point in time
+	 * @param key
+	 * @param interval
+	 * @param exchange
+	 * @param symbol
+	 * @param start			Epoch milliseconds, or -1 for no start parameter
+	 * @return
+	 */
+	private String buildURL( String key, String interval, String exchange, String symbol, long start )
+	{
+		String formattedURL = buildURL( key, interval, exchange, symbol );
+		
+		if( start < 0 )
+			return formattedURL;
+		
+		try
+		{
+			return formattedURL + "&start=" + URLEncoder.encode( CandleSeries.formatTimestamp( start ), "UTF-8" );
+		}
+		catch( UnsupportedEncodingException e )
+		{
+			throw new IllegalStateException( e );
+		}
 	}
 	
 	/**
@@ -1,10 +1,15 @@
 package nomics.core;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -33,9 +38,42 @@ import org.json.JSONObject;
 public class NomicsMarkets {
 
 	/**
-	 * URL for grabbing all markets with associated exchanges
+	 * Path (relative to the client base URL) for grabbing all markets with associated exchanges
 	 */
-	private static final String URL = "https://api.nomics.com/v1/markets?key=%s";
+	private static final String URL = "/v1/markets?key=%s";
+	
+	/**
+	 * Field names of a market object, in the order the decoder switches on them
+	 */
+	private static final JsonReader.Names MARKET_FIELDS = JsonReader.Names.of( "exchange", "market", "base", "quote" );
+	
+	/**
+	 * Shared transport used for every request
+	 */
+	private final HttpsClient httpsClient;
+	
+	/**
+	 * Last catalog built from a cached body, reused for as long as the cache (or a 304) hands
+	 * back that body
+	 */
+	private volatile CachedCatalog cachedCatalog;
+	
+	/**
+	 * Create a wrapper using the shared default client
+	 */
+	public NomicsMarkets( )
+	{
+		this( HttpsClient.getDefault( ) );
+	}
+	
+	/**
+	 * Create a wrapper on top of the provided client ie. one pointed at a local stand-in server
+	 * @param httpsClient		The transport to send requests through
+	 */
+	public NomicsMarkets( HttpsClient httpsClient )
+	{
+		this.httpsClient = httpsClient;
+	}
 	
 	/**
 	 * Public access to all market pairs accross 30 different exchanges.  The nomics API will
@@ -54,11 +92,189 @@ public class NomicsMarkets {
 	 */
 	public String getAllMarkets( String key ) throws IOException
 	{
-		HttpsClient httpsClient = new HttpsClient( );
 		String formattedURL     = buildURL( key );
 		return httpsClient.doGet( formattedURL );
 	}
 	
+	/**
+	 * Typed access to all market pairs.  The response is decoded while it streams off of the
+	 * connection so the catalog never exists as one String or JSONArray
+	 * @param key			The private API key for the API
+	 * @return				All markets
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public List< Market > getMarkets( String key ) throws IOException, JSONException
+	{
+		if( isCached( buildURL( key ) ) )
+			return getCatalog( key ).getMarkets( );
+		
+		return getMarkets( key, null, Integer.MAX_VALUE );
+	}
+	
+	/**
+	 * Typed access to the markets matching a filter.  The filter is applied during the decode,
+	 * markets that do not match are dropped as soon as they are read
+	 * @param key			The private API key for the API
+	 * @param filter			Markets to keep, or null to keep all of them
+	 * @param limit			Stop reading once this many markets have matched
+	 * @return				The matching markets in API order
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public List< Market > getMarkets( String key, Predicate< Market > filter, int limit ) throws IOException, JSONException
+	{
+		return httpsClient.doGet( buildURL( key ), body -> readMarkets( new JsonReader( body ), filter, limit ) );
+	}
+	
+	/**
+	 * Typed access to the markets listed on one exchange
+	 * @param key			The private API key for the API
+	 * @param exchange		The exchange to filter off, matched ignoring case
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public List< Market > getMarketsOnExchange( String key, String exchange ) throws IOException, JSONException
+	{
+		if( isCached( buildURL( key ) ) )
+			return getCatalog( key ).getMarketsOnExchange( exchange );
+		
+		//Match exchanges the way the catalog does, so the result never depends on caching
+		String exchangeKey = MarketCatalog.normalize( exchange );
+		
+		return getMarkets( key, market -> MarketCatalog.normalize( market.getExchange( ) ).equals( exchangeKey ), Integer.MAX_VALUE );
+	}
+	
+	/**
+	 * Returns the markets catalog indexed for constant time lookups by exchange, pair, base
+	 * and quote.  When the client has a ResponseCache covering the markets endpoint the catalog
+	 * is only rebuilt when the cached body changes, otherwise it is downloaded on every call
+	 * @param key			The private API key for the API
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public MarketCatalog getCatalog( String key ) throws IOException, JSONException
+	{
+		String formattedURL = buildURL( key );
+		
+		if( !isCached( formattedURL ) )
+			return MarketCatalog.of( getMarkets( key ) );
+		
+		byte[] body          = httpsClient.doGetBytes( formattedURL );
+		CachedCatalog cached = cachedCatalog;
+		
+		if( cached != null && cached.body == body )
+			return cached.catalog;
+		
+		MarketCatalog catalog = MarketCatalog.of( readMarkets( new JsonReader( body, 0, body.length ), null, Integer.MAX_VALUE ) );
+		cachedCatalog         = new CachedCatalog( body, catalog );
+		return catalog;
+	}
+	
+	/**
+	 * Internal method to check whether the client caches or revalidates the markets endpoint,
+	 * in which case the same body comes back until the catalog changes
+	 * @param formattedURL
+	 * @return
+	 */
+	private boolean isCached( String formattedURL )
+	{
+		ResponseCache cache = httpsClient.getResponseCache( );
+		return ( cache != null && cache.isCacheable( formattedURL ) ) || httpsClient.isConditional( formattedURL );
+	}
+	
+	/**
+	 * Batch version of getMarketsOnExchange( ) for many exchanges.  The catalog is downloaded
+	 * once and split per exchange concurrently on the batch executor
+	 * @param key			The private API key for the API
+	 * @param exchanges		The exchanges to grab markets for
+	 * @param batch			Executor and concurrency limit for the batch
+	 * @return				A future per exchange, in the order the exchanges were given
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public Map< String, CompletableFuture< List< Market > > > getMarketsOnExchanges( String key, Collection< String > exchanges, BatchExecutor batch ) throws IOException, JSONException
+	{
+		MarketCatalog catalog = getCatalog( key );
+		return batch.submitAll( exchanges, catalog::getMarketsOnExchange );
+	}
+	
+	/**
+	 * Decode an array of market objects from a reader
+	 * @param reader			Reader positioned at the start of the array
+	 * @param filter			Markets to keep, or null to keep all of them
+	 * @param limit			Stop reading once this many markets have matched
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	static List< Market > readMarkets( JsonReader reader, Predicate< Market > filter, int limit ) throws IOException, JSONException
+	{
+		List< Market > markets = new ArrayList< Market >( );
+		
+		reader.beginArray( );
+		
+		while( reader.hasNext( ) && markets.size( ) < limit )
+		{
+			String exchange = null;
+			String market   = null;
+			String base     = null;
+			String quote    = null;
+			
+			reader.beginObject( );
+			
+			while( reader.hasNext( ) )
+			{
+				switch( reader.nextName( MARKET_FIELDS ) )
+				{
+					case 0:
+						exchange = reader.nextPooledString( );
+						break;
+					case 1:
+						market = reader.nextString( );
+						break;
+					case 2:
+						base = reader.nextPooledString( );
+						break;
+					case 3:
+						quote = reader.nextPooledString( );
+						break;
+					default:
+						reader.skipValue( );
+				}
+			}
+			
+			reader.endObject( );
+			
+			Market decoded = new Market( required( exchange, "exchange" ), required( market, "market" ), required( base, "base" ), required( quote, "quote" ) );
+			
+			if( filter == null || filter.test( decoded ) )
+			{
+				markets.add( decoded );
+			}
+		}
+		
+		return markets;
+	}
+	
+	/**
+	 * Internal method failing on a market field the API left out, the same way
+	 * Market.fromJSONObject( ) does
+	 * @param value
+	 * @param name
+	 * @return
+	 * @throws JSONException
+	 */
+	private static String required( String value, String name ) throws JSONException
+	{
+		if( value == null )
+			throw new JSONException( "Market is missing \"" + name + "\"" );
+		
+		return value;
+	}
+	
 	/**
 	 * Layer 2 filter for grabbing markets at the exchange level - returns list of strings where all markets are in the form
 	 * BASE-QUOTE
@@ -71,13 +287,19 @@ public class NomicsMarkets {
 	 */	
 	public JSONArray getMarketsByExchange( String key, String exchange ) throws JSONException, IOException
 	{
-		JSONArray markets = new JSONArray ( getAllMarkets( key ) );
-		markets           = new JSONArray( filterByExchange( markets, exchange ) );
+		JSONArray markets = new JSONArray( );
+		
+		for( Market market : getMarketsOnExchange( key, exchange ) )
+		{
+			markets.put( market.toJSONObject( ) );
+		}
+		
 		return markets;
 	}
 	
 	/**
-	 * Layer 2 filter for grabbing markets when the format of the pair is unknown
+	 * Layer 2 filter for grabbing markets when the format of the pair is unknown.  The exchange
+	 * and currencies are matched ignoring case
 	 * 
 	 * @param key				The API key
 	 * @param exchange			The exchange to filter off
@@ -89,19 +311,21 @@ public class NomicsMarkets {
 	 */	
 	public String getMarketFromPair( String key, String exchange, String base, String counter ) throws JSONException, IOException
 	{
-		JSONArray markets = getMarketsByExchange( key, exchange );
-		
-		for( int i = 0; i < markets.length( ); i++ )
+		if( isCached( buildURL( key ) ) )
 		{
-			JSONObject market = markets.getJSONObject( i );
-			
-			if( base.equalsIgnoreCase( market.getString( "base" ) ) && counter.equalsIgnoreCase( market.getString( "quote" ) ) )
-			{
-				return market.getString( "market" );
-			}
+			Market market = getCatalog( key ).find( exchange, base, counter );
+			return market == null ? "" : market.getMarket( );
 		}
 		
-		return "";
+		//Match the way MarketCatalog.find( ) does, so the result never depends on caching
+		String exchangeKey     = MarketCatalog.normalize( exchange );
+		String baseKey         = MarketCatalog.normalize( base );
+		String counterKey      = MarketCatalog.normalize( counter );
+		List< Market > markets = getMarkets( key, market -> MarketCatalog.normalize( market.getExchange( ) ).equals( exchangeKey )
+														&& MarketCatalog.normalize( market.getBase( ) ).equals( baseKey )
+														&& MarketCatalog.normalize( market.getQuote( ) ).equals( counterKey ), 1 );
+		
+		return markets.isEmpty( ) ? "" : markets.get( 0 ).getMarket( );
 	}
 	
 	/**
@@ -127,6 +351,27 @@ public class NomicsMarkets {
 		return marketsByExchange.toString( );
 	}
 	
+	/**
+	 * Typed version of filterByExchange( )
+	 * @param markets	Decoded markets ie. from getMarkets( )
+	 * @param exchange	The exchange to filter off, matched ignoring case
+	 * @return			The markets listed on the exchange, in the order given
+	 */
+	public static List< Market > filterByExchange( List< Market > markets, String exchange )
+	{
+		List< Market > marketsByExchange = new ArrayList< Market >( );
+		String exchangeKey               = MarketCatalog.normalize( exchange );
+		
+		for( Market market : markets )
+		{
+			if( MarketCatalog.normalize( market.getExchange( ) ).equals( exchangeKey ) )
+			{
+				marketsByExchange.add( market );
+			}
+		}
+		
+		return marketsByExchange;
+	}
 
 	/**
 	 * Layer two function for grabbing only markets from X exchanges that intersect
@@ -136,8 +381,22 @@ public class NomicsMarkets {
 	 */
 	public List< String > getMarketIntersections( String[] exchanges, String apiKey ) throws JSONException, IOException
 	{
-		JSONArray markets = new JSONArray( getAllMarkets( apiKey ) );
-		return filterByIntersection( exchanges, markets );
+		return toJSON( getIntersectingMarkets( apiKey, exchanges ) );
+	}
+	
+	/**
+	 * Typed version of getMarketIntersections( ), the markets are decoded once straight off of
+	 * the connection (or taken from the cached catalog) and never turned into Strings
+	 * @param key			The private API key for the API
+	 * @param exchanges		The exchanges to intersect
+	 * @return				For each exchange, in the order given, its markets of the pairs listed on
+	 * 						all of the exchanges
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public List< List< Market > > getIntersectingMarkets( String key, String[] exchanges ) throws IOException, JSONException
+	{
+		return getCatalog( key ).getIntersectionByExchange( Arrays.asList( exchanges ) );
 	}
 	
 	/**
@@ -147,56 +406,53 @@ public class NomicsMarkets {
 	 */
 	public List< String > filterByIntersection( String[] exchanges, JSONArray markets ) throws JSONException 
 	{
-		int totalExchanges 			 = exchanges.length;
-		Map< String, Integer > counts = new HashMap< String, Integer >( );
+		List< Market > decoded = new ArrayList< Market >( markets.length( ) );
 		
-		//Iterate over provided exchanges
-		for( int i = 0; i < totalExchanges; i++ )
+		//Decode the array once, the intersection itself runs on typed markets
+		for( int i = 0; i < markets.length( ); i++ )
 		{
-			JSONArray exchangeMarkets = new JSONArray( filterByExchange( markets, exchanges[ i ] ) );
-			
-			//Increment pair if it exists
-			for( int j = 0; j < exchangeMarkets.length( ); j++ )
-			{
-				String base  = exchangeMarkets.getJSONObject( j ).getString( "base" );
-				String quote = exchangeMarkets.getJSONObject( j ).getString( "quote" );
-				
-				if( !counts.containsKey( base + quote ) )
-				{
-					counts.put( base + quote , 1 );
-				}
-				else
-				{
-					counts.put( base + quote,  counts.get( base + quote ) + 1 );
-				}
-			}
+			decoded.add( Market.fromJSONObject( markets.getJSONObject( i ) ) );
 		}
 		
-		List< String > marketsByExchange = new ArrayList< String >( );
+		return toJSON( filterByIntersection( exchanges, decoded ) );
+	}
+	
+	/**
+	 * Typed version of filterByIntersection( ).  The markets are indexed once, then every
+	 * market is checked against the other exchanges with a hash lookup per exchange
+	 * @param exchanges		The exchanges to intersect
+	 * @param markets		Decoded markets ie. from getMarkets( )
+	 * @return				For each exchange, in the order given, its markets of the pairs listed on
+	 * 						all of the exchanges
+	 */
+	public static List< List< Market > > filterByIntersection( String[] exchanges, List< Market > markets )
+	{
+		return MarketCatalog.of( markets ).getIntersectionByExchange( Arrays.asList( exchanges ) );
+	}
+	
+	/**
+	 * Internal method encoding per exchange market lists the way the String methods return them
+	 * @param marketsByExchange
+	 * @return
+	 * @throws JSONException
+	 */
+	private static List< String > toJSON( List< List< Market > > marketsByExchange ) throws JSONException
+	{
+		List< String > encoded = new ArrayList< String >( marketsByExchange.size( ) );
 		
-		//Iterate over provided exchanges again to pull all intersected exchanges
-		for( int i = 0; i < totalExchanges; i++ )
+		for( List< Market > markets : marketsByExchange )
 		{
-			JSONArray exchangeMarkets = new JSONArray( filterByExchange( markets, exchanges[ i ] ) );
-			JSONArray filteredJSON    = new JSONArray( );
-			//Increment pair if it exists
-			for( int j = 0; j < exchangeMarkets.length( ); j++ )
+			JSONArray exchangeMarkets = new JSONArray( );
+			
+			for( Market market : markets )
 			{
-				String base  = exchangeMarkets.getJSONObject( j ).getString( "base" );
-				String quote = exchangeMarkets.getJSONObject( j ).getString( "quote" );
-				
-				if( counts.get( base + quote ) == totalExchanges )
-				{
-					//JSONObject newJson = exchange.put( )
-					filteredJSON.put( exchangeMarkets.getJSONObject( j ) );
-				}
+				exchangeMarkets.put( market.toJSONObject( ) );
 			}
 			
-			marketsByExchange.add( filteredJSON.toString( ) );
+			encoded.add( exchangeMarkets.toString( ) );
 		}
 		
-		return marketsByExchange;
-		
+		return encoded;
 	}
 	
 	/**
@@ -208,22 +464,48 @@ public class NomicsMarkets {
 	 */
 	public List<String> getSupportedExchanges( String key ) throws JSONException, IOException
 	{
-		JSONArray response 		 		 = new JSONArray( getAllMarkets( key ) );
-		HashSet< String > exchanges		 = new HashSet< String >( );
-		List< String > supportedExchanges = new ArrayList< String >( );
+		if( isCached( buildURL( key ) ) )
+			return getCatalog( key ).getExchanges( );
 		
-		for( int i = 0; i < response.length( ); i++ )
+		return httpsClient.doGet( buildURL( key ), NomicsMarkets::readExchanges );
+	}
+	
+	/**
+	 * Decode the distinct exchange ids, in order of appearance, from a markets response
+	 * @param body
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private static List< String > readExchanges( InputStream body ) throws IOException, JSONException
+	{
+		JsonReader reader       = new JsonReader( body );
+		Set< String > exchanges = new LinkedHashSet< String >( );
+		
+		reader.beginArray( );
+		
+		while( reader.hasNext( ) )
 		{
-			String exchange = response.getJSONObject( i ).getString( "exchange" );
+			reader.beginObject( );
 			
-			if(  !exchanges.contains( exchange ) )
+			while( reader.hasNext( ) )
 			{
-				exchanges.add( exchange );
-				supportedExchanges.add( exchange );
+				if( reader.nextName( MARKET_FIELDS ) == 0 )
+				{
+					exchanges.add( reader.nextPooledString( ) );
+				}
+				else
+				{
+					reader.skipValue( );
+				}
 			}
+			
+			reader.endObject( );
 		}
 		
-		return supportedExchanges;	
+		reader.endArray( );
+		
+		return new ArrayList< String >( exchanges );
 	}
 	
 	/**
@@ -233,7 +515,7 @@ public class NomicsMarkets {
 	 */
 	private String buildURL( String key )
 	{
-		return String.format( URL, key );
+		return httpsClient.buildURL( String.format( URL, key ) );
 	}
 	
 	/**
@@ -261,4 +543,20 @@ public class NomicsMarkets {
 		}
 	}
 	
+	/**
+	 * A catalog together with the cached body it was built from
+	 */
+	private static final class CachedCatalog {
+		
+		final byte[] body;
+		
+		final MarketCatalog catalog;
+		
+		CachedCatalog( byte[] body, MarketCatalog catalog )
+		{
+			this.body    = body;
+			this.catalog = catalog;
+		}
+	}
+	
 }
@@ -1,6 +1,13 @@
 package nomics.core;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -29,15 +36,48 @@ import org.json.JSONObject;
 public class NomicsPrices {
 
 	/**
-	 * URL for grabbing the the prices of all currencies - USD
+	 * Path (relative to the client base URL) for grabbing the the prices of all currencies - USD
 	 */
-	private static final String URL = "https://api.nomics.com/v1/prices?key=%s";
+	private static final String URL = "/v1/prices?key=%s";
+	
+	/**
+	 * Shared transport used for every request
+	 */
+	private final HttpsClient httpsClient;
+	
+	/**
+	 * Create a wrapper using the shared default client
+	 */
+	public NomicsPrices( )
+	{
+		this( HttpsClient.getDefault( ) );
+	}
+	
+	/**
+	 * Create a wrapper on top of the provided client ie. one pointed at a local stand-in server
+	 * @param httpsClient		The transport to send requests through
+	 */
+	public NomicsPrices( HttpsClient httpsClient )
+	{
+		this.httpsClient = httpsClient;
+	}
+	
+	/**
+	 * Last snapshot decoded from a cached body, reused for as long as the cache (or a 304)
+	 * hands back that body
+	 */
+	private volatile CachedSnapshot cachedSnapshot;
 	
 	/**
 	 * Set precision for BigDecimal when provided quote currency
 	 */
 	private static final int PRECISION = 8;
 	
+	/**
+	 * Field names of a price object, in the order the decoder switches on them
+	 */
+	private static final JsonReader.Names PRICE_FIELDS = JsonReader.Names.of( "currency", "price" );
+	
 	/**
 	 * Public method for grabbing all prices at <em>this</em> point in time
 	 * @param key				Priate key for the API
@@ -46,11 +86,172 @@ public class NomicsPrices {
 	 */
 	public String getAllPrices( String key ) throws IOException
 	{
-		HttpsClient httpsClient = new HttpsClient( );
 		String formattedURL     = buildURL( key );
 		return httpsClient.doGet( formattedURL );
 	}
 	
+	/**
+	 * Typed access to all prices in USD, decoded while the response streams off of the connection
+	 * @param key				Private key for the API
+	 * @return					All currency/price pairs
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public List< Price > getPrices( String key ) throws IOException, JSONException
+	{
+		return httpsClient.doGet( buildURL( key ), body -> readPrices( new JsonReader( body ), null ) );
+	}
+	
+	/**
+	 * Download every price once into an indexed snapshot that serves cross rates in any quote
+	 * currency without fetching again.  When the client caches or conditionally GETs the
+	 * prices endpoint an unchanged body returns the previous snapshot without decoding it again
+	 * @param key				Private key for the API
+	 * @return					The prices, quoted in USD
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public PriceSnapshot getPriceSnapshot( String key ) throws IOException, JSONException
+	{
+		String formattedURL = buildURL( key );
+		ResponseCache cache = httpsClient.getResponseCache( );
+		
+		if( !httpsClient.isConditional( formattedURL ) && ( cache == null || !cache.isCacheable( formattedURL ) ) )
+			return httpsClient.doGet( formattedURL, body -> readSnapshot( new JsonReader( body ) ) );
+		
+		byte[] body           = httpsClient.doGetBytes( formattedURL );
+		CachedSnapshot cached = cachedSnapshot;
+		
+		if( cached != null && cached.body == body )
+			return cached.snapshot;
+		
+		PriceSnapshot snapshot = readSnapshot( new JsonReader( body, 0, body.length ) );
+		cachedSnapshot         = new CachedSnapshot( body, snapshot );
+		return snapshot;
+	}
+	
+	/**
+	 * Grab the USD price of a single currency.  Decoding stops as soon as the currency is found
+	 * @param key				Private key for the API
+	 * @param symbol				The symbol of the currency to grab the price of
+	 * @return					The price in USD, or null if the currency is not listed
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public BigDecimal getPrice( String key, String symbol ) throws IOException, JSONException
+	{
+		List< Price > prices = httpsClient.doGet( buildURL( key ), body -> readPrices( new JsonReader( body ), symbol ) );
+		return prices.isEmpty( ) ? null : prices.get( 0 ).getPrice( ).setScale( PRECISION, BigDecimal.ROUND_DOWN );
+	}
+	
+	/**
+	 * Decode an array of price objects from a reader
+	 * @param reader				Reader positioned at the start of the array
+	 * @param symbol				Only decode this currency and stop once it is found, or null for all prices
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	static List< Price > readPrices( JsonReader reader, String symbol ) throws IOException, JSONException
+	{
+		List< Price > prices = new ArrayList< Price >( );
+		
+		reader.beginArray( );
+		
+		while( reader.hasNext( ) )
+		{
+			String currency = null;
+			String price    = null;
+			
+			reader.beginObject( );
+			
+			while( reader.hasNext( ) )
+			{
+				switch( reader.nextName( PRICE_FIELDS ) )
+				{
+					case 0:
+						currency = reader.nextPooledString( );
+						break;
+					case 1:
+						price = reader.nextString( );
+						break;
+					default:
+						reader.skipValue( );
+				}
+			}
+			
+			reader.endObject( );
+			
+			if( symbol == null )
+			{
+				prices.add( new Price( currency, new BigDecimal( price ) ) );
+			}
+			else if( symbol.equals( currency ) )
+			{
+				prices.add( new Price( currency, new BigDecimal( price ) ) );
+				break;
+			}
+		}
+		
+		return prices;
+	}
+	
+	/**
+	 * Decode an array of price objects straight into snapshot columns, prices are parsed into
+	 * Decimal8 without going through a String or BigDecimal
+	 * @param reader				Reader positioned at the start of the array
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	static PriceSnapshot readSnapshot( JsonReader reader ) throws IOException, JSONException
+	{
+		String[] symbols = new String[ 256 ];
+		long[] usd       = new long[ 256 ];
+		int size         = 0;
+		
+		reader.beginArray( );
+		
+		while( reader.hasNext( ) )
+		{
+			String currency = null;
+			long price      = 0;
+			
+			reader.beginObject( );
+			
+			while( reader.hasNext( ) )
+			{
+				switch( reader.nextName( PRICE_FIELDS ) )
+				{
+					case 0:
+						currency = reader.nextPooledString( );
+						break;
+					case 1:
+						price = reader.nextDecimal8( );
+						break;
+					default:
+						reader.skipValue( );
+				}
+			}
+			
+			reader.endObject( );
+			
+			if( size == symbols.length )
+			{
+				symbols = Arrays.copyOf( symbols, size * 2 );
+				usd     = Arrays.copyOf( usd, size * 2 );
+			}
+			
+			symbols[ size ] = currency;
+			usd[ size ]     = price;
+			size++;
+		}
+		
+		reader.endArray( );
+		
+		return PriceSnapshot.of( Arrays.copyOf( symbols, size ), Arrays.copyOf( usd, size ), System.currentTimeMillis( ) );
+	}
+	
 	/**
 	 * Filtered layer on top of getAllPrices to grab prices based 
 	 * on a specific quote currency as the desired base ie. when quoteCurrency
@@ -60,21 +261,52 @@ public class NomicsPrices {
 	 * @return
 	 * @throws JSONException 
 	 * @throws IOException 
+	 * @throws IllegalArgumentException	If the quote currency is not listed
 	 */
 	public String getAllPrices( String key, String quoteCurrency ) throws JSONException, IOException
 	{
+		JSONArray responseUsingQuoteCurrency = new JSONArray( );
 		
-		//Grab all USD pairs
-		JSONArray response = new JSONArray( getAllPrices( key ) );
-		
-		//Call method to get USD price of quotted currency
-		BigDecimal quotePrice  = findPriceOfCurrency( response, quoteCurrency );
-		
-		//Convert all json pairs to new quote
-		String responseUsingQuoteCurrency = convertWithNewBase( response, quotePrice );
+		for( Price price : getPrices( key, quoteCurrency ) )
+		{
+			responseUsingQuoteCurrency.put( price.toJSONObject( ) );
+		}
 		
 		//Return json array as string
-		return responseUsingQuoteCurrency;
+		return responseUsingQuoteCurrency.toString( );
+	}
+	
+	/**
+	 * Typed version of getAllPrices( key, quoteCurrency )
+	 * @param key				Private API key
+	 * @param quoteCurrency		Quote currency to return against
+	 * @return					The prices quoted in the currency, rounded down to 8 decimals
+	 * @throws IOException
+	 * @throws JSONException
+	 * @throws IllegalArgumentException	If the quote currency is not listed
+	 */
+	public List< Price > getPrices( String key, String quoteCurrency ) throws IOException, JSONException
+	{
+		//Re-quote the snapshot, an unlisted quote currency throws an IllegalArgumentException naming it
+		return getPriceSnapshot( key ).rebase( quoteCurrency ).toPrices( PRECISION );
+	}
+	
+	/**
+	 * Batch version of getAllPrices( key, quoteCurrency ) for many quote currencies.  Prices are
+	 * downloaded once and each conversion runs concurrently on the batch executor; a quote
+	 * currency that is not listed only fails its own future
+	 * @param key				Private API key
+	 * @param quoteCurrencies	Quote currencies to return prices against
+	 * @param batch				Executor and concurrency limit for the batch
+	 * @return					A future per quote currency, in the order they were given
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	public Map< String, CompletableFuture< List< Price > > > getPrices( String key, Collection< String > quoteCurrencies, BatchExecutor batch ) throws IOException, JSONException
+	{
+		PriceSnapshot snapshot = getPriceSnapshot( key );
+		
+		return batch.submitAll( quoteCurrencies, quoteCurrency -> snapshot.rebase( quoteCurrency ).toPrices( PRECISION ) );
 	}
 	
 	/**
@@ -93,40 +325,55 @@ public class NomicsPrices {
 			
 			if( pair.getString( "currency").equals( symbol ) )
 			{
-				return new BigDecimal( pair.getString( "price" ) ).setScale( PRECISION, BigDecimal.ROUND_DOWN );
+				return Decimal8.toBigDecimal( Decimal8.parse( pair.getString( "price" ) ) );
+			}
+		}
+		
+		return null;
+	}
+	/**
+	 * Grab the price in USD of a specific symbol from a list of decoded prices
+	 * @param prices				Prices returned from getPrices( )
+	 * @param symbol				The symbol of the currency to grab the price of
+	 * @return					A BigDecimal with the currency's value in USD
+	 */
+	public BigDecimal findPriceOfCurrency( List< Price > prices, String symbol )
+	{
+		for( Price price : prices )
+		{
+			if( price.getCurrency( ).equals( symbol ) )
+			{
+				return price.getPrice( ).setScale( PRECISION, BigDecimal.ROUND_DOWN );
 			}
 		}
 		
 		return null;
 	}
+	
 	/**
-	 * Internal method that converts all prices to be quoted in 
-	 * @param prices						JSONArray of original prices	
+	 * Converts all prices to be quoted in another currency.  Prices and the quote value are
+	 * rounded down to 8 decimals and divided as Decimal8, rounding the quotient down
+	 * @param prices						Original prices in USD
 	 * @param quoteCurrencyValueInUSD	The USD value of the new quote currency as a BigDecimal
-	 * @return							String representation of new JSON array
-	 * @throws JSONException 
+	 * @return							The prices measured in the new quote currency
+	 * @throws ArithmeticException		If the quote value rounds to 0
 	 */
-	private String convertWithNewBase( JSONArray prices, BigDecimal quoteCurrencyValueInUSD ) throws JSONException
+	public static List< Price > convertWithNewBase( List< Price > prices, BigDecimal quoteCurrencyValueInUSD )
 	{
-		JSONArray quotedPrices = new JSONArray( );
+		List< Price > quotedPrices = new ArrayList< Price >( prices.size( ) );
+		long quote                 = Decimal8.fromBigDecimal( quoteCurrencyValueInUSD, RoundingMode.DOWN );
 		
-		for( int i = 0; i < prices.length( ); i++ )
+		for( Price price : prices )
 		{
 			//Grab price in USD
-			BigDecimal price = new BigDecimal( prices.getJSONObject( i ).getString( "price" ) )
-								  				.setScale( PRECISION, BigDecimal.ROUND_DOWN );
-			
-			BigDecimal quotedPrice = price.divide( quoteCurrencyValueInUSD, BigDecimal.ROUND_DOWN ).setScale( PRECISION, BigDecimal.ROUND_DOWN );
+			long usd         = Decimal8.fromBigDecimal( price.getPrice( ), RoundingMode.DOWN );
+			long quotedPrice = Decimal8.divide( usd, quote, RoundingMode.DOWN );
 			
 			//Convert price to new quote price
-			JSONObject currencyPricePair = new JSONObject( );
-			currencyPricePair.put( "currency", prices.getJSONObject( i ).getString( "currency" ) );
-			currencyPricePair.put( "price", quotedPrice.toString( ) );
-			
-			quotedPrices.put( currencyPricePair );
+			quotedPrices.add( new Price( price.getCurrency( ), Decimal8.toBigDecimal( quotedPrice ) ) );
 		}
 		
-		return quotedPrices.toString( );
+		return quotedPrices;
 		
 	}
 	
@@ -137,7 +384,7 @@ public class NomicsPrices {
 	 */
 	private String buildURL( String key )
 	{
-		return String.format( URL, key );
+		return httpsClient.buildURL( String.format( URL, key ) );
 	}
 	
 	/**
@@ -158,4 +405,20 @@ public class NomicsPrices {
 			System.out.println( e.getStackTrace( ) );
 		}
 	}
+	
+	/**
+	 * A snapshot together with the cached body it was decoded from
+	 */
+	private static final class CachedSnapshot {
+		
+		final byte[] body;
+		
+		final PriceSnapshot snapshot;
+		
+		CachedSnapshot( byte[] body, PriceSnapshot snapshot )
+		{
+			this.body     = body;
+			this.snapshot = snapshot;
+		}
+	}
 }
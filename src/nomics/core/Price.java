@@ -0,0 +1,78 @@
+package nomics.core;
+import java.math.BigDecimal;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Immutable currency/price pair as returned by the nomics prices API, where
+ * the price is quoted in USD unless it has been converted to another quote currency
+ * 
+ * {
+ *   "currency":"BTC",
+ *   "price": "8909.7211"
+ * }
+ * 
+ * @author danielanderson
+ *
+ */
+public final class Price {
+
+	private final String currency;
+
+	private final BigDecimal price;
+
+	public Price( String currency, BigDecimal price )
+	{
+		this.currency = currency;
+		this.price    = price;
+	}
+
+	public String getCurrency( )
+	{
+		return currency;
+	}
+
+	public BigDecimal getPrice( )
+	{
+		return price;
+	}
+
+	/**
+	 * Returns this price in the same JSON form the API uses
+	 * @return
+	 * @throws JSONException
+	 */
+	public JSONObject toJSONObject( ) throws JSONException
+	{
+		JSONObject object = new JSONObject( );
+		object.put( "currency", currency );
+		object.put( "price", price.toPlainString( ) );
+		return object;
+	}
+
+	@Override
+	public boolean equals( Object other )
+	{
+		if( this == other )
+			return true;
+
+		if( !( other instanceof Price ) )
+			return false;
+
+		Price that = (Price) other;
+		return currency.equals( that.currency ) && price.compareTo( that.price ) == 0;
+	}
+
+	@Override
+	public int hashCode( )
+	{
+		return currency.hashCode( ) * 31 + price.stripTrailingZeros( ).hashCode( );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return currency + "=" + price.toPlainString( );
+	}
+}
@@ -0,0 +1,306 @@
+package nomics.core;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Refreshes prices in the background and publishes every download as an immutable
+ * PriceSnapshot, so request threads read prices without ever waiting on the API:
+ *
+ * PricePoller poller = new PricePoller( nomicsPrices, key, 10, TimeUnit.SECONDS ).setMinimumRelativeChange( 0.001 );
+ * poller.addListener( ( snapshot, changed ) -> publish( snapshot, changed ) );
+ * poller.start( );
+ * double ethBtc = poller.getSnapshot( ).price( "ETH", "BTC" );
+ *
+ * Snapshots are swapped in through an AtomicReference, a read is a single volatile load.
+ * Listeners are called on the polling thread with only the currencies whose price moved by
+ * at least the minimum relative change since they were last reported.  A failed poll keeps
+ * the previous snapshot and is retried on the next tick.  When the client caches or
+ * conditionally GETs the prices endpoint, a poll that finds the prices unchanged decodes nothing
+ * and notifies no one.
+ * @author danielanderson
+ *
+ */
+public class PricePoller implements Closeable {
+
+	/**
+	 * Receives the currencies whose price changed
+	 */
+	public interface Listener {
+
+		/**
+		 * @param snapshot		The snapshot just published
+		 * @param changed		Currencies that are new or moved by at least the minimum relative change
+		 */
+		void onPricesChanged( PriceSnapshot snapshot, List< String > changed );
+	}
+
+	private final NomicsPrices nomicsPrices;
+
+	private final String key;
+
+	private final long period;
+
+	private final TimeUnit unit;
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Whether the scheduler was created here and must be shut down on close
+	 */
+	private final boolean ownsScheduler;
+
+	private final AtomicReference< PriceSnapshot > snapshot = new AtomicReference< PriceSnapshot >( );
+
+	private final List< Listener > listeners = new CopyOnWriteArrayList< Listener >( );
+
+	private final AtomicLong polls = new AtomicLong( );
+
+	private final AtomicLong failures = new AtomicLong( );
+
+	private volatile Exception lastFailure;
+
+	private volatile double minimumRelativeChange;
+
+	/**
+	 * USD price of each currency as last reported to listeners, guarded by pollLock
+	 */
+	private final Map< String, Double > reported = new HashMap< String, Double >( );
+
+	/**
+	 * Serializes polls, separate from start( ) and stop( ) so they never wait on the API
+	 */
+	private final Object pollLock = new Object( );
+
+	private ScheduledFuture< ? > task;
+
+	/**
+	 * Create a poller running on its own daemon thread, nothing is fetched until start( )
+	 * @param nomicsPrices		Wrapper used to fetch prices
+	 * @param key				The API key
+	 * @param period				Delay between the end of one poll and the start of the next
+	 * @param unit				Unit of the period
+	 */
+	public PricePoller( NomicsPrices nomicsPrices, String key, long period, TimeUnit unit )
+	{
+		this( nomicsPrices, key, period, unit, Executors.newSingleThreadScheduledExecutor( runnable -> {
+			Thread thread = new Thread( runnable, "nomics-price-poller" );
+			thread.setDaemon( true );
+			return thread;
+		} ), true );
+	}
+
+	/**
+	 * Create a poller on an existing scheduler, which is left running on close( )
+	 * @param nomicsPrices		Wrapper used to fetch prices
+	 * @param key				The API key
+	 * @param period				Delay between the end of one poll and the start of the next
+	 * @param unit				Unit of the period
+	 * @param scheduler			Scheduler the polls run on
+	 */
+	public PricePoller( NomicsPrices nomicsPrices, String key, long period, TimeUnit unit, ScheduledExecutorService scheduler )
+	{
+		this( nomicsPrices, key, period, unit, scheduler, false );
+	}
+
+	private PricePoller( NomicsPrices nomicsPrices, String key, long period, TimeUnit unit, ScheduledExecutorService scheduler, boolean ownsScheduler )
+	{
+		if( period <= 0 )
+			throw new IllegalArgumentException( "period must be positive" );
+
+		this.nomicsPrices  = nomicsPrices;
+		this.key           = key;
+		this.period        = period;
+		this.unit          = unit;
+		this.scheduler     = scheduler;
+		this.ownsScheduler = ownsScheduler;
+	}
+
+	/**
+	 * Only report a currency to listeners once its price has moved by at least this fraction
+	 * since it was last reported, ie. 0.001 for 0.1%.  Defaults to 0, any change
+	 * @param minimumRelativeChange
+	 * @return					This poller
+	 */
+	public PricePoller setMinimumRelativeChange( double minimumRelativeChange )
+	{
+		if( minimumRelativeChange < 0 )
+			throw new IllegalArgumentException( "minimumRelativeChange must not be negative" );
+
+		this.minimumRelativeChange = minimumRelativeChange;
+		return this;
+	}
+
+	public void addListener( Listener listener )
+	{
+		listeners.add( listener );
+	}
+
+	public void removeListener( Listener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Start polling, the first poll runs immediately.  Does nothing if already started
+	 */
+	public synchronized void start( )
+	{
+		if( task == null )
+			task = scheduler.scheduleWithFixedDelay( this::pollQuietly, 0, period, unit );
+	}
+
+	/**
+	 * Stop polling, the last snapshot stays readable
+	 */
+	public synchronized void stop( )
+	{
+		if( task != null )
+		{
+			task.cancel( false );
+			task = null;
+		}
+	}
+
+	@Override
+	public void close( )
+	{
+		stop( );
+
+		if( ownsScheduler )
+			scheduler.shutdown( );
+	}
+
+	/**
+	 * @return				The latest snapshot, or null until the first poll succeeds
+	 */
+	public PriceSnapshot getSnapshot( )
+	{
+		return snapshot.get( );
+	}
+
+	/**
+	 * Poll once on the calling thread, publishing the new snapshot and notifying listeners
+	 * @return				The new snapshot
+	 * @throws Exception		If the prices could not be fetched, the previous snapshot is kept
+	 */
+	public PriceSnapshot poll( ) throws Exception
+	{
+		synchronized( pollLock )
+		{
+			return publish( );
+		}
+	}
+
+	private PriceSnapshot publish( ) throws Exception
+	{
+		PriceSnapshot current;
+
+		try
+		{
+			current = nomicsPrices.getPriceSnapshot( key );
+		}
+		catch( Exception e )
+		{
+			failures.incrementAndGet( );
+			lastFailure = e;
+			throw e;
+		}
+
+		polls.incrementAndGet( );
+
+		//An unchanged body (cached or answered 304) comes back as the very same snapshot
+		if( snapshot.getAndSet( current ) == current )
+			return current;
+
+		List< String > changed = Collections.unmodifiableList( changes( current ) );
+
+		if( !changed.isEmpty( ) )
+		{
+			for( Listener listener : listeners )
+			{
+				try
+				{
+					listener.onPricesChanged( current, changed );
+				}
+				catch( RuntimeException e )
+				{
+					//A broken listener must not stop the others or the polling
+					lastFailure = e;
+				}
+			}
+		}
+
+		return current;
+	}
+
+	public long getPollCount( )
+	{
+		return polls.get( );
+	}
+
+	public long getFailureCount( )
+	{
+		return failures.get( );
+	}
+
+	/**
+	 * @return				The last exception thrown by a poll or a listener, or null
+	 */
+	public Exception getLastFailure( )
+	{
+		return lastFailure;
+	}
+
+	private void pollQuietly( )
+	{
+		try
+		{
+			poll( );
+		}
+		catch( Exception e )
+		{
+			//Already recorded, an exception escaping here would cancel the schedule
+		}
+	}
+
+	/**
+	 * Collect the currencies that are new or moved enough since last reported, and remember
+	 * their new price as reported
+	 */
+	private List< String > changes( PriceSnapshot current )
+	{
+		List< String > changed = new ArrayList< String >( );
+		double threshold       = minimumRelativeChange;
+
+		for( int i = 0; i < current.size( ); i++ )
+		{
+			String symbol = current.getSymbol( i );
+			double price  = current.price( i );
+			Double last   = reported.get( symbol );
+
+			if( last == null || ( price != last && relativeChange( last, price ) >= threshold ) )
+			{
+				reported.put( symbol, price );
+				changed.add( symbol );
+			}
+		}
+
+		return changed;
+	}
+
+	private static double relativeChange( double from, double to )
+	{
+		return from == 0 ? Double.POSITIVE_INFINITY : Math.abs( to - from ) / Math.abs( from );
+	}
+}
@@ -0,0 +1,245 @@
+package nomics.core;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of every USD price from one download of the prices API, indexed for
+ * cross rates.  Prices are held as Decimal8 in a long[] next to a symbol to index table, so a
+ * cross rate is two hash lookups and a division and re-quoting the whole table against another
+ * currency copies nothing:
+ *
+ * PriceSnapshot usd = nomicsPrices.getPriceSnapshot( key );
+ * double ethBtc     = usd.price( "ETH", "BTC" );
+ * PriceSnapshot eth = usd.rebase( "ETH" );
+ * double btcEth     = eth.price( "BTC" );
+ *
+ * The double accessors are for quick comparisons, decimalPrice( ) and toPrices( ) divide the
+ * fixed point values exactly and round down to 8 decimals, the same way convertWithNewBase( )
+ * does.  "USD" is always available as a quote currency even though the API does not list it.
+ * Asking for a currency that is not listed throws an IllegalArgumentException naming it.
+ * @author danielanderson
+ *
+ */
+public final class PriceSnapshot {
+
+	/**
+	 * The currency the API quotes every price in
+	 */
+	public static final String USD = "USD";
+
+	private final String[] symbols;
+
+	/**
+	 * Price of each symbol in USD as a Decimal8
+	 */
+	private final long[] usd;
+
+	private final Map< String, Integer > index;
+
+	/**
+	 * Epoch milliseconds the prices were fetched at
+	 */
+	private final long timestamp;
+
+	/**
+	 * Currency price( symbol ) is quoted in, and its value in USD
+	 */
+	private final String quote;
+
+	private final long quoteInUSD;
+
+	private PriceSnapshot( String[] symbols, long[] usd, Map< String, Integer > index, long timestamp, String quote, long quoteInUSD )
+	{
+		this.symbols    = symbols;
+		this.usd        = usd;
+		this.index      = index;
+		this.timestamp  = timestamp;
+		this.quote      = quote;
+		this.quoteInUSD = quoteInUSD;
+	}
+
+	/**
+	 * Build a snapshot quoted in USD
+	 * @param prices			Prices in USD as returned by NomicsPrices.getPrices( )
+	 * @param timestamp		Epoch milliseconds the prices were fetched at
+	 * @return
+	 */
+	public static PriceSnapshot of( List< Price > prices, long timestamp )
+	{
+		String[] symbols = new String[ prices.size( ) ];
+		long[] usd       = new long[ prices.size( ) ];
+
+		for( int i = 0; i < symbols.length; i++ )
+		{
+			Price price = prices.get( i );
+			symbols[ i ] = price.getCurrency( );
+			usd[ i ]     = Decimal8.fromBigDecimal( price.getPrice( ), RoundingMode.DOWN );
+		}
+
+		return of( symbols, usd, timestamp );
+	}
+
+	/**
+	 * Build a snapshot quoted in USD from decoded columns, which are kept rather than copied
+	 * @param symbols		Currencies
+	 * @param usd			Their prices in USD as Decimal8
+	 * @param timestamp		Epoch milliseconds the prices were fetched at
+	 * @return
+	 */
+	static PriceSnapshot of( String[] symbols, long[] usd, long timestamp )
+	{
+		Map< String, Integer > index = new HashMap< String, Integer >( symbols.length * 2 );
+
+		for( int i = 0; i < symbols.length; i++ )
+		{
+			//Keep the first listing if the API reports a currency twice
+			index.putIfAbsent( symbols[ i ], i );
+		}
+
+		return new PriceSnapshot( symbols, usd, index, timestamp, USD, Decimal8.ONE );
+	}
+
+	/**
+	 * Returns the same prices quoted in another currency.  Nothing is copied, the new snapshot
+	 * shares this one's tables
+	 * @param quote			The new quote currency ie. "ETH"
+	 * @return
+	 */
+	public PriceSnapshot rebase( String quote )
+	{
+		if( quote.equals( this.quote ) )
+			return this;
+
+		return new PriceSnapshot( symbols, usd, index, timestamp, quote, quoteValue( quote ) );
+	}
+
+	/**
+	 * @param symbol			The currency to price ie. "BTC"
+	 * @return				Its price in this snapshot's quote currency
+	 */
+	public double price( String symbol )
+	{
+		return (double) usdValue( symbol ) / quoteInUSD;
+	}
+
+	/**
+	 * Cross rate between any two currencies, whatever this snapshot is quoted in
+	 * @param symbol			The currency to price ie. "ETH"
+	 * @param quote			The currency to price it in ie. "BTC"
+	 * @return
+	 */
+	public double price( String symbol, String quote )
+	{
+		return (double) usdValue( symbol ) / quoteValue( quote );
+	}
+
+	/**
+	 * Exact cross rate between any two currencies
+	 * @param symbol			The currency to price ie. "ETH"
+	 * @param quote			The currency to price it in ie. "BTC"
+	 * @return				The price as a Decimal8, rounded down
+	 */
+	public long decimalPrice( String symbol, String quote )
+	{
+		return Decimal8.divide( usdValue( symbol ), quoteValue( quote ), RoundingMode.DOWN );
+	}
+
+	/**
+	 * Index based access for tight loops, see indexOf( )
+	 * @param i
+	 * @return				Price of the i'th currency in this snapshot's quote currency
+	 */
+	public double price( int i )
+	{
+		return (double) usd[ i ] / quoteInUSD;
+	}
+
+	/**
+	 * @param i
+	 * @return				Price of the i'th currency in this snapshot's quote currency as a
+	 * 						Decimal8, rounded down
+	 */
+	public long decimalPrice( int i )
+	{
+		return Decimal8.divide( usd[ i ], quoteInUSD, RoundingMode.DOWN );
+	}
+
+	/**
+	 * @param symbol
+	 * @return				Index of the currency, or -1 if it is not listed
+	 */
+	public int indexOf( String symbol )
+	{
+		Integer i = index.get( symbol );
+		return i == null ? -1 : i;
+	}
+
+	public boolean contains( String symbol )
+	{
+		return index.containsKey( symbol ) || USD.equals( symbol );
+	}
+
+	public String getSymbol( int i )
+	{
+		return symbols[ i ];
+	}
+
+	public int size( )
+	{
+		return symbols.length;
+	}
+
+	public String getQuote( )
+	{
+		return quote;
+	}
+
+	public long getTimestamp( )
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Returns every price in this snapshot's quote currency, rounded down to a precision
+	 * @param precision		Digits after the decimal point
+	 * @return
+	 */
+	public List< Price > toPrices( int precision )
+	{
+		List< Price > prices = new ArrayList< Price >( symbols.length );
+
+		for( int i = 0; i < symbols.length; i++ )
+		{
+			prices.add( new Price( symbols[ i ], Decimal8.toBigDecimal( decimalPrice( i ) ).setScale( precision, RoundingMode.DOWN ) ) );
+		}
+
+		return Collections.unmodifiableList( prices );
+	}
+
+	private long quoteValue( String quote )
+	{
+		long value = usdValue( quote );
+
+		if( value <= 0 )
+			throw new IllegalArgumentException( "Cannot quote prices in " + quote + ", its price is " + Decimal8.toString( value ) );
+
+		return value;
+	}
+
+	private long usdValue( String symbol )
+	{
+		Integer i = index.get( symbol );
+
+		if( i != null )
+			return usd[ i ];
+
+		if( USD.equals( symbol ) )
+			return Decimal8.ONE;
+
+		throw new IllegalArgumentException( "No price for currency " + symbol );
+	}
+}
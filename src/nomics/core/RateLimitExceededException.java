@@ -0,0 +1,17 @@
+package nomics.core;
+import java.io.IOException;
+
+/**
+ * Thrown by a fail fast RateLimiter when a request would exceed the configured rate
+ * @author danielanderson
+ *
+ */
+public class RateLimitExceededException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RateLimitExceededException( String message )
+	{
+		super( message );
+	}
+}
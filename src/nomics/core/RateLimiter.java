@@ -0,0 +1,135 @@
+package nomics.core;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter.  The bucket holds up to burst permits and refills at a fixed
+ * rate; each request takes one permit.  When the bucket is empty a QUEUE limiter makes the
+ * caller wait for its turn while a FAIL_FAST limiter throws a RateLimitExceededException
+ * straight away.  Instances are thread safe and waiting callers are served in order.
+ * @author danielanderson
+ *
+ */
+public class RateLimiter {
+
+	public enum Mode { QUEUE, FAIL_FAST };
+
+	private final double permitsPerNano;
+
+	private final double burst;
+
+	private final Mode mode;
+
+	/**
+	 * Permits available at lastRefill, may go negative when callers have queued ahead
+	 */
+	private double permits;
+
+	private long lastRefill;
+
+	/**
+	 * Create a limiter whose bucket starts full
+	 * @param permitsPerSecond	Sustained request rate
+	 * @param burst				Maximum number of requests that can be sent back to back
+	 * @param mode				Whether to wait or fail when the bucket is empty
+	 */
+	public RateLimiter( double permitsPerSecond, int burst, Mode mode )
+	{
+		if( permitsPerSecond <= 0 || burst < 1 )
+			throw new IllegalArgumentException( "permitsPerSecond and burst must be positive" );
+
+		this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos( 1 );
+		this.burst          = burst;
+		this.mode           = mode;
+		this.permits        = burst;
+		this.lastRefill     = System.nanoTime( );
+	}
+
+	/**
+	 * Take a permit, waiting for one in QUEUE mode
+	 * @return				Nanoseconds spent waiting
+	 * @throws RateLimitExceededException	In FAIL_FAST mode when no permit is available
+	 * @throws InterruptedException
+	 */
+	public long acquire( ) throws RateLimitExceededException, InterruptedException
+	{
+		long wait;
+
+		synchronized( this )
+		{
+			refill( );
+
+			if( permits >= 1 )
+			{
+				permits -= 1;
+				return 0;
+			}
+
+			wait = (long) Math.ceil( ( 1 - permits ) / permitsPerNano );
+
+			if( mode == Mode.FAIL_FAST )
+				throw new RateLimitExceededException( "Rate limit exceeded, next permit in " + TimeUnit.NANOSECONDS.toMillis( wait ) + "ms" );
+
+			//Reserve the permit now so later callers queue behind this one
+			permits -= 1;
+		}
+
+		try
+		{
+			TimeUnit.NANOSECONDS.sleep( wait );
+		}
+		catch( InterruptedException e )
+		{
+			//The caller gives up on the request, so the reserved permit goes back to the bucket
+			release( );
+			throw e;
+		}
+
+		return wait;
+	}
+
+	/**
+	 * Take a permit only if one is available right now
+	 * @return				true if a permit was taken
+	 */
+	public synchronized boolean tryAcquire( )
+	{
+		refill( );
+
+		if( permits < 1 )
+			return false;
+
+		permits -= 1;
+		return true;
+	}
+
+	/**
+	 * Give back a permit that was taken but never used, ie. because another limit refused the
+	 * request it was taken for.  The bucket never fills past burst
+	 */
+	public synchronized void release( )
+	{
+		refill( );
+		permits = Math.min( burst, permits + 1 );
+	}
+
+	/**
+	 * @return				Permits currently available, negative when callers are queued
+	 */
+	public synchronized double getAvailablePermits( )
+	{
+		refill( );
+		return permits;
+	}
+
+	public Mode getMode( )
+	{
+		return mode;
+	}
+
+	private void refill( )
+	{
+		long now   = System.nanoTime( );
+		permits    = Math.min( burst, permits + ( now - lastRefill ) * permitsPerNano );
+		lastRefill = now;
+	}
+}
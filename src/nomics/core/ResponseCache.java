@@ -0,0 +1,52 @@
+package nomics.core;
+
+/**
+ * Cache of raw response bodies placed in front of the HttpsClient transport.  Bodies
+ * handed out by the cache are shared between callers and must not be modified
+ * @author danielanderson
+ *
+ */
+public interface ResponseCache {
+
+	/**
+	 * Returns true when responses for this URL may be cached at all
+	 * @param url			The absolute request URL
+	 * @return
+	 */
+	boolean isCacheable( String url );
+
+	/**
+	 * Look up a fresh body for a URL
+	 * @param url			The absolute request URL
+	 * @return				The cached body, or null on a miss or when the entry has expired
+	 */
+	byte[] get( String url );
+
+	/**
+	 * Store the body of a successful response
+	 * @param url			The absolute request URL
+	 * @param body			The decompressed response body
+	 */
+	void put( String url, byte[] body );
+
+	/**
+	 * Drop the entry for a single URL
+	 * @param url
+	 */
+	void invalidate( String url );
+
+	/**
+	 * Drop every entry
+	 */
+	void clear( );
+
+	/**
+	 * @return				Number of lookups served from the cache
+	 */
+	long getHitCount( );
+
+	/**
+	 * @return				Number of lookups that had to go to the network
+	 */
+	long getMissCount( );
+}
@@ -0,0 +1,25 @@
+package nomics.core;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.json.JSONException;
+
+/**
+ * Callback used to decode a response body straight off of the connection
+ * rather than buffering it into a String first
+ * @author danielanderson
+ *
+ * @param <T>	The decoded type
+ */
+public interface ResponseHandler< T > {
+
+	/**
+	 * Decode the body of a successful response.  The handler may stop reading early,
+	 * the client takes care of closing the stream
+	 * @param body			The (decompressed) response body
+	 * @return				The decoded value
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	T handle( InputStream body ) throws IOException, JSONException;
+}
@@ -0,0 +1,171 @@
+package nomics.core;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When and how long to wait before retrying a failed GET.  Network errors, timeouts and the
+ * retryable statuses (408, 429, 500, 502, 503 and 504 by default) are retried up to
+ * maxAttempts in total with exponential backoff and full jitter: the n'th retry waits a random
+ * time between 0 and min( maxBackoff, initialBackoff * multiplier^(n-1) ).  A Retry-After sent
+ * by the server is waited out in full, unless it is longer than maxRetryAfter in which case
+ * the failure is returned straight away.  An optional deadline bounds the time spent on one
+ * request across all of its attempts:
+ *
+ * httpsClient.setRetryPolicy( new RetryPolicy( 4 ).setBackoff( 200, 5000, TimeUnit.MILLISECONDS ).setDeadline( 20, TimeUnit.SECONDS ) );
+ *
+ * Failures of the client itself (a fail fast RateLimiter or an open CircuitBreaker) are never
+ * retried.  Configure a policy before handing it to a client, it may then be shared.
+ * @author danielanderson
+ *
+ */
+public class RetryPolicy {
+
+	private static final int[] DEFAULT_RETRYABLE_STATUSES = { 408, 429, 500, 502, 503, 504 };
+
+	private final int maxAttempts;
+
+	private long initialBackoff = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+	private long maxBackoff = TimeUnit.SECONDS.toNanos( 10 );
+
+	private double multiplier = 2;
+
+	private long maxRetryAfter = TimeUnit.SECONDS.toNanos( 60 );
+
+	/**
+	 * Nanoseconds one request may take across all attempts, 0 for no limit
+	 */
+	private long deadline;
+
+	/**
+	 * Sorted for binary search
+	 */
+	private int[] retryableStatuses = DEFAULT_RETRYABLE_STATUSES;
+
+	/**
+	 * @param maxAttempts		Attempts in total including the first, 1 disables retrying
+	 */
+	public RetryPolicy( int maxAttempts )
+	{
+		if( maxAttempts < 1 )
+			throw new IllegalArgumentException( "maxAttempts must be at least 1" );
+
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * @param initial			Upper bound of the wait before the first retry, defaults to 100ms
+	 * @param maximum			Cap on the upper bound as it grows, defaults to 10s
+	 * @param unit
+	 * @return					This policy
+	 */
+	public RetryPolicy setBackoff( long initial, long maximum, TimeUnit unit )
+	{
+		if( initial < 0 || maximum < initial )
+			throw new IllegalArgumentException( "Backoff must be non negative with initial <= maximum" );
+
+		this.initialBackoff = unit.toNanos( initial );
+		this.maxBackoff     = unit.toNanos( maximum );
+		return this;
+	}
+
+	/**
+	 * @param multiplier			Growth of the backoff per retry, defaults to 2
+	 * @return					This policy
+	 */
+	public RetryPolicy setMultiplier( double multiplier )
+	{
+		if( multiplier < 1 )
+			throw new IllegalArgumentException( "multiplier must be at least 1" );
+
+		this.multiplier = multiplier;
+		return this;
+	}
+
+	/**
+	 * @param maxRetryAfter		Longest Retry-After that will be waited out, defaults to 60s
+	 * @param unit
+	 * @return					This policy
+	 */
+	public RetryPolicy setMaxRetryAfter( long maxRetryAfter, TimeUnit unit )
+	{
+		this.maxRetryAfter = unit.toNanos( maxRetryAfter );
+		return this;
+	}
+
+	/**
+	 * No retry is started if it could not begin before this much time has passed since the
+	 * first attempt.  Defaults to 0, no limit
+	 * @param deadline
+	 * @param unit
+	 * @return					This policy
+	 */
+	public RetryPolicy setDeadline( long deadline, TimeUnit unit )
+	{
+		this.deadline = unit.toNanos( deadline );
+		return this;
+	}
+
+	/**
+	 * @param statusCodes		HTTP statuses worth retrying ie. 429, 503
+	 * @return					This policy
+	 */
+	public RetryPolicy setRetryableStatuses( int... statusCodes )
+	{
+		int[] sorted = statusCodes.clone( );
+		Arrays.sort( sorted );
+
+		this.retryableStatuses = sorted;
+		return this;
+	}
+
+	public int getMaxAttempts( )
+	{
+		return maxAttempts;
+	}
+
+	/**
+	 * @param failure
+	 * @return				Whether the failure is worth another attempt
+	 */
+	public boolean isRetryable( IOException failure )
+	{
+		if( failure instanceof HttpStatusException )
+			return Arrays.binarySearch( retryableStatuses, ( (HttpStatusException) failure ).getStatusCode( ) ) >= 0;
+
+		return !( failure instanceof RateLimitExceededException || failure instanceof CircuitOpenException );
+	}
+
+	/**
+	 * Decide whether to retry after a failed attempt
+	 * @param attempt		The attempt that just failed, 1 for the first
+	 * @param failure		How it failed
+	 * @param elapsed		Nanoseconds since the first attempt started
+	 * @return				Nanoseconds to wait before the next attempt, or -1 to give up
+	 */
+	public long nextDelay( int attempt, IOException failure, long elapsed )
+	{
+		if( attempt >= maxAttempts || !isRetryable( failure ) )
+			return -1;
+
+		double bound = Math.min( maxBackoff, initialBackoff * Math.pow( multiplier, attempt - 1 ) );
+		long delay   = (long) ( ThreadLocalRandom.current( ).nextDouble( ) * bound );
+
+		if( failure instanceof HttpStatusException && ( (HttpStatusException) failure ).getRetryAfter( ) >= 0 )
+		{
+			long retryAfter = TimeUnit.MILLISECONDS.toNanos( ( (HttpStatusException) failure ).getRetryAfter( ) );
+
+			if( retryAfter > maxRetryAfter )
+				return -1;
+
+			delay = Math.max( delay, retryAfter );
+		}
+
+		if( deadline > 0 && elapsed + delay >= deadline )
+			return -1;
+
+		return delay;
+	}
+}
@@ -0,0 +1,278 @@
+package nomics.core;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable result of one SpreadScanner round: the last close of every pair on every exchange
+ * as a pair x exchange matrix, and the widest buy low / sell high gaps found in it:
+ *
+ * SpreadMatrix matrix = scanner.scan( );
+ * double gdaxClose    = matrix.getClose( matrix.indexOfPair( "BTC", "USD" ), matrix.indexOfExchange( "gdax" ) );
+ * for( SpreadOpportunity opportunity : matrix.getOpportunities( ) ) ...
+ *
+ * Cells are NaN where the exchange does not list the pair, its download failed or it has not
+ * traded within the scanner's lookback.
+ * @author danielanderson
+ *
+ */
+public final class SpreadMatrix {
+
+	private final String[] bases;
+
+	private final String[] quotes;
+
+	private final String[] exchanges;
+
+	/**
+	 * Close of pair p on exchange e at [ p * exchanges.length + e ]
+	 */
+	private final double[] closes;
+
+	/**
+	 * Open time of the candle each close was taken from, Long.MIN_VALUE where there is none
+	 */
+	private final long[] timestamps;
+
+	private final List< SpreadOpportunity > opportunities;
+
+	private final Map< Market, Throwable > failures;
+
+	private final long scannedAt;
+
+	private SpreadMatrix( String[] bases, String[] quotes, String[] exchanges, double[] closes, long[] timestamps,
+			List< SpreadOpportunity > opportunities, Map< Market, Throwable > failures, long scannedAt )
+	{
+		this.bases         = bases;
+		this.quotes        = quotes;
+		this.exchanges     = exchanges;
+		this.closes        = closes;
+		this.timestamps    = timestamps;
+		this.opportunities = opportunities;
+		this.failures      = failures;
+		this.scannedAt     = scannedAt;
+	}
+
+	/**
+	 * Rank the opportunities of a filled in matrix.  Every pair's row is compared on its own,
+	 * rows are spread over the common fork join pool
+	 * @param bases			Base currency of each row
+	 * @param quotes			Quote currency of each row
+	 * @param exchanges		Exchange of each column
+	 * @param closes			Row major closes, NaN where missing
+	 * @param timestamps		Row major candle open times
+	 * @param failures		Markets whose download failed
+	 * @param topK			How many opportunities to keep
+	 * @param scannedAt		Epoch milliseconds the round started
+	 * @return
+	 */
+	static SpreadMatrix of( String[] bases, String[] quotes, String[] exchanges, double[] closes, long[] timestamps,
+			Map< Market, Throwable > failures, int topK, long scannedAt )
+	{
+		int venues                      = exchanges.length;
+		SpreadOpportunity[][] bestByRow = new SpreadOpportunity[ bases.length ][ ];
+
+		IntStream.range( 0, bases.length ).parallel( ).forEach( p -> {
+			PriorityQueue< SpreadOpportunity > best = new PriorityQueue< SpreadOpportunity >( Collections.reverseOrder( ) );
+
+			for( int buy = 0; buy < venues; buy++ )
+			{
+				double buyPrice = closes[ p * venues + buy ];
+
+				if( !( buyPrice > 0 ) )
+					continue;
+
+				for( int sell = 0; sell < venues; sell++ )
+				{
+					double sellPrice = closes[ p * venues + sell ];
+
+					if( !( sellPrice > buyPrice ) )
+						continue;
+
+					offer( best, new SpreadOpportunity( bases[ p ], quotes[ p ], exchanges[ buy ], buyPrice, exchanges[ sell ], sellPrice ), topK );
+				}
+			}
+
+			bestByRow[ p ] = best.toArray( new SpreadOpportunity[ best.size( ) ] );
+		} );
+
+		//Narrow the per pair winners down to the overall top K
+		PriorityQueue< SpreadOpportunity > best = new PriorityQueue< SpreadOpportunity >( Collections.reverseOrder( ) );
+
+		for( SpreadOpportunity[] row : bestByRow )
+		{
+			for( SpreadOpportunity opportunity : row )
+			{
+				offer( best, opportunity, topK );
+			}
+		}
+
+		List< SpreadOpportunity > opportunities = new ArrayList< SpreadOpportunity >( best );
+		Collections.sort( opportunities );
+
+		return new SpreadMatrix( bases, quotes, exchanges, closes, timestamps, Collections.unmodifiableList( opportunities ),
+				Collections.unmodifiableMap( failures ), scannedAt );
+	}
+
+	/**
+	 * Internal method keeping the topK widest spreads in a heap whose head is the narrowest
+	 */
+	private static void offer( PriorityQueue< SpreadOpportunity > best, SpreadOpportunity opportunity, int topK )
+	{
+		if( best.size( ) < topK )
+		{
+			best.add( opportunity );
+		}
+		else if( topK > 0 && opportunity.getSpread( ) > best.peek( ).getSpread( ) )
+		{
+			best.poll( );
+			best.add( opportunity );
+		}
+	}
+
+	/**
+	 * @return				The widest spreads, widest first
+	 */
+	public List< SpreadOpportunity > getOpportunities( )
+	{
+		return opportunities;
+	}
+
+	/**
+	 * @return				Pairs as "BASE-QUOTE", in row order
+	 */
+	public List< String > getPairs( )
+	{
+		List< String > pairs = new ArrayList< String >( bases.length );
+
+		for( int p = 0; p < bases.length; p++ )
+		{
+			pairs.add( bases[ p ] + "-" + quotes[ p ] );
+		}
+
+		return pairs;
+	}
+
+	/**
+	 * @return				Exchanges in column order
+	 */
+	public List< String > getExchanges( )
+	{
+		return Collections.unmodifiableList( Arrays.asList( exchanges ) );
+	}
+
+	/**
+	 * @param base			The base currency ie. "BTC"
+	 * @param quote			The quote currency ie. "USD"
+	 * @return				Row of the pair, or -1 if it was not scanned
+	 */
+	public int indexOfPair( String base, String quote )
+	{
+		for( int p = 0; p < bases.length; p++ )
+		{
+			if( bases[ p ].equalsIgnoreCase( base ) && quotes[ p ].equalsIgnoreCase( quote ) )
+				return p;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @param exchange		The id for the exchange ie. "gdax"
+	 * @return				Column of the exchange, or -1 if it was not scanned
+	 */
+	public int indexOfExchange( String exchange )
+	{
+		for( int e = 0; e < exchanges.length; e++ )
+		{
+			if( exchanges[ e ].equalsIgnoreCase( exchange ) )
+				return e;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @param pair			Row, see indexOfPair( )
+	 * @param exchange		Column, see indexOfExchange( )
+	 * @return				Last close, NaN if there is none
+	 */
+	public double getClose( int pair, int exchange )
+	{
+		return closes[ cell( pair, exchange ) ];
+	}
+
+	/**
+	 * @param pair			Row, see indexOfPair( )
+	 * @param exchange		Column, see indexOfExchange( )
+	 * @return				Epoch milliseconds the candle the close was taken from opened, Long.MIN_VALUE if there is none
+	 */
+	public long getTimestamp( int pair, int exchange )
+	{
+		return timestamps[ cell( pair, exchange ) ];
+	}
+
+	/**
+	 * @param pair			Row, see indexOfPair( )
+	 * @return				( highest close - lowest close ) / lowest close across the exchanges, NaN
+	 * 						if fewer than two have a close
+	 */
+	public double getSpread( int pair )
+	{
+		double low  = Double.POSITIVE_INFINITY;
+		double high = Double.NEGATIVE_INFINITY;
+		int priced  = 0;
+
+		for( int e = 0; e < exchanges.length; e++ )
+		{
+			double close = getClose( pair, e );
+
+			if( close > 0 )
+			{
+				low  = Math.min( low, close );
+				high = Math.max( high, close );
+				priced++;
+			}
+		}
+
+		return priced < 2 ? Double.NaN : ( high - low ) / low;
+	}
+
+	/**
+	 * @return				Markets whose download failed this round, with the reason
+	 */
+	public Map< Market, Throwable > getFailures( )
+	{
+		return failures;
+	}
+
+	/**
+	 * @return				Epoch milliseconds the round started
+	 */
+	public long getScannedAt( )
+	{
+		return scannedAt;
+	}
+
+	public int getPairCount( )
+	{
+		return bases.length;
+	}
+
+	public int getExchangeCount( )
+	{
+		return exchanges.length;
+	}
+
+	private int cell( int pair, int exchange )
+	{
+		if( pair < 0 || pair >= bases.length || exchange < 0 || exchange >= exchanges.length )
+			throw new IndexOutOfBoundsException( "pair: " + pair + ", exchange: " + exchange );
+
+		return pair * exchanges.length + exchange;
+	}
+}
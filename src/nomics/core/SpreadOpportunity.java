@@ -0,0 +1,93 @@
+package nomics.core;
+
+/**
+ * Immutable price gap for one pair between two exchanges: buy where it is cheap, sell where it
+ * is dear.  The spread is relative to the buy price, so 0.004 means the sell venue's last close
+ * is 0.4% above the buy venue's
+ * @author danielanderson
+ *
+ */
+public final class SpreadOpportunity implements Comparable< SpreadOpportunity > {
+
+	private final String base;
+
+	private final String quote;
+
+	private final String buyExchange;
+
+	private final String sellExchange;
+
+	private final double buyPrice;
+
+	private final double sellPrice;
+
+	public SpreadOpportunity( String base, String quote, String buyExchange, double buyPrice, String sellExchange, double sellPrice )
+	{
+		this.base         = base;
+		this.quote        = quote;
+		this.buyExchange  = buyExchange;
+		this.buyPrice     = buyPrice;
+		this.sellExchange = sellExchange;
+		this.sellPrice    = sellPrice;
+	}
+
+	public String getBase( )
+	{
+		return base;
+	}
+
+	public String getQuote( )
+	{
+		return quote;
+	}
+
+	/**
+	 * @return			The exchange with the lower price
+	 */
+	public String getBuyExchange( )
+	{
+		return buyExchange;
+	}
+
+	public double getBuyPrice( )
+	{
+		return buyPrice;
+	}
+
+	/**
+	 * @return			The exchange with the higher price
+	 */
+	public String getSellExchange( )
+	{
+		return sellExchange;
+	}
+
+	public double getSellPrice( )
+	{
+		return sellPrice;
+	}
+
+	/**
+	 * @return			( sellPrice - buyPrice ) / buyPrice
+	 */
+	public double getSpread( )
+	{
+		return ( sellPrice - buyPrice ) / buyPrice;
+	}
+
+	/**
+	 * Widest spread first
+	 */
+	@Override
+	public int compareTo( SpreadOpportunity other )
+	{
+		return Double.compare( other.getSpread( ), getSpread( ) );
+	}
+
+	@Override
+	public String toString( )
+	{
+		return base + "-" + quote + ": buy " + buyExchange + " @ " + buyPrice + ", sell " + sellExchange + " @ " + sellPrice
+				+ String.format( " (%.4f%%)", getSpread( ) * 100 );
+	}
+}
@@ -0,0 +1,306 @@
+package nomics.core;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import nomics.core.NomicsExchangeCandles.CANDLE_FILTER_MODE;
+
+/**
+ * Scans pairs listed on several exchanges for price gaps between them.  Each round downloads
+ * only the last few candles of every (exchange, market) concurrently, lays the last closes
+ * out as a pair x exchange SpreadMatrix and ranks the widest spreads:
+ *
+ * List< Market > markets = catalog.getIntersection( Arrays.asList( "binance", "gdax", "kraken" ) );
+ * SpreadScanner scanner  = new SpreadScanner( nomicsExchangeCandles, key, "1m", markets, BatchExecutor.withVirtualThreads( 16 ) )
+ * 		.setRateLimiter( new RateLimiter( 20, 20, RateLimiter.Mode.QUEUE ) ).setTopK( 10 );
+ * List< SpreadOpportunity > best = scanner.scan( ).getOpportunities( );
+ *
+ * A round costs one small request per market, all in flight at once up to the batch's
+ * concurrency and the optional rate limiter, so calling scan( ) on a timer keeps the matrix
+ * fresh at the price of one round of requests per refresh.  A failing market leaves its cell
+ * empty for that round and never fails the scan.  The markets are fixed at construction, rounds
+ * may run concurrently and getLatest( ) always returns the newest completed one.
+ * @author danielanderson
+ *
+ */
+public class SpreadScanner {
+
+	private final NomicsExchangeCandles nomicsExchangeCandles;
+
+	private final String key;
+
+	private final String interval;
+
+	private final long intervalMillis;
+
+	private final BatchExecutor batch;
+
+	private final List< Market > markets;
+
+	private final String[] bases;
+
+	private final String[] quotes;
+
+	private final String[] exchanges;
+
+	/**
+	 * Matrix cell of each market, in the order of markets
+	 */
+	private final int[] cells;
+
+	private final AtomicReference< SpreadMatrix > latest = new AtomicReference< SpreadMatrix >( );
+
+	private volatile RateLimiter rateLimiter;
+
+	private volatile int lookback = 2;
+
+	private volatile int topK = 10;
+
+	/**
+	 * @param nomicsExchangeCandles	Wrapper used to fetch candles
+	 * @param key					The API key
+	 * @param interval				Candle interval to take closes from ie. "1m"
+	 * @param markets				The markets to compare, ie. an intersection.  Markets are grouped into
+	 * 								pairs on base and quote, pairs listed on fewer than two exchanges are
+	 * 								dropped
+	 * @param batch					Executor and concurrency limit for the downloads
+	 */
+	public SpreadScanner( NomicsExchangeCandles nomicsExchangeCandles, String key, String interval, Collection< Market > markets, BatchExecutor batch )
+	{
+		this.nomicsExchangeCandles = nomicsExchangeCandles;
+		this.key                   = key;
+		this.interval              = interval;
+		this.intervalMillis        = Intervals.toMillis( interval );
+		this.batch                 = batch;
+
+		//Rows and columns in order of first appearance
+		Map< String, List< Market > > byPair = new LinkedHashMap< String, List< Market > >( );
+		Map< String, Integer > columns       = new LinkedHashMap< String, Integer >( );
+
+		for( Market market : markets )
+		{
+			String pair           = MarketCatalog.normalize( market.getBase( ) ) + '\u0000' + MarketCatalog.normalize( market.getQuote( ) );
+			List< Market > listed = byPair.computeIfAbsent( pair, ignored -> new ArrayList< Market >( ) );
+
+			//Keep the first listing if an exchange reports the same pair twice
+			if( listed.stream( ).noneMatch( other -> other.getExchange( ).equalsIgnoreCase( market.getExchange( ) ) ) )
+				listed.add( market );
+		}
+
+		byPair.values( ).removeIf( listed -> listed.size( ) < 2 );
+
+		for( List< Market > listed : byPair.values( ) )
+		{
+			for( Market market : listed )
+			{
+				columns.putIfAbsent( MarketCatalog.normalize( market.getExchange( ) ), columns.size( ) );
+			}
+		}
+
+		this.bases     = new String[ byPair.size( ) ];
+		this.quotes    = new String[ byPair.size( ) ];
+		this.exchanges = new String[ columns.size( ) ];
+		this.markets   = new ArrayList< Market >( );
+
+		List< Integer > cells = new ArrayList< Integer >( );
+		int row               = 0;
+
+		for( List< Market > listed : byPair.values( ) )
+		{
+			bases[ row ]  = listed.get( 0 ).getBase( );
+			quotes[ row ] = listed.get( 0 ).getQuote( );
+
+			for( Market market : listed )
+			{
+				int column = columns.get( MarketCatalog.normalize( market.getExchange( ) ) );
+
+				exchanges[ column ] = market.getExchange( );
+				this.markets.add( market );
+				cells.add( row * exchanges.length + column );
+			}
+
+			row++;
+		}
+
+		this.cells = new int[ cells.size( ) ];
+
+		for( int i = 0; i < this.cells.length; i++ )
+		{
+			this.cells[ i ] = cells.get( i );
+		}
+	}
+
+	/**
+	 * Decode the result of NomicsMarkets.getMarketIntersections( ), one JSON array of markets
+	 * per exchange, into the markets to pass to the constructor
+	 * @param intersections
+	 * @return
+	 * @throws JSONException
+	 */
+	public static List< Market > readIntersections( List< String > intersections ) throws JSONException
+	{
+		List< Market > markets = new ArrayList< Market >( );
+
+		for( String intersection : intersections )
+		{
+			JSONArray exchangeMarkets = new JSONArray( intersection );
+
+			for( int i = 0; i < exchangeMarkets.length( ); i++ )
+			{
+				markets.add( Market.fromJSONObject( exchangeMarkets.getJSONObject( i ) ) );
+			}
+		}
+
+		return markets;
+	}
+
+	/**
+	 * @param rateLimiter		Limiter every download takes a permit from, on top of the client's
+	 * 						own limits, or null for none.  QUEUE mode spreads a round out over
+	 * 						the budget, FAIL_FAST drops the markets over it for the round
+	 * @return				This scanner
+	 */
+	public SpreadScanner setRateLimiter( RateLimiter rateLimiter )
+	{
+		this.rateLimiter = rateLimiter;
+		return this;
+	}
+
+	/**
+	 * @param lookback		Candles to download per market, defaults to 2 so a market whose
+	 * 						current candle has not opened yet still has a close.  Markets that
+	 * 						have not traded within the lookback have no close
+	 * @return				This scanner
+	 */
+	public SpreadScanner setLookback( int lookback )
+	{
+		if( lookback < 1 )
+			throw new IllegalArgumentException( "lookback must be at least 1" );
+
+		this.lookback = lookback;
+		return this;
+	}
+
+	/**
+	 * @param topK			Number of opportunities to keep, defaults to 10
+	 * @return				This scanner
+	 */
+	public SpreadScanner setTopK( int topK )
+	{
+		if( topK < 0 )
+			throw new IllegalArgumentException( "topK must not be negative" );
+
+		this.topK = topK;
+		return this;
+	}
+
+	/**
+	 * @return				Markets scanned each round, grouped by pair
+	 */
+	public List< Market > getMarkets( )
+	{
+		return Collections.unmodifiableList( markets );
+	}
+
+	/**
+	 * @return				The newest completed round, or null before the first
+	 */
+	public SpreadMatrix getLatest( )
+	{
+		return latest.get( );
+	}
+
+	/**
+	 * Run one round: download the latest candles of every market concurrently and rank the spreads
+	 * @return				The matrix, also published to getLatest( )
+	 * @throws IOException	If interrupted while waiting for the round
+	 */
+	public SpreadMatrix scan( ) throws IOException
+	{
+		long now          = System.currentTimeMillis( );
+		long start        = ( now / intervalMillis - ( lookback - 1 ) ) * intervalMillis;
+		RateLimiter limit = rateLimiter;
+
+		Map< Market, CompletableFuture< CandleSeries > > results = batch.submitAll( markets, market -> {
+			if( limit != null )
+				limit.acquire( );
+
+			return nomicsExchangeCandles.getExchangeCandleSeries( key, interval, market.getExchange( ), market.getMarket( ), CANDLE_FILTER_MODE.OMIT_ZEROS, start );
+		} );
+
+		try
+		{
+			BatchExecutor.whenAllDone( results ).get( );
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new IOException( "Interrupted while scanning spreads", e );
+		}
+		catch( ExecutionException e )
+		{
+			//whenAllDone( ) never completes exceptionally
+			throw new IllegalStateException( e );
+		}
+
+		double[] closes                   = new double[ bases.length * exchanges.length ];
+		long[] timestamps                 = new long[ closes.length ];
+		Map< Market, Throwable > failures = new LinkedHashMap< Market, Throwable >( );
+
+		Arrays.fill( closes, Double.NaN );
+		Arrays.fill( timestamps, Long.MIN_VALUE );
+
+		for( int i = 0; i < cells.length; i++ )
+		{
+			Market market                            = markets.get( i );
+			CompletableFuture< CandleSeries > result = results.get( market );
+
+			if( result.isCompletedExceptionally( ) )
+			{
+				failures.put( market, cause( result ) );
+				continue;
+			}
+
+			CandleSeries candles = result.join( );
+
+			if( candles.isEmpty( ) )
+				continue;
+
+			closes[ cells[ i ] ]     = candles.getClose( candles.size( ) - 1 );
+			timestamps[ cells[ i ] ] = candles.getTimestamp( candles.size( ) - 1 );
+		}
+
+		SpreadMatrix matrix = SpreadMatrix.of( bases, quotes, exchanges, closes, timestamps, failures, topK, now );
+
+		//Never replace a newer round that finished first
+		latest.accumulateAndGet( matrix, ( current, next ) -> current == null || next.getScannedAt( ) >= current.getScannedAt( ) ? next : current );
+		return matrix;
+	}
+
+	/**
+	 * Internal method to unwrap the failure of a completed future
+	 */
+	private static Throwable cause( CompletableFuture< ? > result )
+	{
+		try
+		{
+			result.join( );
+			return null;
+		}
+		catch( RuntimeException e )
+		{
+			return e.getCause( ) != null ? e.getCause( ) : e;
+		}
+	}
+}